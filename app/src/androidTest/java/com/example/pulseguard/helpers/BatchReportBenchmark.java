@@ -0,0 +1,151 @@
+package com.example.pulseguard.helpers;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Measures batch report throughput and peak heap for a synthetic cohort at several pool sizes.
+ * <p>
+ * Run with {@code ./gradlew connectedAndroidTest
+ * -Pandroid.testInstrumentationRunnerArguments.class=com.example.pulseguard.helpers.BatchReportBenchmark}.
+ * Results are logged under the BatchReportBenchmark tag and reported as instrumentation status.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BatchReportBenchmark {
+
+    private static final String TAG = "BatchReportBenchmark";
+
+    private static final String USER_PREFIX = "benchmark-user-";
+    private static final int USERS = 24;
+    private static final int DAYS = 90;
+    private static final int[] PARALLELISM = {1, 2, 4};
+
+    private Context context;
+    private final List<BatchReportGenerator.Outcome> generated = new ArrayList<>();
+
+    @Before
+    public void seedCohort() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        LocalHealthStore store = LocalHealthStore.getInstance(context);
+        LocalDate first = LocalDate.now().minusDays(DAYS - 1);
+        long now = System.currentTimeMillis();
+        for (int user = 0; user < USERS; user++) {
+            for (int day = 0; day < DAYS; day++) {
+                store.save(USER_PREFIX + user, new DailyHealthRecord(first.plusDays(day).toString(),
+                        4000 + (user * 131 + day * 977) % 9000, 1800f + day % 400, 60f + (user + day) % 30, now));
+            }
+        }
+    }
+
+    @After
+    public void cleanUp() {
+        PdfReportHelper helper = new PdfReportHelper(context);
+        for (BatchReportGenerator.Outcome outcome : generated) {
+            if (outcome.isSuccessful()) {
+                helper.discard(outcome.getResult().getSharedUri());
+            }
+        }
+        ReportCache.getInstance(context).clear();
+        HealthDatabase.getInstance(context).getWritableDatabase().delete(HealthDatabase.TABLE_DAILY_HEALTH,
+                HealthDatabase.COLUMN_USER_ID + " LIKE ?", new String[]{USER_PREFIX + "%"});
+        HealthDatabase.getInstance(context).getWritableDatabase().delete(HealthDatabase.TABLE_OUTBOX,
+                HealthDatabase.COLUMN_USER_ID + " LIKE ?", new String[]{USER_PREFIX + "%"});
+    }
+
+    @Test
+    public void throughputByParallelism() throws InterruptedException {
+        List<BatchReportGenerator.Job> jobs = new ArrayList<>(USERS);
+        String from = LocalDate.now().minusDays(DAYS - 1).toString();
+        String to = LocalDate.now().toString();
+        for (int user = 0; user < USERS; user++) {
+            jobs.add(new BatchReportGenerator.Job("Benchmark Report",
+                    new PdfReportHelper.UserInfo("User " + user, null, null, null, null),
+                    USER_PREFIX + user, from, to));
+        }
+
+        Bundle status = new Bundle();
+        for (int parallelism : PARALLELISM) {
+            // Every run renders from scratch
+            ReportCache.getInstance(context).clear();
+            Runtime.getRuntime().gc();
+
+            BatchReportGenerator generator = new BatchReportGenerator(context, parallelism);
+            HeapSampler heap = new HeapSampler();
+            heap.start();
+            long start = SystemClock.elapsedRealtime();
+            List<BatchReportGenerator.Outcome> outcomes = generator.generateBlocking(jobs);
+            long elapsed = SystemClock.elapsedRealtime() - start;
+            heap.stopSampling();
+            generator.shutdown();
+            generated.addAll(outcomes);
+
+            int succeeded = 0;
+            for (BatchReportGenerator.Outcome outcome : outcomes) {
+                if (outcome.isSuccessful()) {
+                    succeeded++;
+                    assertFalse(outcome.getResult().isFromCache());
+                }
+            }
+            assertEquals(USERS, succeeded);
+
+            double perSecond = USERS * 1000.0 / Math.max(1, elapsed);
+            String line = String.format(Locale.US, "parallelism=%d reports=%d days=%d time=%dms rate=%.2f/s peakHeap=%.1fMB",
+                    parallelism, USERS, DAYS, elapsed, perSecond, heap.peakBytes() / (1024.0 * 1024.0));
+            Log.i(TAG, line);
+            status.putString("parallelism_" + parallelism, line);
+        }
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, status);
+    }
+
+    /**
+     * Polls used heap every few milliseconds on its own thread and keeps the maximum.
+     */
+    private static final class HeapSampler extends Thread {
+        private final AtomicBoolean running = new AtomicBoolean(true);
+        private final AtomicLong peak = new AtomicLong();
+
+        HeapSampler() {
+            super("heap-sampler");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            Runtime runtime = Runtime.getRuntime();
+            while (running.get()) {
+                long used = runtime.totalMemory() - runtime.freeMemory();
+                peak.accumulateAndGet(used, Math::max);
+                SystemClock.sleep(5);
+            }
+        }
+
+        void stopSampling() throws InterruptedException {
+            running.set(false);
+            join();
+        }
+
+        long peakBytes() {
+            return peak.get();
+        }
+    }
+}
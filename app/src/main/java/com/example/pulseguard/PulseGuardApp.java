@@ -0,0 +1,28 @@
+package com.example.pulseguard;
+
+import android.app.Application;
+
+import com.example.pulseguard.helpers.FirestoreHelper;
+import com.example.pulseguard.helpers.StartupOrchestrator;
+import com.example.pulseguard.helpers.StartupTimeline;
+
+public class PulseGuardApp extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        StartupTimeline.getInstance().attach(this);
+        // Keep this method short: everything else the first screen needs is prepared in the background
+        StartupOrchestrator.getInstance(this).start();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            // The process may be killed any time from now on; hand queued writes to Firestore, which
+            // keeps committed batches in its local cache until they reach the server
+            FirestoreHelper.getInstance().flush();
+        }
+    }
+}
@@ -1,24 +1,14 @@
 package com.example.pulseguard.activities;
 
 import android.Manifest;
-import android.content.ContentValues;
+import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.Typeface;
-import android.graphics.pdf.PdfDocument;
-import android.location.Address;
-import android.location.Geocoder;
 import android.location.Location;
-import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Environment;
-import android.provider.MediaStore;
-import android.telephony.SmsManager;
+import android.os.CountDownTimer;
 import android.util.Log;
 import android.widget.Button;
 import android.widget.EditText;
@@ -29,36 +19,48 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import com.example.pulseguard.R;
+import com.example.pulseguard.helpers.FallDetector;
+import com.example.pulseguard.helpers.FallMonitor;
+import com.example.pulseguard.helpers.FirestoreHelper;
+import com.example.pulseguard.helpers.FitSyncEngine;
+import com.example.pulseguard.helpers.FitnessRepository;
+import com.example.pulseguard.helpers.HeartRateAnomalyDetector;
+import com.example.pulseguard.helpers.HeartRateRule;
+import com.example.pulseguard.helpers.HeartRateStats;
+import com.example.pulseguard.helpers.LiveSampleDispatcher;
+import com.example.pulseguard.helpers.LocationTracker;
+import com.example.pulseguard.helpers.NotificationHelper;
+import com.example.pulseguard.helpers.PdfReportHelper;
+import com.example.pulseguard.helpers.ReportPipeline;
+import com.example.pulseguard.helpers.ReverseGeocoder;
+import com.example.pulseguard.helpers.SosDispatcher;
+import com.example.pulseguard.helpers.StartupOrchestrator;
+import com.example.pulseguard.helpers.StartupTimeline;
+import com.example.pulseguard.helpers.TrailRecorder;
+import com.example.pulseguard.workers.HealthSyncWorker;
 import com.google.android.gms.auth.api.signin.GoogleSignIn;
 import com.google.android.gms.auth.api.signin.GoogleSignInAccount;
 import com.google.android.gms.fitness.Fitness;
 import com.google.android.gms.fitness.FitnessOptions;
 import com.google.android.gms.fitness.SensorsClient;
-import com.google.android.gms.fitness.data.DataPoint;
-import com.google.android.gms.fitness.data.DataSet;
 import com.google.android.gms.fitness.data.DataType;
 import com.google.android.gms.fitness.data.Field;
-import com.google.android.gms.fitness.request.DataReadRequest;
 import com.google.android.gms.fitness.request.DataSourcesRequest;
 import com.google.android.gms.fitness.request.OnDataPointListener;
 import com.google.android.gms.fitness.request.SensorRequest;
-import com.google.android.gms.fitness.result.DataReadResponse;
 import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationServices;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
@@ -69,7 +71,6 @@ public class DashboardActivity extends AppCompatActivity {
 
     private static final String TAG = "PulseGuardDashboard";
 
-    private Location currentLocation;
     private FusedLocationProviderClient fusedLocationProviderClient;
 
 
@@ -81,10 +82,47 @@ public class DashboardActivity extends AppCompatActivity {
 
     // SOS permissions
     private static final int SOS_PERMISSION_REQUEST_CODE = 1004;
+    private static final int TRAIL_PERMISSION_REQUEST_CODE = 1005;
+    private static final long SOS_GEOCODE_TIMEOUT_MS = 1500;
+    private static final long SOS_REFINE_TIMEOUT_MS = 15000;
+    private static final float SOS_MIN_FOLLOW_UP_DISTANCE_M = 50f;
+    private static final int RANGE_REPORT_DAYS = 30;
+    private static final long REPORT_MAX_FIX_AGE_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long FALL_SOS_COUNTDOWN_MS = 30000;
+    private static final String FALL_ALERT_KEY = "fall";
     private EditText etSOSContact;
     private SharedPreferences sharedPreferences;
 
     private float currentHeartRate = 0f;
+    // Today's heart-rate statistics; live readings are added until the next sync replaces them
+    private HeartRateStats dayHeartRateStats = new HeartRateStats();
+
+    private NotificationHelper notificationHelper;
+    private HeartRateAnomalyDetector anomalyDetector;
+    private final HeartRateAnomalyDetector.Listener anomalyListener = new HeartRateAnomalyDetector.Listener() {
+        @Override
+        public void onAnomaly(@NonNull HeartRateRule rule, long timestampMillis, float bpm) {
+            Log.w(TAG, "Heart rate alert: " + rule.toSpec() + " at " + bpm + " bpm");
+            NotificationHelper.Severity severity = rule.getKind() == HeartRateRule.Kind.DEVIATION
+                    ? NotificationHelper.Severity.WARNING
+                    : NotificationHelper.Severity.CRITICAL;
+            notificationHelper.notify(alertKey(rule), severity, "Heart rate alert",
+                    "Your heart rate has been " + rule.describe() + String.format(" (now %.0f bpm).", bpm));
+        }
+
+        @Override
+        public void onRecovered(@NonNull HeartRateRule rule, long timestampMillis, float bpm) {
+            Log.i(TAG, "Heart rate back to normal: " + rule.toSpec() + " at " + bpm + " bpm");
+            notificationHelper.cancel(alertKey(rule));
+        }
+
+        private String alertKey(HeartRateRule rule) {
+            return "heart_rate:" + rule.toSpec();
+        }
+    };
+    // Shown after a detected fall; SOS goes out when the countdown ends unless the user cancels
+    private AlertDialog fallDialog;
+    private CountDownTimer fallCountdown;
     private int currentSteps = 0;
     private float currentCalories = 0f;
 
@@ -94,15 +132,18 @@ public class DashboardActivity extends AppCompatActivity {
 
     private TextView tvWelcome, tvSteps, tvCalories, tvHeartRate;
     private ProgressBar pbSteps, pbCalories, pbHeartRate;
-    private Button btnExportPdf, btnSOS;
+    private Button btnExportPdf, btnSOS, btnRecordTrail;
+    private CharSequence exportButtonLabel;
 
     private FitnessOptions fitnessOptions;
     private SensorsClient sensorsClient;
-    private FusedLocationProviderClient fusedLocationClient;
 
     private OnDataPointListener stepListener;
     private OnDataPointListener heartRateListener;
 
+    // Coalesces live sensor samples and publishes them to the views once per frame
+    private LiveSampleDispatcher liveSampleDispatcher;
+
 
 
     @Override
@@ -112,6 +153,12 @@ public class DashboardActivity extends AppCompatActivity {
             setTitle("PulseGuard Dashboard");
 
             initViews();
+            liveSampleDispatcher = new LiveSampleDispatcher(this::onLiveSamples);
+            notificationHelper = NotificationHelper.getInstance(this);
+            anomalyDetector = new HeartRateAnomalyDetector(HeartRateRule.load(this), anomalyListener);
+            liveSampleDispatcher.setHeartRateConsumer(anomalyDetector);
+            FallMonitor.getInstance(this).setListener(this::onFallDetected);
+            FallMonitor.getInstance(this).acquire(this);
 
             GoogleSignInAccount account = GoogleSignIn.getLastSignedInAccount(this);
             if (account == null) {
@@ -120,8 +167,9 @@ public class DashboardActivity extends AppCompatActivity {
                 return;
             }
 
+            Context appContext = getApplicationContext();
+            StartupOrchestrator.getInstance(this).runAfterFirstFrame(() -> HealthSyncWorker.schedule(appContext));
             checkPermissionsAndProceed();
-        fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
 
         btnExportPdf.setOnClickListener(v -> {
             if (checkStoragePermission()) {
@@ -130,6 +178,15 @@ public class DashboardActivity extends AppCompatActivity {
                 requestStoragePermission();
             }
         });
+        // Long press exports the stored daily totals of the last 30 days
+        btnExportPdf.setOnLongClickListener(v -> {
+            if (checkStoragePermission()) {
+                generateRangeReport(RANGE_REPORT_DAYS);
+            } else {
+                requestStoragePermission();
+            }
+            return true;
+        });
 
         btnSOS.setOnClickListener(v -> {
             if (checkSOSPermissions()) {
@@ -138,6 +195,8 @@ public class DashboardActivity extends AppCompatActivity {
                 requestSOSPermissions();
             }
         });
+
+        btnRecordTrail.setOnClickListener(v -> toggleTrailRecording());
     }
 
     private void initViews() {
@@ -151,7 +210,11 @@ public class DashboardActivity extends AppCompatActivity {
         pbHeartRate = findViewById(R.id.pbHeartRate);
 
         btnExportPdf = findViewById(R.id.btnExportPdf);
+        exportButtonLabel = btnExportPdf.getText();
         btnSOS = findViewById(R.id.btn_sos);
+        btnRecordTrail = findViewById(R.id.btnRecordTrail);
+        // Recording outlives the activity; show its current state
+        updateTrailButton();
         etSOSContact = findViewById(R.id.et_sos_contact);
 
         // Initialize SharedPreferences
@@ -160,6 +223,7 @@ public class DashboardActivity extends AppCompatActivity {
         // Load previously saved contact if any
         String savedContact = sharedPreferences.getString(KEY_SOS_CONTACT, "");
         etSOSContact.setText(savedContact);
+        SosDispatcher.getInstance(this).setListener(this::onSosStatusChanged);
 
         // Set welcome message and max progress
         tvWelcome.setText("Welcome to PulseGuard Dashboard!");
@@ -171,11 +235,7 @@ public class DashboardActivity extends AppCompatActivity {
 
 
     private void checkPermissionsAndProceed() {
-        fitnessOptions = FitnessOptions.builder()
-                .addDataType(DataType.TYPE_STEP_COUNT_DELTA, FitnessOptions.ACCESS_READ)
-                .addDataType(DataType.TYPE_CALORIES_EXPENDED, FitnessOptions.ACCESS_READ)
-                .addDataType(DataType.TYPE_HEART_RATE_BPM, FitnessOptions.ACCESS_READ)
-                .build();
+        fitnessOptions = FitnessRepository.FITNESS_OPTIONS;
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q &&
                 ContextCompat.checkSelfPermission(this, Manifest.permission.ACTIVITY_RECOGNITION)
@@ -237,6 +297,12 @@ public class DashboardActivity extends AppCompatActivity {
             } else {
                 Toast.makeText(this, "Permissions are required to send SOS.", Toast.LENGTH_SHORT).show();
             }
+        } else if (requestCode == TRAIL_PERMISSION_REQUEST_CODE) {
+            if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+                toggleTrailRecording();
+            } else {
+                Toast.makeText(this, "Location permission is required to record a walk.", Toast.LENGTH_SHORT).show();
+            }
         }
     }
 
@@ -259,27 +325,16 @@ public class DashboardActivity extends AppCompatActivity {
             return;
         }
 
-        Calendar cal = Calendar.getInstance();
-        long endTime = cal.getTimeInMillis();
-
-        // Set to start of day
-        cal.set(Calendar.HOUR_OF_DAY, 0);
-        cal.set(Calendar.MINUTE, 0);
-        cal.set(Calendar.SECOND, 0);
-        cal.set(Calendar.MILLISECOND, 0);
-        long startTime = cal.getTimeInMillis();
-
-        DataReadRequest readRequest = new DataReadRequest.Builder()
-                .read(DataType.TYPE_STEP_COUNT_DELTA)
-                .read(DataType.TYPE_CALORIES_EXPENDED)
-                .read(DataType.TYPE_HEART_RATE_BPM)
-                .setTimeRange(startTime, endTime, TimeUnit.MILLISECONDS)
-                .build();
+        // Render the cached totals right away, then revalidate if they are older than their TTL
+        FitnessRepository repository = FitnessRepository.getInstance(this);
+        FitSyncEngine.DailySummary cached = repository.peekTodaySummary();
+        if (cached != null) {
+            displayData(cached);
+        }
 
-        Fitness.getHistoryClient(this, account)
-                .readData(readRequest)
-                .addOnSuccessListener(this::displayData)
-                .addOnFailureListener(e -> {
+        repository.refreshTodaySummary(false)
+                .addOnSuccessListener(this, this::displayData)
+                .addOnFailureListener(this, e -> {
                     Log.e(TAG, "Failed to read Google Fit data", e);
                     Toast.makeText(this, "Failed to read Google Fit data", Toast.LENGTH_SHORT).show();
                 });
@@ -287,39 +342,11 @@ public class DashboardActivity extends AppCompatActivity {
         subscribeToLiveSensorData();
     }
 
-    private void displayData(DataReadResponse response) {
-        int totalSteps = 0;
-        float totalCalories = 0f;
-        Float latestHeartRate = null;
-        long latestHeartTimestamp = 0;
-
-        List<DataSet> dataSets = response.getDataSets();
-        for (DataSet dataSet : dataSets) {
-            for (DataPoint dp : dataSet.getDataPoints()) {
-                for (Field field : dp.getDataType().getFields()) {
-                    switch (field.getName()) {
-                        case "steps":
-                            totalSteps += dp.getValue(field).asInt();
-                            break;
-                        case "calories":
-                            totalCalories += dp.getValue(field).asFloat();
-                            break;
-                        case "bpm":
-                            float bpm = dp.getValue(field).asFloat();
-                            long timestamp = dp.getTimestamp(TimeUnit.MILLISECONDS);
-                            if (timestamp > latestHeartTimestamp) {
-                                latestHeartTimestamp = timestamp;
-                                latestHeartRate = bpm;
-                            }
-                            break;
-                    }
-                }
-            }
-        }
-
-        currentSteps = totalSteps;
-        currentCalories = totalCalories;
-        currentHeartRate = latestHeartRate != null ? latestHeartRate : 0f;
+    private void displayData(FitSyncEngine.DailySummary summary) {
+        currentSteps = summary.getSteps();
+        currentCalories = summary.getCalories();
+        currentHeartRate = summary.getLatestHeartRate();
+        HeartRateStats heartRateStats = summary.getHeartRateStats();
 
         runOnUiThread(() -> {
             tvSteps.setText("🚶 Steps: " + currentSteps);
@@ -333,13 +360,14 @@ public class DashboardActivity extends AppCompatActivity {
                 pbCalories.setProgress(0);
             }
 
+            dayHeartRateStats = heartRateStats;
             if (currentHeartRate > 0) {
-                tvHeartRate.setText("💓 Heart Rate: " + String.format("%.1f bpm", currentHeartRate));
-                pbHeartRate.setProgress(Math.min((int) currentHeartRate, pbHeartRate.getMax()));
+                showHeartRate();
             } else {
                 tvHeartRate.setText("💓 Heart Rate: No data");
                 pbHeartRate.setProgress(0);
             }
+            StartupTimeline.getInstance().markFirstData(this);
         });
     }
 
@@ -362,21 +390,10 @@ public class DashboardActivity extends AppCompatActivity {
             heartRateListener = null;
         }
 
-        // Step Listener - Accumulate steps live
-        stepListener = dataPoint -> {
-            int stepsDelta = 0;
-            for (Field field : dataPoint.getDataType().getFields()) {
-                if ("steps".equals(field.getName())) {
-                    stepsDelta = dataPoint.getValue(field).asInt();
-                    break;
-                }
-            }
-            currentSteps += stepsDelta; // accumulate
-            runOnUiThread(() -> {
-                tvSteps.setText("🚶 Steps: " + currentSteps);
-                pbSteps.setProgress(Math.min(currentSteps, pbSteps.getMax()));
-            });
-        };
+        // Step Listener - hand deltas to the dispatcher, which accumulates them on the main thread
+        stepListener = dataPoint -> liveSampleDispatcher.offerSteps(
+                dataPoint.getEndTime(TimeUnit.MILLISECONDS),
+                dataPoint.getValue(Field.FIELD_STEPS).asInt());
 
         sensorsClient.findDataSources(
                         new DataSourcesRequest.Builder()
@@ -401,20 +418,9 @@ public class DashboardActivity extends AppCompatActivity {
                 });
 
         // Heart Rate Listener
-        heartRateListener = dataPoint -> {
-            float bpm = 0f;
-            for (Field field : dataPoint.getDataType().getFields()) {
-                if ("bpm".equals(field.getName())) {
-                    bpm = dataPoint.getValue(field).asFloat();
-                    break;
-                }
-            }
-            currentHeartRate = bpm;
-            runOnUiThread(() -> {
-                tvHeartRate.setText("💓 Heart Rate: " + String.format("%.1f bpm", currentHeartRate));
-                pbHeartRate.setProgress(Math.min((int) currentHeartRate, pbHeartRate.getMax()));
-            });
-        };
+        heartRateListener = dataPoint -> liveSampleDispatcher.offerHeartRate(
+                dataPoint.getTimestamp(TimeUnit.MILLISECONDS),
+                dataPoint.getValue(Field.FIELD_BPM).asFloat());
 
         sensorsClient.findDataSources(
                         new DataSourcesRequest.Builder()
@@ -439,6 +445,33 @@ public class DashboardActivity extends AppCompatActivity {
                 });
     }
 
+    /**
+     * Applies coalesced live samples. Runs on the main thread at most once per frame.
+     */
+    private void onLiveSamples(int stepDelta, float latestHeartRate) {
+        if (stepDelta != 0) {
+            currentSteps += stepDelta;
+            tvSteps.setText("🚶 Steps: " + currentSteps);
+            pbSteps.setProgress(Math.min(currentSteps, pbSteps.getMax()));
+        }
+        if (!Float.isNaN(latestHeartRate)) {
+            currentHeartRate = latestHeartRate;
+            dayHeartRateStats.add(latestHeartRate);
+            showHeartRate();
+        }
+    }
+
+    private void showHeartRate() {
+        String text = "💓 Heart Rate: " + String.format("%.1f bpm", currentHeartRate);
+        if (dayHeartRateStats.getCount() > 1) {
+            text += String.format(" (avg %.0f, %.0f–%.0f, p95 %.0f)",
+                    dayHeartRateStats.getMean(), dayHeartRateStats.getMin(),
+                    dayHeartRateStats.getMax(), dayHeartRateStats.getPercentile(0.95));
+        }
+        tvHeartRate.setText(text);
+        pbHeartRate.setProgress(Math.min((int) currentHeartRate, pbHeartRate.getMax()));
+    }
+
     private boolean checkStoragePermission() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
             // Scoped storage: no need to request WRITE_EXTERNAL_STORAGE for app-specific dirs
@@ -473,16 +506,22 @@ public class DashboardActivity extends AppCompatActivity {
     }
 
     private void sendSOS() {
-        // Get emergency contact number entered by user
-        String contactNumber = etSOSContact.getText().toString().trim();
+        // Get emergency contact numbers entered by user, separated by commas or semicolons
+        String contactText = etSOSContact.getText().toString().trim();
+        List<String> contacts = new ArrayList<>();
+        for (String number : contactText.split("[,;]")) {
+            if (!number.trim().isEmpty()) {
+                contacts.add(number.trim());
+            }
+        }
 
-        if (contactNumber.isEmpty()) {
+        if (contacts.isEmpty()) {
             Toast.makeText(this, "Please enter an emergency contact number", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        // Save the number to SharedPreferences for later use
-        sharedPreferences.edit().putString(KEY_SOS_CONTACT, contactNumber).apply();
+        // Save the numbers to SharedPreferences for later use
+        sharedPreferences.edit().putString(KEY_SOS_CONTACT, contactText).apply();
 
         // Check for location permission before fetching location
         if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
@@ -490,92 +529,174 @@ public class DashboardActivity extends AppCompatActivity {
             return;
         }
 
-        // Fetch the last known location
-        fusedLocationClient.getLastLocation().addOnSuccessListener(this, location -> {
-            String message;
-            if (location != null) {
-                String locationUrl = "https://maps.google.com/?q="
-                        + location.getLatitude() + "," + location.getLongitude();
-                message = "Emergency! I need help. My location: " + locationUrl;
-            } else {
-                message = "Emergency! I need help. Location not available.";
+        // Send at once from the fix kept fresh while the dashboard is open
+        LocationTracker tracker = LocationTracker.getInstance(this);
+        Location cached = tracker.getLastFix();
+        if (cached != null) {
+            String address = ReverseGeocoder.getInstance(this).peek(cached.getLatitude(), cached.getLongitude());
+            String message = "Emergency! I need help. My location: " + describeFix(cached, address);
+            String recentPath = TrailRecorder.getInstance(this).getRecentPathUrl();
+            if (recentPath != null) {
+                message += " Recent path: " + recentPath;
+            }
+            sendSMS(contacts, message);
+        } else {
+            sendSMS(contacts, "Emergency! I need help. Location not available yet, will follow up.");
+        }
+
+        // Follow up with a precise fix if one arrives in time and improves on what was sent
+        tracker.refine(SOS_REFINE_TIMEOUT_MS).addOnSuccessListener(refined -> {
+            if (refined == null || !improvesOn(refined, cached)) {
+                return;
             }
-            // Send an SMS with the constructed message
-            sendSMS(contactNumber, message);
-        }).addOnFailureListener(e ->
-                Toast.makeText(DashboardActivity.this, "Failed to get location", Toast.LENGTH_SHORT).show());
+            ReverseGeocoder.getInstance(this)
+                    .lookUp(refined.getLatitude(), refined.getLongitude(), SOS_GEOCODE_TIMEOUT_MS)
+                    .addOnCompleteListener(task -> sendSMS(contacts,
+                            "Emergency update. Precise location: " + describeFix(refined, task.getResult())));
+        });
     }
 
-    private void sendSMS(String phoneNumber, String message) {
-        try {
-            SmsManager smsManager = SmsManager.getDefault();
-            smsManager.sendTextMessage(phoneNumber, null, message, null, null);
-            Toast.makeText(this, "SOS message sent to " + phoneNumber, Toast.LENGTH_LONG).show();
-        } catch (Exception e) {
-            Toast.makeText(this, "Failed to send SMS: " + e.getMessage(), Toast.LENGTH_LONG).show();
-            e.printStackTrace();
+    /**
+     * Formats a fix for an SMS: maps link, accuracy, age if not current, and the address if known.
+     */
+    private static String describeFix(Location fix, @Nullable String address) {
+        StringBuilder text = new StringBuilder("https://maps.google.com/?q=")
+                .append(fix.getLatitude()).append(',').append(fix.getLongitude())
+                .append(String.format(Locale.US, " (accuracy %.0f m", fix.getAccuracy()));
+        long ageMinutes = TimeUnit.MILLISECONDS.toMinutes(LocationTracker.getAgeMillis(fix));
+        if (ageMinutes > 0) {
+            text.append(", ").append(ageMinutes).append(" min ago");
+        }
+        text.append(')');
+        if (address != null) {
+            text.append(" near ").append(address);
         }
+        return text.toString();
     }
 
+    /**
+     * @return true if a refined fix is worth a follow-up: nothing was sent, it is much more
+     * accurate, or the user has moved beyond the accuracy of what was sent
+     */
+    private static boolean improvesOn(Location refined, @Nullable Location sent) {
+        return sent == null
+                || refined.getAccuracy() < sent.getAccuracy() / 2
+                || refined.distanceTo(sent) > Math.max(sent.getAccuracy(), SOS_MIN_FOLLOW_UP_DISTANCE_M);
+    }
+
+    private void sendSMS(List<String> recipients, String message) {
+        // Queued in the outbox and retried until sent; progress arrives through onSosStatusChanged
+        SosDispatcher.getInstance(this).dispatch(recipients, message)
+                .addOnSuccessListener(count -> Toast.makeText(this,
+                        "Sending SOS to " + count + (count == 1 ? " contact" : " contacts"), Toast.LENGTH_SHORT).show())
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to queue SOS", e);
+                    Toast.makeText(this, "Failed to send SMS: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                });
+    }
 
-    private void fetchLocationAndGeneratePDF() {
-        FusedLocationProviderClient fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
+    private void onSosStatusChanged(long messageId, String recipient, SosDispatcher.Status status) {
+        switch (status) {
+            case SENT:
+                Toast.makeText(this, "SOS message sent to " + recipient, Toast.LENGTH_SHORT).show();
+                break;
+            case DELIVERED:
+                Toast.makeText(this, "SOS message delivered to " + recipient, Toast.LENGTH_SHORT).show();
+                break;
+            case FAILED:
+                Toast.makeText(this, "SOS message to " + recipient + " could not be sent", Toast.LENGTH_LONG).show();
+                break;
+            default:
+                break;
+        }
+    }
 
-        if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
-            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.ACCESS_FINE_LOCATION}, 100);
+
+    private void onFallDetected(FallDetector.Event event) {
+        if (fallDialog != null && fallDialog.isShowing()) {
+            return;
+        }
+        notificationHelper.notify(FALL_ALERT_KEY, NotificationHelper.Severity.CRITICAL, "Fall detected",
+                "An SOS will be sent in " + TimeUnit.MILLISECONDS.toSeconds(FALL_SOS_COUNTDOWN_MS)
+                        + " seconds. Open PulseGuard to cancel it.");
+        if (isFinishing()) {
             return;
         }
 
-        fusedLocationClient.getLastLocation()
-                .addOnSuccessListener(location -> {
-                    currentLocation = location;
-                    generatePdfReport();
+        fallDialog = new AlertDialog.Builder(this)
+                .setTitle("Fall detected")
+                .setMessage(fallCountdownText(FALL_SOS_COUNTDOWN_MS))
+                .setCancelable(false)
+                .setPositiveButton("Send SOS now", (dialog, which) -> {
+                    dismissFallAlert();
+                    sendFallSOS();
                 })
-                .addOnFailureListener(e -> {
-                    Toast.makeText(this, "Location unavailable", Toast.LENGTH_SHORT).show();
-                    currentLocation = null;
-                    generatePdfReport();
-                });
+                .setNegativeButton("I'm OK", (dialog, which) -> dismissFallAlert())
+                .show();
+        fallCountdown = new CountDownTimer(FALL_SOS_COUNTDOWN_MS, 1000) {
+            @Override
+            public void onTick(long millisUntilFinished) {
+                if (fallDialog != null) {
+                    fallDialog.setMessage(fallCountdownText(millisUntilFinished));
+                }
+            }
+
+            @Override
+            public void onFinish() {
+                dismissFallAlert();
+                sendFallSOS();
+            }
+        }.start();
     }
 
+    private static String fallCountdownText(long millisUntilFinished) {
+        return "Are you OK? An SOS with your location will be sent to your emergency contacts in "
+                + TimeUnit.MILLISECONDS.toSeconds(millisUntilFinished + 999) + " seconds.";
+    }
 
-    private void generatePdfReport() {
-        PdfDocument pdfDocument = new PdfDocument();
-        Paint paint = new Paint();
-
-        final int PAGE_WIDTH = 595;
-        final int PAGE_HEIGHT = 842;
-        final int MARGIN_LEFT = 60;
-        final int MARGIN_TOP = 60;
-        final int LINE_SPACING = 25;
-        final int SECTION_SPACING = 40;
-
-        PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(PAGE_WIDTH, PAGE_HEIGHT, 1).create();
-        PdfDocument.Page page = pdfDocument.startPage(pageInfo);
-        Canvas canvas = page.getCanvas();
-
-        int y = MARGIN_TOP;
-
-        // Header background
-        Paint headerBgPaint = new Paint();
-        headerBgPaint.setColor(Color.parseColor("#E3F2FD"));
-        canvas.drawRect(0, 0, PAGE_WIDTH, MARGIN_TOP + 50, headerBgPaint);
-
-        // Title
-        paint.setColor(Color.parseColor("#1A237E"));
-        paint.setTextSize(24f);
-        paint.setTypeface(Typeface.DEFAULT_BOLD);
-        canvas.drawText("PulseGuard Health Report", MARGIN_LEFT, y, paint);
-        y += LINE_SPACING + 10;
-
-        // Timestamp
-        paint.setColor(Color.DKGRAY);
-        paint.setTextSize(12f);
-        paint.setTypeface(Typeface.DEFAULT);
-        String timestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date());
-        canvas.drawText("Generated on: " + timestamp, MARGIN_LEFT, y, paint);
-        y += SECTION_SPACING;
+    private void sendFallSOS() {
+        if (checkSOSPermissions()) {
+            sendSOS();
+        } else {
+            Toast.makeText(this, "Permissions are required to send SOS.", Toast.LENGTH_LONG).show();
+        }
+    }
+
+    private void dismissFallAlert() {
+        if (fallCountdown != null) {
+            fallCountdown.cancel();
+            fallCountdown = null;
+        }
+        if (fallDialog != null) {
+            fallDialog.dismiss();
+            fallDialog = null;
+        }
+        notificationHelper.cancel(FALL_ALERT_KEY);
+    }
+
+    private void toggleTrailRecording() {
+        TrailRecorder recorder = TrailRecorder.getInstance(this);
+        if (recorder.isRecording()) {
+            recorder.stop().addOnSuccessListener(trail -> {
+                if (trail != null) {
+                    Toast.makeText(this, String.format(Locale.getDefault(), "Walk saved: %.2f km",
+                            trail.getDistanceMeters() / 1000f), Toast.LENGTH_SHORT).show();
+                }
+            });
+        } else if (recorder.start()) {
+            Toast.makeText(this, "Recording walk", Toast.LENGTH_SHORT).show();
+        } else {
+            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.ACCESS_FINE_LOCATION},
+                    TRAIL_PERMISSION_REQUEST_CODE);
+        }
+        updateTrailButton();
+    }
+
+    private void updateTrailButton() {
+        btnRecordTrail.setText(TrailRecorder.getInstance(this).isRecording() ? "Stop Walk" : "Record Walk");
+    }
 
+    private void generatePdfReport() {
         // ==== Fetch user info ====
         FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
         String userName = "Unknown";
@@ -592,140 +713,68 @@ public class DashboardActivity extends AppCompatActivity {
 
         int userAge = calculateAgeFromDob(dobString);
 
-        // ==== User Info Section ====
-        paint.setColor(Color.BLACK);
-        paint.setTextSize(16f);
-        paint.setTypeface(Typeface.DEFAULT_BOLD);
-        canvas.drawText("User Information", MARGIN_LEFT, y, paint);
-        y += LINE_SPACING;
-
-        paint.setStrokeWidth(1);
-        canvas.drawLine(MARGIN_LEFT, y, PAGE_WIDTH - MARGIN_LEFT, y, paint);
-        y += LINE_SPACING;
-
-        paint.setTypeface(Typeface.DEFAULT);
-        paint.setTextSize(14f);
-        canvas.drawText("Name: " + userName, MARGIN_LEFT, y, paint); y += LINE_SPACING;
-        canvas.drawText("Age: " + userAge + " years", MARGIN_LEFT, y, paint); y += LINE_SPACING;
-        canvas.drawText("Email: " + userEmail, MARGIN_LEFT, y, paint); y += SECTION_SPACING;
-
-        // ==== Health Metrics ====
-        paint.setTypeface(Typeface.DEFAULT_BOLD);
-        paint.setTextSize(16f);
-        canvas.drawText("Health Metrics", MARGIN_LEFT, y, paint);
-        y += LINE_SPACING;
-
-        paint.setStrokeWidth(1);
-        canvas.drawLine(MARGIN_LEFT, y, PAGE_WIDTH - MARGIN_LEFT, y, paint);
-        y += LINE_SPACING;
-
-        paint.setTypeface(Typeface.DEFAULT);
-        paint.setTextSize(14f);
-        canvas.drawText("Steps: " + currentSteps, MARGIN_LEFT, y, paint); y += LINE_SPACING;
-        canvas.drawText(String.format(Locale.getDefault(), "Calories: %.1f kcal", currentCalories), MARGIN_LEFT, y, paint); y += LINE_SPACING;
-        canvas.drawText(String.format(Locale.getDefault(), "Heart Rate: %.1f bpm", currentHeartRate), MARGIN_LEFT, y, paint); y += SECTION_SPACING;
-
-        // ==== Location Section ====
-        paint.setTypeface(Typeface.DEFAULT_BOLD);
-        paint.setTextSize(16f);
-        canvas.drawText("Location Data", MARGIN_LEFT, y, paint);
-        y += LINE_SPACING;
-
-        canvas.drawLine(MARGIN_LEFT, y, PAGE_WIDTH - MARGIN_LEFT, y, paint);
-        y += LINE_SPACING;
-
-        paint.setTypeface(Typeface.DEFAULT);
-        paint.setTextSize(14f);
-
-        if (currentLocation != null) {
-            double lat = currentLocation.getLatitude();
-            double lon = currentLocation.getLongitude();
-            float acc = currentLocation.getAccuracy();
-
-            canvas.drawText(String.format(Locale.getDefault(), "Coordinates: %.6f, %.6f", lat, lon), MARGIN_LEFT, y, paint); y += LINE_SPACING;
-            canvas.drawText(String.format(Locale.getDefault(), "Accuracy: %.1f meters", acc), MARGIN_LEFT, y, paint); y += LINE_SPACING;
-
-            String mapsLink = "https://maps.google.com/?q=" + lat + "," + lon;
-            canvas.drawText("Google Maps: " + mapsLink, MARGIN_LEFT, y, paint); y += LINE_SPACING;
-
-            try {
-                Geocoder geocoder = new Geocoder(this, Locale.getDefault());
-                List<Address> addresses = geocoder.getFromLocation(lat, lon, 1);
-                if (addresses != null && !addresses.isEmpty()) {
-                    String address = addresses.get(0).getAddressLine(0);
-                    int maxCharsPerLine = 70;
-                    if (address.length() > maxCharsPerLine) {
-                        String[] split = splitLongText(address, maxCharsPerLine);
-                        canvas.drawText("Address: " + split[0], MARGIN_LEFT, y, paint);
-                        y += LINE_SPACING;
-                        canvas.drawText(split[1], MARGIN_LEFT + 50, y, paint);
-                    } else {
-                        canvas.drawText("Address: " + address, MARGIN_LEFT, y, paint);
-                    }
-                    y += LINE_SPACING;
-                } else {
-                    canvas.drawText("Address: Not found", MARGIN_LEFT, y, paint); y += LINE_SPACING;
-                }
-            } catch (IOException e) {
-                Log.e("PDF", "Geocoder failed: " + e.getMessage());
-                canvas.drawText("Address: Unable to retrieve", MARGIN_LEFT, y, paint); y += LINE_SPACING;
-            }
-        } else {
-            canvas.drawText("Location: Not available (please enable location)", MARGIN_LEFT, y, paint); y += LINE_SPACING;
+        PdfReportHelper.UserInfo userInfo = new PdfReportHelper.UserInfo(userName, userEmail,
+                dobString + " (" + userAge + " years)", null, null);
+        PdfReportHelper.HealthData healthData =
+                new PdfReportHelper.HealthData(currentSteps, currentCalories, currentHeartRate);
+
+        // The tracker keeps a fix warm while the dashboard is visible; an old one would be misleading
+        Location location = LocationTracker.getInstance(this).getLastFix();
+        if (location != null && LocationTracker.getAgeMillis(location) > REPORT_MAX_FIX_AGE_MS) {
+            location = null;
         }
 
-        // ==== Footer ====
-        paint.setColor(Color.DKGRAY);
-        paint.setTextAlign(Paint.Align.CENTER);
-        paint.setTextSize(10f);
-        canvas.drawText("Generated by PulseGuard - Confidential", PAGE_WIDTH / 2, PAGE_HEIGHT - 30, paint);
+        // Address lookup, rendering and saving all run on the pipeline's background thread
+        btnExportPdf.setEnabled(false);
+        ReportPipeline.getInstance(this).submit(
+                new ReportPipeline.Request("PulseGuard Health Report", userInfo, healthData, location),
+                reportCallback);
+    }
 
-        pdfDocument.finishPage(page);
+    private void generateRangeReport(int days) {
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        if (currentUser == null) {
+            Toast.makeText(this, "Please sign in to export your history.", Toast.LENGTH_SHORT).show();
+            return;
+        }
 
-        // ==== Save PDF ====
-        String fileName = "PulseGuard_Report_" + System.currentTimeMillis() + ".pdf";
+        long now = System.currentTimeMillis();
+        String fromDate = FirestoreHelper.dateKey(now - TimeUnit.DAYS.toMillis(days - 1));
+        String toDate = FirestoreHelper.dateKey(now);
+        PdfReportHelper.UserInfo userInfo = new PdfReportHelper.UserInfo(currentUser.getDisplayName(),
+                currentUser.getEmail(), null, null, null);
 
-        try {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-                ContentValues values = new ContentValues();
-                values.put(MediaStore.MediaColumns.DISPLAY_NAME, fileName);
-                values.put(MediaStore.MediaColumns.MIME_TYPE, "application/pdf");
-                values.put(MediaStore.MediaColumns.RELATIVE_PATH, Environment.DIRECTORY_DOCUMENTS + "/PulseGuard");
-
-                Uri uri = getContentResolver().insert(MediaStore.Files.getContentUri("external"), values);
-
-                if (uri != null) {
-                    try (OutputStream outputStream = getContentResolver().openOutputStream(uri)) {
-                        pdfDocument.writeTo(outputStream);
-                        Toast.makeText(this, "PDF saved to Documents/PulseGuard", Toast.LENGTH_LONG).show();
-                    }
-                } else {
-                    Toast.makeText(this, "Failed to create file URI", Toast.LENGTH_SHORT).show();
-                }
-            } else {
-                File dir = new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOCUMENTS), "PulseGuard");
-                if (!dir.exists()) dir.mkdirs();
+        btnExportPdf.setEnabled(false);
+        ReportPipeline.getInstance(this).submit(
+                new ReportPipeline.Request("PulseGuard Health History", userInfo, currentUser.getUid(), fromDate, toDate),
+                reportCallback);
+    }
 
-                File file = new File(dir, fileName);
-                try (FileOutputStream fos = new FileOutputStream(file)) {
-                    pdfDocument.writeTo(fos);
-                    Toast.makeText(this, "PDF saved: " + file.getAbsolutePath(), Toast.LENGTH_LONG).show();
-                }
-            }
-        } catch (IOException e) {
-            Log.e("PDF", "Error saving PDF: ", e);
-            Toast.makeText(this, "Error saving PDF: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-        } finally {
-            pdfDocument.close();
+    private final ReportPipeline.Callback reportCallback = new ReportPipeline.Callback() {
+        @Override
+        public void onProgress(int percent, @NonNull String stage) {
+            btnExportPdf.setText(stage + "… " + percent + "%");
         }
-    }
 
-    // Optional helper to split long address lines
-    private String[] splitLongText(String text, int maxChars) {
-        if (text.length() <= maxChars) return new String[]{text, ""};
-        return new String[]{text.substring(0, maxChars), text.substring(maxChars)};
-    }
+        @Override
+        public void onReportReady(@NonNull ReportPipeline.Result result) {
+            resetExportButton();
+            Toast.makeText(DashboardActivity.this, result.isFromCache()
+                    ? "No changes since the last export; report is in Documents/PulseGuard"
+                    : "PDF saved to Documents/PulseGuard", Toast.LENGTH_LONG).show();
+        }
 
+        @Override
+        public void onReportFailed(@NonNull Exception error) {
+            resetExportButton();
+            Toast.makeText(DashboardActivity.this, "Error saving PDF: " + error.getMessage(), Toast.LENGTH_SHORT).show();
+        }
+    };
+
+    private void resetExportButton() {
+        btnExportPdf.setEnabled(true);
+        btnExportPdf.setText(exportButtonLabel);
+    }
 
     // Helper method to calculate age from DOB string in format yyyy-MM-dd
     private int calculateAgeFromDob(String dobString) {
@@ -755,6 +804,7 @@ public class DashboardActivity extends AppCompatActivity {
     @Override
     protected void onPause() {
         super.onPause();
+        LocationTracker.getInstance(this).release(this);
         // Remove listeners to avoid memory leaks
         if (sensorsClient != null) {
             if (stepListener != null) {
@@ -771,6 +821,10 @@ public class DashboardActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
+        // Keeps a low-power fix cached so SOS can send without waiting for GPS
+        LocationTracker.getInstance(this).acquire(this);
+        // The walk may have been stopped from the recording notification meanwhile
+        updateTrailButton();
         // Re-subscribe listeners on resume if Google Fit permission granted
         if (GoogleSignIn.getLastSignedInAccount(this) != null && fitnessOptions != null) {
             subscribeToLiveSensorData();
@@ -780,6 +834,14 @@ public class DashboardActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        ReportPipeline.getInstance(this).cancel();
+        SosDispatcher.getInstance(this).setListener(null);
+        FallMonitor.getInstance(this).setListener(null);
+        FallMonitor.getInstance(this).release(this);
+        dismissFallAlert();
+        if (liveSampleDispatcher != null) {
+            liveSampleDispatcher.release();
+        }
         if (sensorsClient != null) {
             if (stepListener != null) {
                 sensorsClient.remove(stepListener);
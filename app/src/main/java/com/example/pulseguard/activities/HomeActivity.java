@@ -1,5 +1,6 @@
 package com.example.pulseguard.activities;
 
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 import android.util.Log;
@@ -12,23 +13,17 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.pulseguard.R;
 import com.example.pulseguard.helpers.FirestoreHelper;
+import com.example.pulseguard.helpers.FitSyncEngine;
+import com.example.pulseguard.helpers.FitnessRepository;
+import com.example.pulseguard.helpers.LocalHealthStore;
+import com.example.pulseguard.helpers.StartupOrchestrator;
+import com.example.pulseguard.workers.HealthSyncWorker;
 import com.google.android.gms.auth.api.signin.GoogleSignIn;
 import com.google.android.gms.auth.api.signin.GoogleSignInAccount;
-import com.google.android.gms.fitness.Fitness;
 import com.google.android.gms.fitness.FitnessOptions;
-import com.google.android.gms.fitness.data.Bucket;
-import com.google.android.gms.fitness.data.DataPoint;
-import com.google.android.gms.fitness.data.DataSet;
-import com.google.android.gms.fitness.data.DataType;
-import com.google.android.gms.fitness.data.Field;
-import com.google.android.gms.fitness.request.DataReadRequest;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 
-import java.util.Calendar;
-import java.util.List;
-import java.util.concurrent.TimeUnit;
-
 public class HomeActivity extends AppCompatActivity {
 
     private static final int GOOGLE_FIT_PERMISSIONS_REQUEST_CODE = 1001;
@@ -38,11 +33,7 @@ public class HomeActivity extends AppCompatActivity {
     private Button btnLogout;
     private FirebaseAuth mAuth;
 
-    private final FitnessOptions fitnessOptions = FitnessOptions.builder()
-            .addDataType(DataType.TYPE_STEP_COUNT_DELTA, FitnessOptions.ACCESS_READ)
-            .addDataType(DataType.TYPE_HEART_RATE_BPM, FitnessOptions.ACCESS_READ)
-            .addDataType(DataType.TYPE_CALORIES_EXPENDED, FitnessOptions.ACCESS_READ)
-            .build();
+    private final FitnessOptions fitnessOptions = FitnessRepository.FITNESS_OPTIONS;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -67,6 +58,9 @@ public class HomeActivity extends AppCompatActivity {
 
         btnLogout.setOnClickListener(view -> {
             mAuth.signOut();
+            // Cached totals belong to the signed-out account
+            FitnessRepository.getInstance(this).clear();
+            FirestoreHelper.getInstance().clearHealthDataCache();
             Intent intent = new Intent(HomeActivity.this, IntroActivity.class);
             intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
             startActivity(intent);
@@ -82,6 +76,9 @@ public class HomeActivity extends AppCompatActivity {
             return;
         }
 
+        Context appContext = getApplicationContext();
+        StartupOrchestrator.getInstance(this).runAfterFirstFrame(() -> HealthSyncWorker.schedule(appContext));
+
         if (!GoogleSignIn.hasPermissions(account, fitnessOptions)) {
             GoogleSignIn.requestPermissions(
                     this,
@@ -112,112 +109,49 @@ public class HomeActivity extends AppCompatActivity {
     }
 
     private void readAndSaveFitnessData(GoogleSignInAccount account) {
-        // Define the time range: start of day to now
-        Calendar cal = Calendar.getInstance();
-        long endTime = cal.getTimeInMillis();
-        cal.set(Calendar.HOUR_OF_DAY, 0);
-        cal.set(Calendar.MINUTE, 0);
-        cal.set(Calendar.SECOND, 0);
-        cal.set(Calendar.MILLISECOND, 0);
-        long startTime = cal.getTimeInMillis();
-
-        // Prepare request to aggregate step count and calories burned
-        DataReadRequest readRequest = new DataReadRequest.Builder()
-                .aggregate(DataType.TYPE_STEP_COUNT_DELTA, DataType.AGGREGATE_STEP_COUNT_DELTA)
-                .aggregate(DataType.TYPE_CALORIES_EXPENDED, DataType.AGGREGATE_CALORIES_EXPENDED)
-                .setTimeRange(startTime, endTime, TimeUnit.MILLISECONDS)
-                .bucketByTime(1, TimeUnit.DAYS)
-                .build();
-
-        Fitness.getHistoryClient(this, account)
-                .readData(readRequest)
-                .addOnSuccessListener(dataReadResponse -> {
-                    int totalSteps = 0;
-                    float totalCalories = 0f;
-
-                    List<Bucket> buckets = dataReadResponse.getBuckets();
-                    if (buckets != null && !buckets.isEmpty()) {
-                        for (Bucket bucket : buckets) {
-                            List<DataSet> dataSets = bucket.getDataSets();
-                            if (dataSets != null) {
-                                for (DataSet dataSet : dataSets) {
-                                    for (DataPoint dp : dataSet.getDataPoints()) {
-                                        for (Field field : dp.getDataType().getFields()) {
-                                            String fieldName = field.getName();
-                                            if (Field.FIELD_STEPS.equals(fieldName)) {
-                                                totalSteps += dp.getValue(field).asInt();
-                                            } else if (Field.FIELD_CALORIES.equals(fieldName)) {
-                                                totalCalories += dp.getValue(field).asFloat();
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
+        FitnessRepository repository = FitnessRepository.getInstance(this);
 
-                    // Now read heart rate separately
-                    readHeartRateData(account, startTime, endTime, totalSteps, totalCalories);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to read steps/calories data", e);
-                    tvSteps.setText("Steps: --");
-                    tvCalories.setText("Calories Burned: --");
-                    tvHeartRate.setText("Avg Heart Rate: --");
-                    Toast.makeText(this, "Failed to read fitness data", Toast.LENGTH_SHORT).show();
-                });
-    }
-
-    private void readHeartRateData(GoogleSignInAccount account, long startTime, long endTime,
-                                   int totalSteps, float totalCalories) {
-
-        DataReadRequest heartRateRequest = new DataReadRequest.Builder()
-                .read(DataType.TYPE_HEART_RATE_BPM)
-                .setTimeRange(startTime, endTime, TimeUnit.MILLISECONDS)
-                .build();
-
-        Fitness.getHistoryClient(this, account)
-                .readData(heartRateRequest)
-                .addOnSuccessListener(dataReadResponse -> {
-                    float totalHeartRate = 0f;
-                    int count = 0;
-
-                    List<DataSet> dataSets = dataReadResponse.getDataSets();
-                    if (dataSets != null && !dataSets.isEmpty()) {
-                        for (DataSet dataSet : dataSets) {
-                            for (DataPoint dp : dataSet.getDataPoints()) {
-                                for (Field field : dp.getDataType().getFields()) {
-                                    totalHeartRate += dp.getValue(field).asFloat();
-                                    count++;
-                                }
-                            }
-                        }
-                    }
+        // Render the cached buckets immediately; the refresh below only hits Google Fit once they expire
+        FitSyncEngine.HourlySummary cached = repository.peekTodayHourlySummary();
+        if (cached != null) {
+            showSummary(cached);
+        }
 
-                    float avgHeartRate = count > 0 ? totalHeartRate / count : 0f;
+        // Server-aggregated hourly buckets for steps, calories and heart-rate avg/min/max, read together
+        // with the heart-rate sample counts that weight the day's average
+        repository.refreshTodayHourlySummary(false)
+                .addOnSuccessListener(this, summary -> {
+                    showSummary(summary);
 
-                    // Update UI
-                    tvSteps.setText(String.format("Steps: %d", totalSteps));
-                    tvCalories.setText(String.format("Calories Burned: %.2f kcal", totalCalories));
-                    if (avgHeartRate > 0) {
-                        tvHeartRate.setText(String.format("Avg Heart Rate: %.1f bpm", avgHeartRate));
-                    } else {
-                        tvHeartRate.setText("Avg Heart Rate: --");
-                    }
-
-                    // Save data to Firestore
+                    // Store the totals locally; HealthSyncWorker pushes the outbox in the background
                     FirebaseUser currentUser = mAuth.getCurrentUser();
                     if (currentUser != null) {
-                        FirestoreHelper.getInstance()
-                                .saveDailyHealthData(currentUser.getUid(), totalSteps, totalCalories, avgHeartRate)
-                                .addOnSuccessListener(aVoid -> Log.i(TAG, "Health data saved to Firestore"))
-                                .addOnFailureListener(e -> Log.e(TAG, "Failed to save health data to Firestore", e));
+                        LocalHealthStore.getInstance(this).saveDailyHealthData(currentUser.getUid(),
+                                FirestoreHelper.dateKey(summary.getDayStart()), summary.getSteps(),
+                                summary.getCalories(), summary.getAverageHeartRate());
                     }
                 })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to read heart rate data", e);
-                    tvHeartRate.setText("Avg Heart Rate: --");
-                    Toast.makeText(this, "Failed to read heart rate data", Toast.LENGTH_SHORT).show();
+                .addOnFailureListener(this, e -> {
+                    Log.e(TAG, "Failed to read fitness data", e);
+                    if (cached == null) {
+                        tvSteps.setText("Steps: --");
+                        tvCalories.setText("Calories Burned: --");
+                        tvHeartRate.setText("Avg Heart Rate: --");
+                    }
+                    Toast.makeText(this, "Failed to read fitness data", Toast.LENGTH_SHORT).show();
                 });
     }
+
+    private void showSummary(FitSyncEngine.HourlySummary summary) {
+        float avgHeartRate = summary.getAverageHeartRate();
+
+        tvSteps.setText(String.format("Steps: %d", summary.getSteps()));
+        tvCalories.setText(String.format("Calories Burned: %.2f kcal", summary.getCalories()));
+        if (avgHeartRate > 0) {
+            tvHeartRate.setText(String.format("Avg Heart Rate: %.1f bpm (min %.0f / max %.0f)",
+                    avgHeartRate, summary.getMinHeartRate(), summary.getMaxHeartRate()));
+        } else {
+            tvHeartRate.setText("Avg Heart Rate: --");
+        }
+    }
 }
\ No newline at end of file
@@ -53,12 +53,6 @@ public class IntroActivity extends AppCompatActivity {
 
         btnStartLogin = findViewById(R.id.btn_start_login);
 
-        GoogleSignInOptions gso = new GoogleSignInOptions.Builder(GoogleSignInOptions.DEFAULT_SIGN_IN)
-                .requestIdToken(getString(R.string.default_web_client_id))
-                .requestEmail()
-                .build();
-
-        googleSignInClient = GoogleSignIn.getClient(this, gso);
         mAuth = FirebaseAuth.getInstance();
 
         btnStartLogin.setOnClickListener(v -> signIn());
@@ -79,6 +73,14 @@ public class IntroActivity extends AppCompatActivity {
     }
 
     private void signIn() {
+        // Created on demand: signed-in users go straight to the dashboard and never need it
+        if (googleSignInClient == null) {
+            GoogleSignInOptions gso = new GoogleSignInOptions.Builder(GoogleSignInOptions.DEFAULT_SIGN_IN)
+                    .requestIdToken(getString(R.string.default_web_client_id))
+                    .requestEmail()
+                    .build();
+            googleSignInClient = GoogleSignIn.getClient(this, gso);
+        }
         Intent signInIntent = googleSignInClient.getSignInIntent();
         startActivityForResult(signInIntent, RC_SIGN_IN);
     }
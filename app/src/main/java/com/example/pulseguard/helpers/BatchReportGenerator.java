@@ -0,0 +1,304 @@
+package com.example.pulseguard.helpers;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders range reports for many users at once, e.g. a caregiver's whole cohort.
+ * <p>
+ * Jobs run on a fixed pool of worker threads, so memory use grows with the pool size rather than
+ * with the number of jobs: each worker holds one report's current page at a time. Every job has
+ * its own {@link PdfReportHelper} and database cursor, and a job that fails is reported as such
+ * without affecting the others. Unchanged reports are served from {@link ReportCache} like
+ * single exports.
+ */
+public class BatchReportGenerator {
+
+    private static final String TAG = "BatchReportGenerator";
+
+    /**
+     * Receives finished jobs on the main thread.
+     */
+    public interface Listener {
+        /**
+         * Called once per job: in job order for ordered batches, otherwise as soon as each finishes.
+         */
+        void onReportFinished(@NonNull Outcome outcome);
+
+        void onBatchFinished(int succeeded, int failed);
+    }
+
+    private final Context context;
+    private final ExecutorService executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * @param context     Any context; the application context is retained
+     * @param parallelism Number of reports rendered at the same time
+     */
+    public BatchReportGenerator(@NonNull Context context, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.context = context.getApplicationContext();
+        this.executor = Executors.newFixedThreadPool(parallelism, new WorkerFactory());
+    }
+
+    /**
+     * @return a pool size that keeps every core busy without starving the UI: cores - 1, at most 4
+     */
+    public static int defaultParallelism() {
+        return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * Queues a batch. Results are delivered to the listener on the main thread.
+     *
+     * @param ordered true to deliver outcomes in job order, holding back ones that finish early
+     * @return handle to cancel the jobs that have not started yet
+     */
+    @NonNull
+    public Batch generate(@NonNull List<Job> jobs, boolean ordered, @NonNull Listener listener) {
+        Batch batch = new Batch(jobs.size(), ordered, listener);
+        for (int i = 0; i < jobs.size(); i++) {
+            Job job = jobs.get(i);
+            int index = i;
+            batch.futures.add(executor.submit(() -> batch.finished(run(index, job))));
+        }
+        if (jobs.isEmpty()) {
+            mainHandler.post(() -> listener.onBatchFinished(0, 0));
+        }
+        return batch;
+    }
+
+    /**
+     * Renders a batch and waits for all of it.
+     *
+     * @return outcomes in job order
+     */
+    @WorkerThread
+    @NonNull
+    public List<Outcome> generateBlocking(@NonNull List<Job> jobs) throws InterruptedException {
+        List<Future<Outcome>> futures = new ArrayList<>(jobs.size());
+        for (int i = 0; i < jobs.size(); i++) {
+            Job job = jobs.get(i);
+            int index = i;
+            futures.add(executor.submit(() -> run(index, job)));
+        }
+        List<Outcome> outcomes = new ArrayList<>(jobs.size());
+        for (Future<Outcome> future : futures) {
+            try {
+                outcomes.add(future.get());
+            } catch (ExecutionException e) {
+                // run() catches everything a job can throw; anything else is a bug
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * Stops the worker threads once queued jobs are done. The generator cannot be used afterwards.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private Outcome run(int index, Job job) {
+        long start = SystemClock.elapsedRealtime();
+        try {
+            ReportPipeline.Result result = ReportPipeline.renderRange(context, new PdfReportHelper(context),
+                    job.title, job.userInfo, job.userId, job.fromDate, job.toDate);
+            return new Outcome(index, job, result, null, SystemClock.elapsedRealtime() - start);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Report for " + job.userId + " failed", e);
+            return new Outcome(index, job, null, e, SystemClock.elapsedRealtime() - start);
+        }
+    }
+
+    /**
+     * A submitted batch: collects outcomes and hands them to the listener in the requested order.
+     */
+    public final class Batch {
+        private final Outcome[] outcomes;
+        private final boolean ordered;
+        private final Listener listener;
+        private final List<Future<?>> futures = new ArrayList<>();
+        private int nextToDeliver;
+        private int finished;
+        private int failed;
+        private volatile boolean cancelled;
+
+        private Batch(int size, boolean ordered, Listener listener) {
+            this.outcomes = new Outcome[size];
+            this.ordered = ordered;
+            this.listener = listener;
+        }
+
+        /**
+         * Cancels the jobs that have not started. Reports already rendering are completed but
+         * not delivered; the listener is not called again.
+         */
+        public void cancel() {
+            cancelled = true;
+            for (Future<?> future : futures) {
+                future.cancel(false);
+            }
+        }
+
+        private synchronized void finished(Outcome outcome) {
+            outcomes[outcome.index] = outcome;
+            finished++;
+            if (!outcome.isSuccessful()) {
+                failed++;
+            }
+
+            if (ordered) {
+                while (nextToDeliver < outcomes.length && outcomes[nextToDeliver] != null) {
+                    deliver(outcomes[nextToDeliver]);
+                    outcomes[nextToDeliver++] = null; // delivered; let it be collected
+                }
+            } else {
+                deliver(outcome);
+                outcomes[outcome.index] = null;
+            }
+
+            if (finished == outcomes.length) {
+                int succeeded = finished - failed;
+                int failures = failed;
+                mainHandler.post(() -> {
+                    if (!cancelled) {
+                        listener.onBatchFinished(succeeded, failures);
+                    }
+                });
+            }
+        }
+
+        private void deliver(Outcome outcome) {
+            mainHandler.post(() -> {
+                if (!cancelled) {
+                    listener.onReportFinished(outcome);
+                }
+            });
+        }
+    }
+
+    private static final class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "report-batch-" + count.incrementAndGet());
+        }
+    }
+
+    // === Data Classes ===
+
+    /**
+     * One report of a batch: a user's stored days over a date range.
+     */
+    public static class Job {
+        private final String title;
+        private final PdfReportHelper.UserInfo userInfo;
+        private final String userId;
+        private final String fromDate;
+        private final String toDate;
+
+        /**
+         * @param title    Title of the report
+         * @param userInfo User details
+         * @param userId   User whose stored days are reported
+         * @param fromDate First date (yyyy-MM-dd), inclusive
+         * @param toDate   Last date (yyyy-MM-dd), inclusive
+         */
+        public Job(@NonNull String title, @NonNull PdfReportHelper.UserInfo userInfo,
+                   @NonNull String userId, @NonNull String fromDate, @NonNull String toDate) {
+            this.title = title;
+            this.userInfo = userInfo;
+            this.userId = userId;
+            this.fromDate = fromDate;
+            this.toDate = toDate;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public String getFromDate() {
+            return fromDate;
+        }
+
+        public String getToDate() {
+            return toDate;
+        }
+    }
+
+    /**
+     * Result of one job: the report, or the error that stopped it.
+     */
+    public static class Outcome {
+        private final int index;
+        private final Job job;
+        private final ReportPipeline.Result result;
+        private final Exception error;
+        private final long elapsedMillis;
+
+        Outcome(int index, Job job, ReportPipeline.Result result, Exception error, long elapsedMillis) {
+            this.index = index;
+            this.job = job;
+            this.result = result;
+            this.error = error;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * @return position of the job in the submitted list
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public Job getJob() {
+            return job;
+        }
+
+        public boolean isSuccessful() {
+            return result != null;
+        }
+
+        @Nullable
+        public ReportPipeline.Result getResult() {
+            return result;
+        }
+
+        @Nullable
+        public Exception getError() {
+            return error;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+    }
+}
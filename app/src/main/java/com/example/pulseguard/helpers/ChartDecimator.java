@@ -0,0 +1,167 @@
+package com.example.pulseguard.helpers;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Reduces long sample series to the few hundred points a chart can actually show.
+ * <p>
+ * {@link #lttb} (largest-triangle-three-buckets) keeps the points that best preserve the visual
+ * shape of a series already held in arrays. {@link MinMaxBuckets} is a streaming alternative that
+ * keeps the extremes of fixed time buckets, so spikes survive and memory does not depend on how
+ * many samples are scanned.
+ */
+public final class ChartDecimator {
+
+    private ChartDecimator() {
+    }
+
+    /**
+     * Downsamples a series with largest-triangle-three-buckets.
+     *
+     * @param xs        Sample x values, ascending
+     * @param ys        Sample y values
+     * @param count     Number of samples to read from xs/ys
+     * @param threshold Maximum number of points to keep (at least 3 to decimate)
+     * @param outX      Receives kept x values; must hold min(count, threshold) entries
+     * @param outY      Receives kept y values; must hold min(count, threshold) entries
+     * @return number of points written
+     */
+    public static int lttb(@NonNull long[] xs, @NonNull float[] ys, int count, int threshold,
+                           @NonNull long[] outX, @NonNull float[] outY) {
+        if (threshold >= count || threshold < 3) {
+            int n = Math.min(count, outX.length);
+            System.arraycopy(xs, 0, outX, 0, n);
+            System.arraycopy(ys, 0, outY, 0, n);
+            return n;
+        }
+
+        int written = 0;
+        outX[written] = xs[0];
+        outY[written] = ys[0];
+        written++;
+
+        // First and last points are always kept; the rest are split into threshold - 2 buckets
+        double bucketSize = (double) (count - 2) / (threshold - 2);
+        int selected = 0;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Average of the next bucket, the third vertex of each candidate triangle
+            int nextStart = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, count);
+            double avgX = 0;
+            double avgY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                avgX += xs[i];
+                avgY += ys[i];
+            }
+            int nextCount = Math.max(1, nextEnd - nextStart);
+            avgX /= nextCount;
+            avgY /= nextCount;
+
+            int start = (int) Math.floor(bucket * bucketSize) + 1;
+            int end = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            double ax = xs[selected];
+            double ay = ys[selected];
+
+            double maxArea = -1;
+            int maxIndex = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((ax - avgX) * (ys[i] - ay) - (ax - xs[i]) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    maxIndex = i;
+                }
+            }
+
+            outX[written] = xs[maxIndex];
+            outY[written] = ys[maxIndex];
+            written++;
+            selected = maxIndex;
+        }
+
+        outX[written] = xs[count - 1];
+        outY[written] = ys[count - 1];
+        return written + 1;
+    }
+
+    /**
+     * Streams samples into fixed time buckets, keeping the lowest and highest sample of each.
+     * Emits at most two points per bucket regardless of how many samples were fed.
+     */
+    public static class MinMaxBuckets implements SampleConsumer {
+        private final long from;
+        private final long to;
+        private final int bucketCount;
+        private final long[] minX;
+        private final float[] minY;
+        private final long[] maxX;
+        private final float[] maxY;
+        private final boolean[] filled;
+
+        /**
+         * @param fromMillis  Start of the charted range, inclusive
+         * @param toMillis    End of the charted range, exclusive
+         * @param bucketCount Number of buckets, typically about half the chart width in points
+         */
+        public MinMaxBuckets(long fromMillis, long toMillis, int bucketCount) {
+            this.from = fromMillis;
+            this.to = toMillis;
+            this.bucketCount = bucketCount;
+            this.minX = new long[bucketCount];
+            this.minY = new float[bucketCount];
+            this.maxX = new long[bucketCount];
+            this.maxY = new float[bucketCount];
+            this.filled = new boolean[bucketCount];
+        }
+
+        @Override
+        public void accept(long timestampMillis, float value) {
+            if (timestampMillis < from || timestampMillis >= to || Float.isNaN(value)) {
+                return;
+            }
+            int bucket = (int) ((timestampMillis - from) * bucketCount / (to - from));
+            if (!filled[bucket]) {
+                filled[bucket] = true;
+                minX[bucket] = maxX[bucket] = timestampMillis;
+                minY[bucket] = maxY[bucket] = value;
+            } else if (value < minY[bucket]) {
+                minX[bucket] = timestampMillis;
+                minY[bucket] = value;
+            } else if (value > maxY[bucket]) {
+                maxX[bucket] = timestampMillis;
+                maxY[bucket] = value;
+            }
+        }
+
+        /**
+         * @return the largest number of points {@link #toPoints} can write
+         */
+        public int capacity() {
+            return bucketCount * 2;
+        }
+
+        /**
+         * Writes the kept points in time order.
+         *
+         * @return number of points written
+         */
+        public int toPoints(@NonNull long[] outX, @NonNull float[] outY) {
+            int written = 0;
+            for (int i = 0; i < bucketCount; i++) {
+                if (!filled[i]) {
+                    continue;
+                }
+                boolean minFirst = minX[i] <= maxX[i];
+                outX[written] = minFirst ? minX[i] : maxX[i];
+                outY[written] = minFirst ? minY[i] : maxY[i];
+                written++;
+                if (minX[i] != maxX[i]) {
+                    outX[written] = minFirst ? maxX[i] : minX[i];
+                    outY[written] = minFirst ? maxY[i] : minY[i];
+                    written++;
+                }
+            }
+            return written;
+        }
+    }
+}
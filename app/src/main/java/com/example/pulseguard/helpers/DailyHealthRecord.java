@@ -0,0 +1,47 @@
+package com.example.pulseguard.helpers;
+
+/**
+ * Immutable health totals of one user for one day.
+ */
+public class DailyHealthRecord {
+    private final String date;
+    private final int steps;
+    private final float calories;
+    private final float heartRate;
+    private final long updatedAt;
+
+    /**
+     * @param date      Date string in yyyy-MM-dd format
+     * @param steps     Steps count
+     * @param calories  Calories burned
+     * @param heartRate Average heart rate
+     * @param updatedAt Time of the last change, used to resolve conflicts (newest wins)
+     */
+    public DailyHealthRecord(String date, int steps, float calories, float heartRate, long updatedAt) {
+        this.date = date;
+        this.steps = steps;
+        this.calories = calories;
+        this.heartRate = heartRate;
+        this.updatedAt = updatedAt;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public int getSteps() {
+        return steps;
+    }
+
+    public float getCalories() {
+        return calories;
+    }
+
+    public float getHeartRate() {
+        return heartRate;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+}
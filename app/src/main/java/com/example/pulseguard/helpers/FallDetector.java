@@ -0,0 +1,426 @@
+package com.example.pulseguard.helpers;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detects falls in a stream of accelerometer and gyroscope readings.
+ * <p>
+ * A fall is a sequence of three phases, tracked by a small state machine:
+ * <ol>
+ *     <li>free fall: total acceleration well below 1 g for at least {@value #MIN_FREE_FALL_MILLIS} ms,</li>
+ *     <li>impact: a spike above {@value #IMPACT_G} g shortly after the free fall ends,</li>
+ *     <li>inactivity: after the impact has settled, the body lies still for
+ *     {@value #INACTIVITY_MILLIS} ms in a posture that differs from the one before the fall.</li>
+ * </ol>
+ * The posture check is what tells a fall from a jump or a stumble that ends standing up. Every
+ * reading costs a few multiplications and allocates nothing; the only state is a handful of
+ * primitives and two fixed buffers of recent readings, so the detector can run on batched sensor
+ * deliveries or on a replayed trace alike.
+ * Timestamps are the sensor's nanoseconds, so detection does not depend on when readings arrive.
+ * <p>
+ * Batched sensors keep each sensor's readings in order but not the order between sensors: a batch may
+ * deliver the accelerometer's block before or after the gyroscope's. The two streams are therefore
+ * merged by timestamp: an accelerometer reading waits until the gyroscope has caught up with it (for
+ * at most {@value #MAX_GYRO_WAIT_MILLIS} ms of later readings) and is then matched with the gyroscope
+ * reading closest in time. If none lies within {@value #MAX_SENSOR_SKEW_MILLIS} ms, e.g. on a device
+ * without a gyroscope, stillness is judged from the accelerometer alone.
+ * <p>
+ * Has no Android dependencies. Not thread-safe: feed it from one thread.
+ */
+public class FallDetector {
+
+    /**
+     * Receives confirmed falls on the thread that feeds readings.
+     */
+    public interface Listener {
+        void onFall(@NonNull Event event);
+    }
+
+    public enum State {
+        IDLE,
+        FREE_FALL,
+        AWAITING_IMPACT,
+        POST_IMPACT,
+        COOLDOWN
+    }
+
+    static final float GRAVITY = 9.80665f;
+
+    static final float FREE_FALL_G = 0.6f;
+    static final long MIN_FREE_FALL_MILLIS = 80;
+    static final long IMPACT_WINDOW_MILLIS = 500;
+    static final float IMPACT_G = 2.5f;
+    // Bounces and the body coming to rest are not expected to be still
+    static final long SETTLE_MILLIS = 1000;
+    static final float STILL_TOLERANCE_G = 0.25f;
+    static final float STILL_ROTATION_RAD_S = 0.6f;
+    static final long INACTIVITY_MILLIS = 2500;
+    // Getting up or walking on within this time means no help is needed
+    static final long MAX_RECOVERY_MILLIS = 8000;
+    static final float MIN_POSTURE_CHANGE_DEG = 35f;
+    static final long COOLDOWN_MILLIS = 30000;
+    // A longer silence means the sensor stopped; the phases have to be observed again from scratch
+    static final long MAX_SAMPLE_GAP_MILLIS = 1000;
+    // Readings of the two sensors further apart than this do not describe the same moment
+    static final long MAX_SENSOR_SKEW_MILLIS = 100;
+    // Longer than the batch latency FallMonitor requests, so a batch's gyroscope block is waited for
+    static final long MAX_GYRO_WAIT_MILLIS = 5000;
+
+    // Posture before the fall: EWMA of the gravity vector over roughly the last second at 50 Hz
+    private static final float POSTURE_ALPHA = 0.04f;
+    // Gyroscope readings kept: about 10 s at 50 Hz, enough to span a fall from free fall to confirmation
+    private static final int GYRO_HISTORY = 512;
+    // Accelerometer readings that can wait for the gyroscope; a full buffer stops waiting
+    private static final int MAX_PENDING = 512;
+
+    private static final long MIN_FREE_FALL_NANOS = TimeUnit.MILLISECONDS.toNanos(MIN_FREE_FALL_MILLIS);
+    private static final long IMPACT_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(IMPACT_WINDOW_MILLIS);
+    private static final long SETTLE_NANOS = TimeUnit.MILLISECONDS.toNanos(SETTLE_MILLIS);
+    private static final long INACTIVITY_NANOS = TimeUnit.MILLISECONDS.toNanos(INACTIVITY_MILLIS);
+    private static final long MAX_RECOVERY_NANOS = TimeUnit.MILLISECONDS.toNanos(MAX_RECOVERY_MILLIS);
+    private static final long COOLDOWN_NANOS = TimeUnit.MILLISECONDS.toNanos(COOLDOWN_MILLIS);
+    private static final long MAX_SAMPLE_GAP_NANOS = TimeUnit.MILLISECONDS.toNanos(MAX_SAMPLE_GAP_MILLIS);
+    private static final long MAX_SENSOR_SKEW_NANOS = TimeUnit.MILLISECONDS.toNanos(MAX_SENSOR_SKEW_MILLIS);
+    private static final long MAX_GYRO_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(MAX_GYRO_WAIT_MILLIS);
+    private static final float MIN_POSTURE_CHANGE_COS = (float) Math.cos(Math.toRadians(MIN_POSTURE_CHANGE_DEG));
+
+    private final Listener listener;
+
+    private State state = State.IDLE;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    private float postureX;
+    private float postureY;
+    private float postureZ;
+    private boolean hasPosture;
+
+    private long freeFallStart;
+    private long freeFallEnd;
+    private long impactTime;
+    private float peakG;
+    private long stillSince;
+    private float stillX;
+    private float stillY;
+    private float stillZ;
+    private long cooldownUntil;
+
+    // Ring buffer of recent rotation rates, oldest first from gyroHead - gyroCount
+    private final long[] gyroTimes = new long[GYRO_HISTORY];
+    private final float[] gyroRates = new float[GYRO_HISTORY];
+    private int gyroHead;
+    private int gyroCount;
+
+    // Ring buffer of accelerometer readings waiting for the gyroscope to catch up
+    private final long[] pendingTimes = new long[MAX_PENDING];
+    private final float[] pendingValues = new float[3 * MAX_PENDING];
+    private int pendingHead;
+    private int pendingCount;
+    private long lastQueued = Long.MIN_VALUE;
+
+    public FallDetector(@NonNull Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param timestampNanos Sensor timestamp of the reading
+     * @param x              Acceleration including gravity, m/s²
+     */
+    public void onAccelerometer(long timestampNanos, float x, float y, float z) {
+        if (timestampNanos <= lastQueued) {
+            return; // out-of-order reading
+        }
+        lastQueued = timestampNanos;
+        if (pendingCount == MAX_PENDING) {
+            processOldestPending();
+        }
+        int slot = (pendingHead + pendingCount) % MAX_PENDING;
+        pendingTimes[slot] = timestampNanos;
+        pendingValues[3 * slot] = x;
+        pendingValues[3 * slot + 1] = y;
+        pendingValues[3 * slot + 2] = z;
+        pendingCount++;
+        drainPending();
+    }
+
+    /**
+     * @param timestampNanos Sensor timestamp of the reading
+     * @param x              Rotation rate around the x axis, rad/s
+     */
+    public void onGyroscope(long timestampNanos, float x, float y, float z) {
+        if (gyroCount > 0 && timestampNanos <= gyroTimes[(gyroHead + GYRO_HISTORY - 1) % GYRO_HISTORY]) {
+            return; // out-of-order reading
+        }
+        gyroTimes[gyroHead] = timestampNanos;
+        gyroRates[gyroHead] = (float) Math.sqrt(x * x + y * y + z * z);
+        gyroHead = (gyroHead + 1) % GYRO_HISTORY;
+        gyroCount = Math.min(gyroCount + 1, GYRO_HISTORY);
+        drainPending();
+    }
+
+    @NonNull
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Forgets the current phase and the posture, e.g. after the user dismissed an alert.
+     */
+    public void reset() {
+        state = State.IDLE;
+        lastTimestamp = Long.MIN_VALUE;
+        hasPosture = false;
+        gyroCount = 0;
+        pendingCount = 0;
+        lastQueued = Long.MIN_VALUE;
+    }
+
+    // Processes waiting accelerometer readings in order, as far as the gyroscope has caught up
+    private void drainPending() {
+        while (pendingCount > 0) {
+            long oldest = pendingTimes[pendingHead];
+            boolean gyroCaughtUp = gyroCount == 0
+                    || gyroTimes[(gyroHead + GYRO_HISTORY - 1) % GYRO_HISTORY] >= oldest;
+            if (!gyroCaughtUp && lastQueued - oldest <= MAX_GYRO_WAIT_NANOS) {
+                return;
+            }
+            processOldestPending();
+        }
+    }
+
+    private void processOldestPending() {
+        int slot = pendingHead;
+        pendingHead = (pendingHead + 1) % MAX_PENDING;
+        pendingCount--;
+        process(pendingTimes[slot], pendingValues[3 * slot], pendingValues[3 * slot + 1], pendingValues[3 * slot + 2]);
+    }
+
+    private void process(long timestampNanos, float x, float y, float z) {
+        if (lastTimestamp != Long.MIN_VALUE && timestampNanos - lastTimestamp > MAX_SAMPLE_GAP_NANOS
+                && state != State.COOLDOWN) {
+            state = State.IDLE;
+            hasPosture = false;
+        }
+        lastTimestamp = timestampNanos;
+        float g = (float) Math.sqrt(x * x + y * y + z * z) / GRAVITY;
+
+        switch (state) {
+            case IDLE:
+                if (g < FREE_FALL_G && hasPosture) {
+                    state = State.FREE_FALL;
+                    freeFallStart = timestampNanos;
+                } else {
+                    updatePosture(x, y, z);
+                }
+                break;
+            case FREE_FALL:
+                if (g < FREE_FALL_G) {
+                    break;
+                }
+                if (timestampNanos - freeFallStart < MIN_FREE_FALL_NANOS) {
+                    state = State.IDLE; // a dip, not a fall
+                    break;
+                }
+                state = State.AWAITING_IMPACT;
+                freeFallEnd = timestampNanos;
+                awaitImpact(timestampNanos, g);
+                break;
+            case AWAITING_IMPACT:
+                awaitImpact(timestampNanos, g);
+                break;
+            case POST_IMPACT:
+                postImpact(timestampNanos, g, x, y, z);
+                break;
+            case COOLDOWN:
+                if (timestampNanos >= cooldownUntil) {
+                    state = State.IDLE;
+                    hasPosture = false;
+                }
+                break;
+        }
+    }
+
+    private void updatePosture(float x, float y, float z) {
+        if (!hasPosture) {
+            postureX = x;
+            postureY = y;
+            postureZ = z;
+            hasPosture = true;
+            return;
+        }
+        postureX += POSTURE_ALPHA * (x - postureX);
+        postureY += POSTURE_ALPHA * (y - postureY);
+        postureZ += POSTURE_ALPHA * (z - postureZ);
+    }
+
+    private void awaitImpact(long timestampNanos, float g) {
+        if (g >= IMPACT_G) {
+            state = State.POST_IMPACT;
+            impactTime = timestampNanos;
+            peakG = g;
+            stillSince = -1;
+        } else if (timestampNanos - freeFallEnd > IMPACT_WINDOW_NANOS) {
+            state = State.IDLE;
+        }
+    }
+
+    private void postImpact(long timestampNanos, float g, float x, float y, float z) {
+        long sinceImpact = timestampNanos - impactTime;
+        if (sinceImpact < SETTLE_NANOS) {
+            peakG = Math.max(peakG, g);
+            return;
+        }
+        if (sinceImpact > MAX_RECOVERY_NANOS) {
+            state = State.IDLE; // moving again: recovered, or it was not a fall
+            return;
+        }
+
+        // NaN when the gyroscope reading for this moment is missing or not delivered yet
+        float rotation = rotationAt(timestampNanos);
+        boolean still = Math.abs(g - 1f) < STILL_TOLERANCE_G
+                && (Float.isNaN(rotation) || rotation < STILL_ROTATION_RAD_S);
+        if (!still) {
+            stillSince = -1;
+            return;
+        }
+        if (stillSince < 0) {
+            stillSince = timestampNanos;
+            stillX = x;
+            stillY = y;
+            stillZ = z;
+            return;
+        }
+        // Averaged so a single noisy reading does not decide the posture
+        stillX += 0.1f * (x - stillX);
+        stillY += 0.1f * (y - stillY);
+        stillZ += 0.1f * (z - stillZ);
+        if (timestampNanos - stillSince < INACTIVITY_NANOS) {
+            return;
+        }
+
+        float postureCos = cosine(postureX, postureY, postureZ, stillX, stillY, stillZ);
+        if (postureCos > MIN_POSTURE_CHANGE_COS) {
+            state = State.IDLE; // upright again, e.g. landed a jump
+            return;
+        }
+        state = State.COOLDOWN;
+        cooldownUntil = timestampNanos + COOLDOWN_NANOS;
+        float postureChange = (float) Math.toDegrees(Math.acos(Math.max(-1f, Math.min(1f, postureCos))));
+        listener.onFall(new Event(freeFallStart, impactTime, timestampNanos, peakG,
+                peakRotation(freeFallEnd, timestampNanos), postureChange));
+    }
+
+    /**
+     * @return the rotation rate of the gyroscope reading closest to the timestamp, or NaN if there is
+     * none within {@link #MAX_SENSOR_SKEW_MILLIS}
+     */
+    private float rotationAt(long timestampNanos) {
+        // Binary search for the first kept reading at or after the timestamp
+        int low = 0;
+        int high = gyroCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (gyroTimes[gyroIndex(mid)] < timestampNanos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        long bestSkew = Long.MAX_VALUE;
+        float best = Float.NaN;
+        for (int i = low - 1; i <= low; i++) {
+            if (i < 0 || i >= gyroCount) {
+                continue;
+            }
+            long skew = Math.abs(gyroTimes[gyroIndex(i)] - timestampNanos);
+            if (skew <= MAX_SENSOR_SKEW_NANOS && skew < bestSkew) {
+                bestSkew = skew;
+                best = gyroRates[gyroIndex(i)];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return fastest kept rotation rate in [fromNanos, toNanos], or 0 if there is none
+     */
+    private float peakRotation(long fromNanos, long toNanos) {
+        float peak = 0f;
+        for (int i = gyroCount - 1; i >= 0; i--) {
+            long time = gyroTimes[gyroIndex(i)];
+            if (time < fromNanos) {
+                break;
+            }
+            if (time <= toNanos) {
+                peak = Math.max(peak, gyroRates[gyroIndex(i)]);
+            }
+        }
+        return peak;
+    }
+
+    // Ring buffer position of the i-th oldest kept gyroscope reading
+    private int gyroIndex(int i) {
+        return (gyroHead - gyroCount + i + GYRO_HISTORY) % GYRO_HISTORY;
+    }
+
+    private static float cosine(float ax, float ay, float az, float bx, float by, float bz) {
+        float norms = (float) Math.sqrt((ax * ax + ay * ay + az * az) * (bx * bx + by * by + bz * bz));
+        return norms > 0f ? (ax * bx + ay * by + az * bz) / norms : 1f;
+    }
+
+    // === Data Classes ===
+
+    /**
+     * A confirmed fall. Times are sensor timestamps in nanoseconds.
+     */
+    public static class Event {
+        private final long freeFallNanos;
+        private final long impactNanos;
+        private final long confirmedNanos;
+        private final float peakG;
+        private final float peakRotation;
+        private final float postureChangeDegrees;
+
+        Event(long freeFallNanos, long impactNanos, long confirmedNanos, float peakG, float peakRotation,
+              float postureChangeDegrees) {
+            this.freeFallNanos = freeFallNanos;
+            this.impactNanos = impactNanos;
+            this.confirmedNanos = confirmedNanos;
+            this.peakG = peakG;
+            this.peakRotation = peakRotation;
+            this.postureChangeDegrees = postureChangeDegrees;
+        }
+
+        public long getFreeFallNanos() {
+            return freeFallNanos;
+        }
+
+        public long getImpactNanos() {
+            return impactNanos;
+        }
+
+        public long getConfirmedNanos() {
+            return confirmedNanos;
+        }
+
+        /**
+         * @return strongest acceleration during and shortly after the impact, in g
+         */
+        public float getPeakG() {
+            return peakG;
+        }
+
+        /**
+         * @return fastest rotation between the end of the free fall and the confirmation, rad/s;
+         * 0 without a gyroscope or if its readings for that time had not arrived yet
+         */
+        public float getPeakRotation() {
+            return peakRotation;
+        }
+
+        public float getPostureChangeDegrees() {
+            return postureChangeDegrees;
+        }
+    }
+}
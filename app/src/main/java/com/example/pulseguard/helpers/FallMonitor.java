@@ -0,0 +1,156 @@
+package com.example.pulseguard.helpers;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds the accelerometer and gyroscope into a {@link FallDetector} while anyone holds the monitor.
+ * <p>
+ * Readings are requested at 50 Hz but batched in the sensor hub's FIFO for up to
+ * {@link #MAX_REPORT_LATENCY_US} before they are handed over, so the application processor can sleep
+ * between batches instead of waking for every reading. Wake-up sensors are preferred, so a batch is
+ * delivered even while the device is asleep. Since a fall is only confirmed after the wearer has lain
+ * still for a few seconds, the batching adds little to the time until an alert. The detector runs on
+ * its own background thread; falls are reported on the main thread.
+ */
+public class FallMonitor {
+
+    private static final String TAG = "FallMonitor";
+
+    /**
+     * Receives detected falls on the main thread.
+     */
+    public interface Listener {
+        void onFallDetected(@NonNull FallDetector.Event event);
+    }
+
+    private static final int SAMPLING_PERIOD_US = (int) TimeUnit.MILLISECONDS.toMicros(20);
+    private static final int MAX_REPORT_LATENCY_US = (int) TimeUnit.SECONDS.toMicros(4);
+
+    private static FallMonitor instance;
+
+    private final SensorManager sensorManager;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Set<Object> owners = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final FallDetector detector = new FallDetector(this::onFall);
+    private final SensorEventListener sensorListener = new SensorEventListener() {
+        @Override
+        public void onSensorChanged(SensorEvent event) {
+            float[] v = event.values;
+            if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
+                detector.onAccelerometer(event.timestamp, v[0], v[1], v[2]);
+            } else {
+                detector.onGyroscope(event.timestamp, v[0], v[1], v[2]);
+            }
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        }
+    };
+
+    private volatile Listener listener;
+    private HandlerThread sensorThread;
+
+    private FallMonitor(Context context) {
+        this.sensorManager = (SensorManager) context.getApplicationContext().getSystemService(Context.SENSOR_SERVICE);
+    }
+
+    /**
+     * Get singleton instance of FallMonitor.
+     *
+     * @param context Any context; the application context is retained
+     * @return FallMonitor instance
+     */
+    public static synchronized FallMonitor getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new FallMonitor(context);
+        }
+        return instance;
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return true if the device has an accelerometer to detect falls with
+     */
+    public boolean isAvailable() {
+        return sensorManager != null && sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER) != null;
+    }
+
+    /**
+     * Starts monitoring on behalf of an owner, if not already running.
+     */
+    public synchronized void acquire(@NonNull Object owner) {
+        owners.add(owner);
+        if (sensorThread != null || !isAvailable()) {
+            return;
+        }
+        sensorThread = new HandlerThread("fall-detector", Process.THREAD_PRIORITY_BACKGROUND);
+        sensorThread.start();
+        Handler handler = new Handler(sensorThread.getLooper());
+        // The detector is only touched from the sensor thread
+        handler.post(detector::reset);
+
+        register(Sensor.TYPE_ACCELEROMETER, handler);
+        // Optional: only refines the stillness check and the reported event
+        register(Sensor.TYPE_GYROSCOPE, handler);
+    }
+
+    /**
+     * Releases an owner's hold; the sensors are turned off when no owner is left.
+     */
+    public synchronized void release(@NonNull Object owner) {
+        owners.remove(owner);
+        if (owners.isEmpty() && sensorThread != null) {
+            sensorManager.unregisterListener(sensorListener);
+            sensorThread.quitSafely();
+            sensorThread = null;
+        }
+    }
+
+    private void register(int type, Handler handler) {
+        Sensor sensor = sensorManager.getDefaultSensor(type, true);
+        if (sensor == null) {
+            sensor = sensorManager.getDefaultSensor(type);
+        }
+        if (sensor == null) {
+            Log.i(TAG, "No sensor of type " + type);
+            return;
+        }
+        if (sensor.getFifoMaxEventCount() == 0) {
+            Log.i(TAG, sensor.getName() + " cannot batch; readings are delivered one by one");
+        }
+        sensorManager.registerListener(sensorListener, sensor, SAMPLING_PERIOD_US, MAX_REPORT_LATENCY_US, handler);
+    }
+
+    private void onFall(FallDetector.Event event) {
+        Log.w(TAG, String.format(Locale.US, "Fall detected: impact %.1f g, posture changed by %.0f°",
+                event.getPeakG(), event.getPostureChangeDegrees()));
+        mainHandler.post(() -> {
+            Listener current = listener;
+            if (current != null) {
+                current.onFallDetected(event);
+            }
+        });
+    }
+}
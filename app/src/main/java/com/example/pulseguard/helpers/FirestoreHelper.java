@@ -8,18 +8,43 @@ import androidx.annotation.Nullable;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
 import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.WriteBatch;
 
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Singleton helper class to manage Firestore operations related to user health data.
+ * <p>
+ * Besides direct writes, it offers a write-behind queue: {@link #enqueueDailyHealthData} coalesces
+ * writes per document and flushes them as {@link WriteBatch} commits once enough are pending or a
+ * short delay has passed, so backfills and frequent updates cost a handful of commits.
+ * <p>
+ * Multi-day views use {@link #getHealthDataRange}, an ordered, paginated query whose results are
+ * cached per day so overlapping ranges only fetch the days not seen recently.
  */
 public class FirestoreHelper {
 
@@ -34,9 +59,28 @@ public class FirestoreHelper {
     private static final String FIELD_HEART_RATE = "heartRate";
     private static final String FIELD_TIMESTAMP = "timestamp";
 
+    // Write-behind queue limits
+    private static final int MAX_BATCH_OPERATIONS = 500; // Firestore limit per WriteBatch
+    private static final int FLUSH_SIZE_THRESHOLD = 100;
+    private static final long FLUSH_DELAY_MS = 5000;
+    private static final int MAX_QUEUED_WRITES = 2000;
+
+    // Range queries
+    private static final int RANGE_PAGE_SIZE = 100;
+    private static final long RANGE_CACHE_TTL_MS = TimeUnit.MINUTES.toMillis(5);
+
     private static FirestoreHelper instance;
     private final FirebaseFirestore db;
 
+    // Pending writes keyed by document path, in first-enqueued order
+    private final Map<String, PendingWrite> pendingWrites = new LinkedHashMap<>();
+    private final ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor();
+    private ScheduledFuture<?> scheduledFlush;
+    private int inFlightWrites;
+
+    // Days fetched by range queries, per user
+    private final Map<String, RangeCache> rangeCaches = new HashMap<>();
+
     private FirestoreHelper() {
         db = FirebaseFirestore.getInstance();
     }
@@ -60,6 +104,13 @@ public class FirestoreHelper {
         return new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
     }
 
+    /**
+     * Returns the yyyy-MM-dd document id of the day containing the given time.
+     */
+    public static String dateKey(long timestampMillis) {
+        return getDateFormat().format(new Date(timestampMillis));
+    }
+
     /**
      * Saves daily health data for the specified user.
      *
@@ -73,27 +124,164 @@ public class FirestoreHelper {
                                           int steps,
                                           float calories,
                                           float avgHeartRate) {
-        if (userId.trim().isEmpty()) {
-            Log.e(TAG, "Invalid userId: cannot save health data.");
-            return Tasks.forException(new IllegalArgumentException("User ID cannot be empty"));
+        return saveDailyHealthData(userId, getDateFormat().format(new Date()), steps, calories, avgHeartRate);
+    }
+
+    /**
+     * Saves health data for the specified user and day.
+     *
+     * @param userId       Unique user ID
+     * @param date         Date string in yyyy-MM-dd format
+     * @param steps        Steps count
+     * @param calories     Calories burned
+     * @param avgHeartRate Average heart rate
+     * @return Task<Void> to track success/failure
+     */
+    public Task<Void> saveDailyHealthData(@NonNull String userId,
+                                          @NonNull String date,
+                                          int steps,
+                                          float calories,
+                                          float avgHeartRate) {
+        if (userId.trim().isEmpty() || date.trim().isEmpty()) {
+            Log.e(TAG, "Invalid userId or date: cannot save health data.");
+            return Tasks.forException(new IllegalArgumentException("User ID and date must not be empty"));
         }
 
-        String today = getDateFormat().format(new Date());
         Map<String, Object> data = new HashMap<>();
         data.put(FIELD_STEPS, steps);
         data.put(FIELD_CALORIES, calories);
         data.put(FIELD_HEART_RATE, avgHeartRate);
-        data.put(FIELD_TIMESTAMP, System.currentTimeMillis());
+        long timestamp = System.currentTimeMillis();
+        data.put(FIELD_TIMESTAMP, timestamp);
+        cacheWrite(userId, new DailyHealthRecord(date, steps, calories, avgHeartRate, timestamp));
 
         return db.collection(COLLECTION_USERS)
                 .document(userId)
                 .collection(SUBCOLLECTION_HEALTH_DATA)
-                .document(today)
+                .document(date)
                 .set(data)
                 .addOnSuccessListener(aVoid ->
-                        Log.d(TAG, "Health data saved successfully for user: " + userId + " on " + today))
+                        Log.d(TAG, "Health data saved successfully for user: " + userId + " on " + date))
                 .addOnFailureListener(e ->
-                        Log.e(TAG, "Failed to save health data for user: " + userId + " on " + today, e));
+                        Log.e(TAG, "Failed to save health data for user: " + userId + " on " + date, e));
+    }
+
+    /**
+     * Queues health data for the specified user and day instead of writing it immediately.
+     * A later write to the same day replaces the queued one, and both callers' tasks complete
+     * when the surviving write is committed. The record's update time is stored as the document
+     * timestamp so other devices can resolve conflicts by it.
+     *
+     * @param userId Unique user ID
+     * @param record Totals of one day
+     * @return Task<Void> completing when the write is committed, or failing immediately if the queue is full
+     */
+    public Task<Void> enqueueDailyHealthData(@NonNull String userId, @NonNull DailyHealthRecord record) {
+        String date = record.getDate();
+        if (userId.trim().isEmpty() || date == null || date.trim().isEmpty()) {
+            Log.e(TAG, "Invalid userId or date: cannot queue health data.");
+            return Tasks.forException(new IllegalArgumentException("User ID and date must not be empty"));
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put(FIELD_STEPS, record.getSteps());
+        data.put(FIELD_CALORIES, record.getCalories());
+        data.put(FIELD_HEART_RATE, record.getHeartRate());
+        data.put(FIELD_TIMESTAMP, record.getUpdatedAt());
+        cacheWrite(userId, record);
+
+        DocumentReference ref = db.collection(COLLECTION_USERS)
+                .document(userId)
+                .collection(SUBCOLLECTION_HEALTH_DATA)
+                .document(date);
+
+        boolean flushNow;
+        Task<Void> result;
+        synchronized (pendingWrites) {
+            PendingWrite existing = pendingWrites.get(ref.getPath());
+            if (existing != null) {
+                existing.data = data;
+                return existing.completion.getTask();
+            }
+
+            // Backpressure: refuse new documents while too many writes are queued or committing
+            if (pendingWrites.size() + inFlightWrites >= MAX_QUEUED_WRITES) {
+                Log.w(TAG, "Write queue full, rejecting health data for " + date);
+                return Tasks.forException(new IllegalStateException("Firestore write queue is full"));
+            }
+
+            PendingWrite write = new PendingWrite(ref, data);
+            pendingWrites.put(ref.getPath(), write);
+            result = write.completion.getTask();
+
+            flushNow = pendingWrites.size() >= FLUSH_SIZE_THRESHOLD;
+            if (!flushNow && scheduledFlush == null) {
+                scheduledFlush = flushScheduler.schedule(this::flush, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (flushNow) {
+            flush();
+        }
+        return result;
+    }
+
+    /**
+     * Commits every queued write now, in WriteBatch chunks of at most 500 operations.
+     * PulseGuardApp calls it when the app's UI is hidden so nothing is left in memory.
+     *
+     * @return Task<Void> completing when all commits finish; fails if any commit failed
+     */
+    public Task<Void> flush() {
+        List<PendingWrite> writes;
+        synchronized (pendingWrites) {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            if (pendingWrites.isEmpty()) {
+                return Tasks.forResult(null);
+            }
+            writes = new ArrayList<>(pendingWrites.values());
+            pendingWrites.clear();
+            inFlightWrites += writes.size();
+        }
+
+        List<Task<Void>> commits = new ArrayList<>();
+        for (int start = 0; start < writes.size(); start += MAX_BATCH_OPERATIONS) {
+            List<PendingWrite> chunk = writes.subList(start, Math.min(start + MAX_BATCH_OPERATIONS, writes.size()));
+            WriteBatch batch = db.batch();
+            for (PendingWrite write : chunk) {
+                batch.set(write.ref, write.data);
+            }
+            commits.add(batch.commit().addOnCompleteListener(flushScheduler, task -> {
+                synchronized (pendingWrites) {
+                    inFlightWrites -= chunk.size();
+                }
+                for (PendingWrite write : chunk) {
+                    if (task.isSuccessful()) {
+                        write.completion.trySetResult(null);
+                    } else {
+                        write.completion.trySetException(task.getException());
+                    }
+                }
+                if (task.isSuccessful()) {
+                    Log.d(TAG, "Committed batch of " + chunk.size() + " health data writes");
+                } else {
+                    Log.e(TAG, "Failed to commit batch of " + chunk.size() + " health data writes", task.getException());
+                }
+            }));
+        }
+        return Tasks.whenAll(commits);
+    }
+
+    /**
+     * @return number of writes queued but not yet handed to a commit
+     */
+    public int getPendingWriteCount() {
+        synchronized (pendingWrites) {
+            return pendingWrites.size();
+        }
     }
 
     /**
@@ -129,4 +317,262 @@ public class FirestoreHelper {
 
         return task;
     }
+
+    /**
+     * Retrieves every stored day of a user within a date range, using cached days where possible.
+     *
+     * @param userId   Unique user ID
+     * @param fromDate First date (yyyy-MM-dd), inclusive
+     * @param toDate   Last date (yyyy-MM-dd), inclusive
+     * @return Task with the stored days, oldest first; days without a document are absent
+     */
+    public Task<List<DailyHealthRecord>> getHealthDataRange(@NonNull String userId,
+                                                            @NonNull String fromDate,
+                                                            @NonNull String toDate) {
+        return getHealthDataRange(userId, fromDate, toDate, false);
+    }
+
+    /**
+     * Retrieves every stored day of a user within a date range.
+     * <p>
+     * Only the sub-ranges not fetched within the last few minutes are queried, each as one query
+     * ordered by document id and paged with a cursor, so a 90-day view costs one or two reads
+     * instead of one per day.
+     *
+     * @param userId       Unique user ID
+     * @param fromDate     First date (yyyy-MM-dd), inclusive
+     * @param toDate       Last date (yyyy-MM-dd), inclusive
+     * @param forceRefresh Query the whole range even if cached days are fresh
+     * @return Task with the stored days, oldest first; days without a document are absent
+     */
+    public Task<List<DailyHealthRecord>> getHealthDataRange(@NonNull String userId,
+                                                            @NonNull String fromDate,
+                                                            @NonNull String toDate,
+                                                            boolean forceRefresh) {
+        if (userId.trim().isEmpty() || fromDate.trim().isEmpty() || toDate.trim().isEmpty()) {
+            Log.e(TAG, "Invalid userId or date range: cannot retrieve health data.");
+            return Tasks.forException(new IllegalArgumentException("User ID and dates must not be empty"));
+        }
+        if (fromDate.compareTo(toDate) > 0) {
+            return Tasks.forResult(Collections.emptyList());
+        }
+
+        List<String> days;
+        try {
+            days = daysBetween(fromDate, toDate);
+        } catch (ParseException e) {
+            Log.e(TAG, "Invalid date range: " + fromDate + " to " + toDate, e);
+            return Tasks.forException(new IllegalArgumentException("Dates must be in yyyy-MM-dd format", e));
+        }
+
+        RangeCache cache;
+        List<String[]> missing;
+        synchronized (rangeCaches) {
+            cache = rangeCaches.get(userId);
+            if (cache == null) {
+                cache = new RangeCache();
+                rangeCaches.put(userId, cache);
+            }
+            missing = forceRefresh
+                    ? Collections.singletonList(new String[]{fromDate, toDate})
+                    : cache.missingRanges(days, System.currentTimeMillis());
+        }
+
+        final RangeCache userCache = cache;
+        if (missing.isEmpty()) {
+            synchronized (rangeCaches) {
+                return Tasks.forResult(userCache.get(fromDate, toDate));
+            }
+        }
+
+        CollectionReference collection = db.collection(COLLECTION_USERS)
+                .document(userId)
+                .collection(SUBCOLLECTION_HEALTH_DATA);
+
+        List<Task<Void>> fetches = new ArrayList<>(missing.size());
+        for (String[] range : missing) {
+            long fetchStart = System.currentTimeMillis();
+            fetches.add(fetchRange(collection, range[0], range[1], null, new ArrayList<>())
+                    .onSuccessTask(records -> {
+                        synchronized (rangeCaches) {
+                            userCache.put(range[0], range[1], records, fetchStart);
+                        }
+                        return Tasks.forResult(null);
+                    }));
+        }
+        Log.d(TAG, "Fetching " + missing.size() + " missing sub-range(s) of " + fromDate + " to " + toDate);
+
+        return Tasks.whenAll(fetches).continueWith(task -> {
+            if (!task.isSuccessful()) {
+                Log.e(TAG, "Failed to retrieve health data for " + fromDate + " to " + toDate, task.getException());
+                throw task.getException();
+            }
+            synchronized (rangeCaches) {
+                return userCache.get(fromDate, toDate);
+            }
+        });
+    }
+
+    /**
+     * Drops every cached range result, e.g. after sign-out.
+     */
+    public void clearHealthDataCache() {
+        synchronized (rangeCaches) {
+            rangeCaches.clear();
+        }
+    }
+
+    /**
+     * Reads [fromDate, toDate] page by page, continuing after the last document of each full page.
+     */
+    private Task<List<DailyHealthRecord>> fetchRange(CollectionReference collection,
+                                                     String fromDate,
+                                                     String toDate,
+                                                     @Nullable DocumentSnapshot after,
+                                                     List<DailyHealthRecord> results) {
+        Query query = collection.orderBy(FieldPath.documentId())
+                .endAt(toDate)
+                .limit(RANGE_PAGE_SIZE);
+        query = after != null ? query.startAfter(after) : query.startAt(fromDate);
+
+        return query.get().continueWithTask(task -> {
+            if (!task.isSuccessful()) {
+                return Tasks.forException(task.getException());
+            }
+            QuerySnapshot page = task.getResult();
+            List<DocumentSnapshot> documents = page.getDocuments();
+            for (DocumentSnapshot document : documents) {
+                DailyHealthRecord record = toRecord(document);
+                if (record != null) {
+                    results.add(record);
+                }
+            }
+            if (documents.size() < RANGE_PAGE_SIZE) {
+                return Tasks.forResult(results);
+            }
+            return fetchRange(collection, fromDate, toDate, documents.get(documents.size() - 1), results);
+        });
+    }
+
+    /**
+     * Keeps a cached range consistent with a write made through this helper.
+     */
+    private void cacheWrite(String userId, DailyHealthRecord record) {
+        synchronized (rangeCaches) {
+            RangeCache cache = rangeCaches.get(userId);
+            if (cache != null) {
+                cache.records.put(record.getDate(), record);
+            }
+        }
+    }
+
+    /**
+     * @return every yyyy-MM-dd date from fromDate to toDate, inclusive
+     */
+    private static List<String> daysBetween(String fromDate, String toDate) throws ParseException {
+        SimpleDateFormat format = getDateFormat();
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(format.parse(fromDate));
+
+        List<String> days = new ArrayList<>();
+        String day = format.format(calendar.getTime());
+        while (day.compareTo(toDate) <= 0) {
+            days.add(day);
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            day = format.format(calendar.getTime());
+        }
+        return days;
+    }
+
+    /**
+     * Converts a healthData document into a record.
+     *
+     * @param snapshot Document of users/{uid}/healthData, named by its yyyy-MM-dd date
+     * @return record, or null if the document does not exist
+     */
+    @Nullable
+    public static DailyHealthRecord toRecord(@NonNull DocumentSnapshot snapshot) {
+        if (!snapshot.exists()) {
+            return null;
+        }
+        Long steps = snapshot.getLong(FIELD_STEPS);
+        Double calories = snapshot.getDouble(FIELD_CALORIES);
+        Double heartRate = snapshot.getDouble(FIELD_HEART_RATE);
+        Long timestamp = snapshot.getLong(FIELD_TIMESTAMP);
+        return new DailyHealthRecord(snapshot.getId(),
+                steps != null ? steps.intValue() : 0,
+                calories != null ? calories.floatValue() : 0f,
+                heartRate != null ? heartRate.floatValue() : 0f,
+                timestamp != null ? timestamp : 0L);
+    }
+
+    /**
+     * A queued document write and the task shared by every caller coalesced into it.
+     */
+    private static class PendingWrite {
+        final DocumentReference ref;
+        Map<String, Object> data;
+        final TaskCompletionSource<Void> completion = new TaskCompletionSource<>();
+
+        PendingWrite(DocumentReference ref, Map<String, Object> data) {
+            this.ref = ref;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Range query results of one user: the stored days and when each day was last queried.
+     * Guarded by {@code rangeCaches}.
+     */
+    private static class RangeCache {
+        final TreeMap<String, DailyHealthRecord> records = new TreeMap<>();
+        final Map<String, Long> fetchedAt = new HashMap<>();
+
+        /**
+         * Groups the days that were never fetched, or not recently, into contiguous [from, to] ranges.
+         */
+        List<String[]> missingRanges(List<String> days, long now) {
+            List<String[]> missing = new ArrayList<>();
+            String runStart = null;
+            String runEnd = null;
+            for (String day : days) {
+                Long fetched = fetchedAt.get(day);
+                boolean stale = fetched == null || now - fetched > RANGE_CACHE_TTL_MS;
+                if (stale) {
+                    if (runStart == null) {
+                        runStart = day;
+                    }
+                    runEnd = day;
+                } else if (runStart != null) {
+                    missing.add(new String[]{runStart, runEnd});
+                    runStart = null;
+                }
+            }
+            if (runStart != null) {
+                missing.add(new String[]{runStart, runEnd});
+            }
+            return missing;
+        }
+
+        /**
+         * Replaces the cached days of [fromDate, toDate] with a query result.
+         */
+        void put(String fromDate, String toDate, List<DailyHealthRecord> fetched, long fetchTime) {
+            records.subMap(fromDate, true, toDate, true).clear();
+            for (DailyHealthRecord record : fetched) {
+                records.put(record.getDate(), record);
+            }
+            try {
+                for (String day : daysBetween(fromDate, toDate)) {
+                    fetchedAt.put(day, fetchTime);
+                }
+            } catch (ParseException e) {
+                // Validated before querying
+            }
+        }
+
+        List<DailyHealthRecord> get(String fromDate, String toDate) {
+            return new ArrayList<>(records.subMap(fromDate, true, toDate, true).values());
+        }
+    }
 }
@@ -0,0 +1,901 @@
+package com.example.pulseguard.helpers;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.auth.api.signin.GoogleSignInAccount;
+import com.google.android.gms.fitness.Fitness;
+import com.google.android.gms.fitness.HistoryClient;
+import com.google.android.gms.fitness.data.Bucket;
+import com.google.android.gms.fitness.data.DataPoint;
+import com.google.android.gms.fitness.data.DataSet;
+import com.google.android.gms.fitness.data.DataType;
+import com.google.android.gms.fitness.data.Field;
+import com.google.android.gms.fitness.request.DataReadRequest;
+import com.google.android.gms.fitness.result.DataReadResponse;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Incremental Google Fit reader for today's totals.
+ * <p>
+ * Instead of re-reading everything since midnight, the engine persists per data type the newest time
+ * it has seen data for (the watermark) and a settled boundary on the hour at least six hours behind
+ * it. Hours before the boundary are folded into persisted settled totals. The hours after it are open:
+ * steps and calories come from server-side hourly buckets re-read on every sync (a handful of
+ * buckets), so points a wearable uploads hours late still count and are never counted twice. Raw
+ * heart rate, which the percentiles need, is read only after the watermark and kept as statistics per
+ * open hour; an open hour whose server summary no longer matches its statistics received late samples
+ * and is re-read on its own. The first sync of a day (or after {@link #reset()}) reads from midnight.
+ * <p>
+ * {@link #syncHourlySummary(GoogleSignInAccount)} is the lighter alternative for screens that only need
+ * totals and heart-rate avg/min/max: steps, calories and the heart-rate summary are aggregated by the
+ * server into hourly buckets, and only the hours since the last summary sync are re-read. Those hours'
+ * heart-rate samples are also counted, so the day's average is weighted by sample rather than by hour.
+ */
+public class FitSyncEngine {
+
+    private static final String TAG = "FitSyncEngine";
+
+    private static final String PREFS_NAME = "PulseGuardFitSync";
+    private static final String KEY_DAY = "day";
+    private static final String KEY_FORMAT = "format";
+    private static final String KEY_WATERMARK_STEPS = "watermark_steps";
+    private static final String KEY_WATERMARK_CALORIES = "watermark_calories";
+    private static final String KEY_WATERMARK_HEART_RATE = "watermark_heart_rate";
+    private static final String KEY_SETTLED_AT_STEPS = "settled_at_steps";
+    private static final String KEY_SETTLED_AT_CALORIES = "settled_at_calories";
+    private static final String KEY_SETTLED_AT_HEART_RATE = "settled_at_heart_rate";
+    private static final String KEY_SETTLED_STEPS = "settled_steps";
+    private static final String KEY_SETTLED_CALORIES = "settled_calories";
+    private static final String KEY_SETTLED_HEART_RATE_STATS = "settled_heart_rate_stats";
+    private static final String KEY_OPEN_HEART_RATE_STATS = "open_heart_rate_stats";
+    private static final String KEY_LAST_SYNC = "last_sync";
+    private static final String KEY_STEPS = "steps";
+    private static final String KEY_CALORIES = "calories";
+    private static final String KEY_HEART_RATE_STATS = "heart_rate_stats";
+    private static final String KEY_LATEST_HEART_RATE = "latest_heart_rate";
+    private static final String KEY_LATEST_HEART_RATE_TIME = "latest_heart_rate_time";
+    private static final String KEY_HOURLY_DAY = "hourly_day";
+    private static final String KEY_HOURLY_WATERMARK = "hourly_watermark";
+    private static final String KEY_HOURLY_STEPS = "hourly_steps";
+    private static final String KEY_HOURLY_CALORIES = "hourly_calories";
+    private static final String KEY_HOURLY_HEART_RATE_AVG = "hourly_heart_rate_avg";
+    private static final String KEY_HOURLY_HEART_RATE_MIN = "hourly_heart_rate_min";
+    private static final String KEY_HOURLY_HEART_RATE_MAX = "hourly_heart_rate_max";
+    private static final String KEY_HOURLY_HEART_RATE_COUNT = "hourly_heart_rate_count";
+
+    // Settled boundaries are on whole hours since version 2
+    private static final int FORMAT_VERSION = 2;
+
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+    // How far behind the newest point of a type data may still arrive and be counted
+    private static final long LATE_DATA_WINDOW_MILLIS = TimeUnit.HOURS.toMillis(6);
+    // Server summaries are single-precision; a larger difference means the hour received late samples
+    private static final float SUMMARY_TOLERANCE_BPM = 0.05f;
+    // 25 slots so a daylight-saving day with an extra hour still fits
+    private static final int HOURS_PER_DAY = 25;
+
+    private static FitSyncEngine instance;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    // Merging and persisting happen off the main thread, one sync at a time
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private Task<DailySummary> inFlight;
+    private Task<HourlySummary> hourlyInFlight;
+
+    private FitSyncEngine(Context context) {
+        this.context = context.getApplicationContext();
+        this.prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Get singleton instance of FitSyncEngine.
+     *
+     * @param context Any context; the application context is retained
+     * @return FitSyncEngine instance
+     */
+    public static synchronized FitSyncEngine getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new FitSyncEngine(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Reads what was recorded since the last sync and merges it into today's totals: steps, calories
+     * and a per-hour heart-rate summary as server-side hourly buckets since the oldest settled
+     * boundary, and raw heart rate only after the newest sample already counted. Hours whose summary
+     * no longer matches the samples counted for them received late data and are re-read in full.
+     * Concurrent callers share the same in-flight read.
+     *
+     * @param account Signed-in Google account with Fit read permission
+     * @return Task with the updated totals for today
+     */
+    public synchronized Task<DailySummary> sync(@NonNull GoogleSignInAccount account) {
+        if (inFlight != null && !inFlight.isComplete()) {
+            return inFlight;
+        }
+
+        long now = System.currentTimeMillis();
+        long dayStart = startOfDay(now);
+        DailySummary cached = loadSummary(dayStart);
+
+        // Buckets are cheap (a day is 25 of them), so one request covers the oldest open hour of all types
+        long bucketsFrom = Math.min(cached.settledAtSteps,
+                Math.min(cached.settledAtCalories, cached.settledAtHeartRate));
+        // The sample at the watermark was counted already, unless nothing was counted yet
+        long heartRateFrom = cached.heartRateStats.getCount() > 0
+                ? cached.watermarkHeartRate + 1 : cached.watermarkHeartRate;
+
+        HistoryClient history = Fitness.getHistoryClient(context, account);
+        Task<DataReadResponse> buckets = history.readData(new DataReadRequest.Builder()
+                .aggregate(DataType.TYPE_STEP_COUNT_DELTA, DataType.AGGREGATE_STEP_COUNT_DELTA)
+                .aggregate(DataType.TYPE_CALORIES_EXPENDED, DataType.AGGREGATE_CALORIES_EXPENDED)
+                .aggregate(DataType.TYPE_HEART_RATE_BPM, DataType.AGGREGATE_HEART_RATE_SUMMARY)
+                .bucketByTime(1, TimeUnit.HOURS)
+                .setTimeRange(bucketsFrom, now, TimeUnit.MILLISECONDS)
+                .build());
+        Task<DataReadResponse> heartRate = history.readData(
+                readRequest(DataType.TYPE_HEART_RATE_BPM, heartRateFrom, now));
+
+        Log.d(TAG, "Syncing " + (now - bucketsFrom) / HOUR_MILLIS + " h of buckets and "
+                + (now - heartRateFrom) + " ms of heart rate");
+
+        inFlight = Tasks.whenAll(buckets, heartRate)
+                .continueWithTask(executor, task -> {
+                    List<Integer> staleHours = merge(cached, buckets.getResult(), heartRate.getResult(),
+                            heartRateFrom, now);
+                    if (staleHours.isEmpty()) {
+                        return Tasks.forResult(settle(cached, now));
+                    }
+
+                    Log.d(TAG, "Re-reading heart rate of hours " + staleHours);
+                    List<Task<DataReadResponse>> rereads = new ArrayList<>(staleHours.size());
+                    for (int hour : staleHours) {
+                        long hourStart = dayStart + hour * HOUR_MILLIS;
+                        rereads.add(history.readData(readRequest(DataType.TYPE_HEART_RATE_BPM,
+                                hourStart, Math.min(hourStart + HOUR_MILLIS, now))));
+                    }
+                    return Tasks.whenAll(rereads).continueWith(executor, reread -> {
+                        for (int i = 0; i < staleHours.size(); i++) {
+                            replaceHeartRateHour(cached, staleHours.get(i), rereads.get(i).getResult(), now);
+                        }
+                        return settle(cached, now);
+                    });
+                });
+        return inFlight;
+    }
+
+    /**
+     * Makes sure {@link HealthTimeSeriesStore} holds every heart-rate sample in [from, to), e.g. before
+     * a report charts the whole day. Only the part the store does not already hold in full is read;
+     * after a cold start that is everything before the first sync's window.
+     *
+     * @param account Signed-in Google account with Fit read permission
+     * @return Task that resolves to true once the range is complete in the store
+     */
+    public Task<Boolean> loadHeartRate(@NonNull GoogleSignInAccount account, long from, long to) {
+        HealthTimeSeriesStore store = HealthTimeSeriesStore.getInstance();
+        long missingUntil = store.completeFrom(HealthTimeSeriesStore.Metric.HEART_RATE, to);
+        if (missingUntil <= from) {
+            return Tasks.forResult(true);
+        }
+
+        return Fitness.getHistoryClient(context, account)
+                .readData(readRequest(DataType.TYPE_HEART_RATE_BPM, from, missingUntil))
+                .continueWith(executor, task -> {
+                    for (DataSet dataSet : task.getResult().getDataSets()) {
+                        store.appendDataSet(dataSet);
+                    }
+                    store.markComplete(HealthTimeSeriesStore.Metric.HEART_RATE, from, missingUntil);
+                    return store.isComplete(HealthTimeSeriesStore.Metric.HEART_RATE, from, to);
+                });
+    }
+
+    /**
+     * Reads today's totals as server-side hourly aggregates, with a concurrent raw heart-rate read of
+     * the same window for the per-hour sample counts. Hours that were already summarised are not read
+     * again, except the last (partial) one.
+     *
+     * @param account Signed-in Google account with Fit read permission
+     * @return Task with steps, calories and heart-rate avg/min/max for today
+     */
+    public synchronized Task<HourlySummary> syncHourlySummary(@NonNull GoogleSignInAccount account) {
+        if (hourlyInFlight != null && !hourlyInFlight.isComplete()) {
+            return hourlyInFlight;
+        }
+
+        long now = System.currentTimeMillis();
+        long dayStart = startOfDay(now);
+        HourlySummary cached = loadHourlySummary(dayStart);
+
+        // Restart at the beginning of the hour containing the watermark so that bucket is complete
+        long windowStart = dayStart + ((cached.watermark - dayStart) / HOUR_MILLIS) * HOUR_MILLIS;
+
+        DataReadRequest request = new DataReadRequest.Builder()
+                .aggregate(DataType.TYPE_STEP_COUNT_DELTA, DataType.AGGREGATE_STEP_COUNT_DELTA)
+                .aggregate(DataType.TYPE_CALORIES_EXPENDED, DataType.AGGREGATE_CALORIES_EXPENDED)
+                .aggregate(DataType.TYPE_HEART_RATE_BPM, DataType.AGGREGATE_HEART_RATE_SUMMARY)
+                .bucketByTime(1, TimeUnit.HOURS)
+                .setTimeRange(windowStart, now, TimeUnit.MILLISECONDS)
+                .build();
+
+        // The heart-rate summary has no sample count, so the same window is read raw to weight the hours
+        HistoryClient history = Fitness.getHistoryClient(context, account);
+        Task<DataReadResponse> buckets = history.readData(request);
+        Task<DataReadResponse> heartRate = history.readData(
+                readRequest(DataType.TYPE_HEART_RATE_BPM, windowStart, now));
+
+        hourlyInFlight = Tasks.whenAll(buckets, heartRate)
+                .continueWith(executor, task -> mergeBuckets(cached, buckets.getResult(),
+                        heartRate.getResult(), windowStart, now));
+        return hourlyInFlight;
+    }
+
+    /**
+     * Reads the hourly aggregates of a whole past day, e.g. to record its final totals after midnight.
+     * Nothing is cached; today is read with {@link #syncHourlySummary(GoogleSignInAccount)} instead.
+     *
+     * @param account  Signed-in Google account with Fit read permission
+     * @param dayStart Midnight of the day, from {@link #startOfDay(long)}
+     * @return Task with the day's steps, calories and heart-rate avg/min/max
+     */
+    public Task<HourlySummary> readHourlySummary(@NonNull GoogleSignInAccount account, long dayStart) {
+        // Next midnight, also on daylight-saving days with 23 or 25 hours
+        long dayEnd = startOfDay(dayStart + TimeUnit.HOURS.toMillis(HOURS_PER_DAY));
+        DataReadRequest request = new DataReadRequest.Builder()
+                .aggregate(DataType.TYPE_STEP_COUNT_DELTA, DataType.AGGREGATE_STEP_COUNT_DELTA)
+                .aggregate(DataType.TYPE_CALORIES_EXPENDED, DataType.AGGREGATE_CALORIES_EXPENDED)
+                .aggregate(DataType.TYPE_HEART_RATE_BPM, DataType.AGGREGATE_HEART_RATE_SUMMARY)
+                .bucketByTime(1, TimeUnit.HOURS)
+                .setTimeRange(dayStart, dayEnd, TimeUnit.MILLISECONDS)
+                .build();
+
+        HistoryClient history = Fitness.getHistoryClient(context, account);
+        Task<DataReadResponse> buckets = history.readData(request);
+        Task<DataReadResponse> heartRate = history.readData(
+                readRequest(DataType.TYPE_HEART_RATE_BPM, dayStart, dayEnd));
+
+        return Tasks.whenAll(buckets, heartRate)
+                .continueWith(executor, task -> {
+                    HourlySummary summary = new HourlySummary(dayStart);
+                    fillBuckets(summary, buckets.getResult());
+                    countHeartRate(summary, heartRate.getResult(), dayStart, dayEnd);
+                    summary.watermark = dayEnd;
+                    return summary;
+                });
+    }
+
+    /**
+     * Returns the persisted totals for today without contacting Google Fit.
+     */
+    @NonNull
+    public DailySummary getCachedSummary() {
+        return loadSummary(startOfDay(System.currentTimeMillis()));
+    }
+
+    /**
+     * Returns the persisted hourly buckets for today without contacting Google Fit.
+     */
+    @NonNull
+    public HourlySummary getCachedHourlySummary() {
+        return loadHourlySummary(startOfDay(System.currentTimeMillis()));
+    }
+
+    /**
+     * Forgets all watermarks so the next sync re-reads the whole day.
+     */
+    public void reset() {
+        prefs.edit().clear().apply();
+    }
+
+    private static DataReadRequest readRequest(DataType type, long from, long to) {
+        return new DataReadRequest.Builder()
+                .read(type)
+                .setTimeRange(from, to, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Rebuilds the open (unsettled) part of the steps and calorie totals from the hourly buckets and
+     * adds the new heart-rate samples to the stats of their hour.
+     *
+     * @return hours whose heart-rate summary on the server differs from the samples counted for them
+     */
+    private List<Integer> merge(DailySummary summary, DataReadResponse buckets, DataReadResponse heartRate,
+                                long heartRateFrom, long now) {
+        HealthTimeSeriesStore store = HealthTimeSeriesStore.getInstance();
+
+        for (DataSet dataSet : heartRate.getDataSets()) {
+            store.appendDataSet(dataSet);
+            for (DataPoint dp : dataSet.getDataPoints()) {
+                addHeartRate(summary, dp, now);
+            }
+        }
+        store.markComplete(HealthTimeSeriesStore.Metric.HEART_RATE, heartRateFrom, now);
+
+        float[] steps = new float[HOURS_PER_DAY];
+        float[] calories = new float[HOURS_PER_DAY];
+        HourlySummary serverHeartRate = new HourlySummary(summary.dayStart);
+        for (Bucket bucket : buckets.getBuckets()) {
+            int hour = (int) ((bucket.getStartTime(TimeUnit.MILLISECONDS) - summary.dayStart) / HOUR_MILLIS);
+            if (hour < 0 || hour >= HOURS_PER_DAY) {
+                continue;
+            }
+            for (DataSet dataSet : bucket.getDataSets()) {
+                DataType type = dataSet.getDataType();
+                for (DataPoint dp : dataSet.getDataPoints()) {
+                    if (DataType.AGGREGATE_STEP_COUNT_DELTA.equals(type)) {
+                        steps[hour] += dp.getValue(Field.FIELD_STEPS).asInt();
+                    } else if (DataType.AGGREGATE_CALORIES_EXPENDED.equals(type)) {
+                        calories[hour] += dp.getValue(Field.FIELD_CALORIES).asFloat();
+                    } else if (DataType.AGGREGATE_HEART_RATE_SUMMARY.equals(type)) {
+                        serverHeartRate.heartRateAvg[hour] = dp.getValue(Field.FIELD_AVERAGE).asFloat();
+                        serverHeartRate.heartRateMin[hour] = dp.getValue(Field.FIELD_MIN).asFloat();
+                        serverHeartRate.heartRateMax[hour] = dp.getValue(Field.FIELD_MAX).asFloat();
+                    }
+                }
+            }
+        }
+
+        // Every open hour was just read again in full, so the open part of each total is rebuilt here
+        // rather than added to what an earlier sync counted
+        summary.watermarkSteps = newestHour(summary, steps, summary.watermarkSteps, now);
+        long stepsSettledAt = settledBoundary(summary.dayStart, summary.settledAtSteps, summary.watermarkSteps);
+        float recentSteps = 0f;
+        for (int hour = hourOf(summary, summary.settledAtSteps); hour < HOURS_PER_DAY; hour++) {
+            if (summary.dayStart + (hour + 1) * HOUR_MILLIS <= stepsSettledAt) {
+                summary.settledSteps += (int) steps[hour];
+            } else {
+                recentSteps += steps[hour];
+            }
+        }
+        summary.settledAtSteps = stepsSettledAt;
+        summary.steps = summary.settledSteps + (int) recentSteps;
+
+        summary.watermarkCalories = newestHour(summary, calories, summary.watermarkCalories, now);
+        long caloriesSettledAt = settledBoundary(summary.dayStart, summary.settledAtCalories,
+                summary.watermarkCalories);
+        float recentCalories = 0f;
+        for (int hour = hourOf(summary, summary.settledAtCalories); hour < HOURS_PER_DAY; hour++) {
+            if (summary.dayStart + (hour + 1) * HOUR_MILLIS <= caloriesSettledAt) {
+                summary.settledCalories += calories[hour];
+            } else {
+                recentCalories += calories[hour];
+            }
+        }
+        summary.settledAtCalories = caloriesSettledAt;
+        summary.calories = summary.settledCalories + recentCalories;
+
+        List<Integer> staleHours = new ArrayList<>();
+        for (int hour = hourOf(summary, summary.settledAtHeartRate); hour < HOURS_PER_DAY; hour++) {
+            if (!matches(summary.openHeartRate[hour], serverHeartRate, hour)) {
+                staleHours.add(hour);
+            }
+        }
+        return staleHours;
+    }
+
+    /**
+     * Replaces the heart-rate stats of one open hour with a full re-read of that hour.
+     */
+    private static void replaceHeartRateHour(DailySummary summary, int hour, DataReadResponse response, long now) {
+        HealthTimeSeriesStore store = HealthTimeSeriesStore.getInstance();
+        summary.openHeartRate[hour] = null;
+        for (DataSet dataSet : response.getDataSets()) {
+            store.appendDataSet(dataSet);
+            for (DataPoint dp : dataSet.getDataPoints()) {
+                addHeartRate(summary, dp, now);
+            }
+        }
+    }
+
+    private static void addHeartRate(DailySummary summary, DataPoint dp, long now) {
+        long timestamp = dp.getTimestamp(TimeUnit.MILLISECONDS);
+        int hour = hourOf(summary, timestamp);
+        if (timestamp < summary.settledAtHeartRate || timestamp > now || hour >= HOURS_PER_DAY) {
+            return;
+        }
+        float bpm = dp.getValue(Field.FIELD_BPM).asFloat();
+        if (summary.openHeartRate[hour] == null) {
+            summary.openHeartRate[hour] = new HeartRateStats();
+        }
+        summary.openHeartRate[hour].add(bpm);
+        summary.watermarkHeartRate = Math.max(summary.watermarkHeartRate, timestamp);
+        if (timestamp >= summary.latestHeartRateTime) {
+            summary.latestHeartRateTime = timestamp;
+            summary.latestHeartRate = bpm;
+        }
+    }
+
+    /**
+     * @return true if the samples counted for an hour agree with the server's summary of it
+     */
+    private static boolean matches(HeartRateStats counted, HourlySummary server, int hour) {
+        float avg = server.heartRateAvg[hour];
+        if (counted == null || counted.getCount() == 0) {
+            return Float.isNaN(avg);
+        }
+        return !Float.isNaN(avg)
+                && Math.abs(counted.getMean() - avg) <= SUMMARY_TOLERANCE_BPM
+                && Math.abs(counted.getMin() - server.heartRateMin[hour]) <= SUMMARY_TOLERANCE_BPM
+                && Math.abs(counted.getMax() - server.heartRateMax[hour]) <= SUMMARY_TOLERANCE_BPM;
+    }
+
+    /**
+     * Folds heart-rate hours that ended before the settled boundary into the settled stats, rebuilds
+     * the day's statistics and persists the summary.
+     */
+    private DailySummary settle(DailySummary summary, long now) {
+        long heartRateSettledAt = settledBoundary(summary.dayStart, summary.settledAtHeartRate,
+                summary.watermarkHeartRate);
+        HeartRateStats open = new HeartRateStats();
+        for (int hour = 0; hour < HOURS_PER_DAY; hour++) {
+            HeartRateStats stats = summary.openHeartRate[hour];
+            if (stats == null) {
+                continue;
+            }
+            if (summary.dayStart + (hour + 1) * HOUR_MILLIS <= heartRateSettledAt) {
+                summary.settledHeartRateStats.merge(stats);
+                summary.openHeartRate[hour] = null;
+            } else {
+                open.merge(stats);
+            }
+        }
+        summary.settledAtHeartRate = heartRateSettledAt;
+        summary.heartRateStats = summary.settledHeartRateStats.copy();
+        summary.heartRateStats.merge(open);
+
+        summary.lastSyncTime = now;
+        saveSummary(summary);
+        return summary;
+    }
+
+    /**
+     * @return the end of the newest hour with a non-zero value, capped at now, or {@code watermark} if
+     * it is newer
+     */
+    private static long newestHour(DailySummary summary, float[] values, long watermark, long now) {
+        for (int hour = HOURS_PER_DAY - 1; hour >= 0; hour--) {
+            if (values[hour] > 0f) {
+                return Math.max(watermark, Math.min(summary.dayStart + (hour + 1) * HOUR_MILLIS, now));
+            }
+        }
+        return watermark;
+    }
+
+    private static int hourOf(DailySummary summary, long timestamp) {
+        return (int) ((timestamp - summary.dayStart) / HOUR_MILLIS);
+    }
+
+    /**
+     * Hours ending up to this boundary are final; only the hours within the late-data window of the
+     * newest data are re-read. The boundary is on an hour and never moves back.
+     */
+    private static long settledBoundary(long dayStart, long settledAt, long watermark) {
+        long hours = Math.floorDiv(watermark - LATE_DATA_WINDOW_MILLIS - dayStart, HOUR_MILLIS);
+        return Math.max(settledAt, dayStart + hours * HOUR_MILLIS);
+    }
+
+    private HourlySummary mergeBuckets(HourlySummary summary, DataReadResponse buckets, DataReadResponse heartRate,
+                                       long windowStart, long now) {
+        fillBuckets(summary, buckets);
+        countHeartRate(summary, heartRate, windowStart, now);
+        summary.watermark = now;
+        prefs.edit()
+                .putLong(KEY_HOURLY_DAY, summary.dayStart)
+                .putLong(KEY_HOURLY_WATERMARK, summary.watermark)
+                .putString(KEY_HOURLY_STEPS, encode(summary.steps))
+                .putString(KEY_HOURLY_CALORIES, encode(summary.calories))
+                .putString(KEY_HOURLY_HEART_RATE_AVG, encode(summary.heartRateAvg))
+                .putString(KEY_HOURLY_HEART_RATE_MIN, encode(summary.heartRateMin))
+                .putString(KEY_HOURLY_HEART_RATE_MAX, encode(summary.heartRateMax))
+                .putString(KEY_HOURLY_HEART_RATE_COUNT, encode(summary.heartRateCount))
+                .apply();
+        return summary;
+    }
+
+    /**
+     * Replaces the sample counts of the hours in [from, to) with those of a raw heart-rate read of
+     * that window. The samples also go into {@link HealthTimeSeriesStore}, which then holds the window
+     * in full.
+     */
+    private static void countHeartRate(HourlySummary summary, DataReadResponse response, long from, long to) {
+        HealthTimeSeriesStore store = HealthTimeSeriesStore.getInstance();
+        for (int hour = (int) ((from - summary.dayStart) / HOUR_MILLIS); hour < HOURS_PER_DAY; hour++) {
+            if (summary.dayStart + hour * HOUR_MILLIS >= to) {
+                break;
+            }
+            summary.heartRateCount[hour] = 0f;
+        }
+        for (DataSet dataSet : response.getDataSets()) {
+            store.appendDataSet(dataSet);
+            for (DataPoint dp : dataSet.getDataPoints()) {
+                int hour = (int) ((dp.getTimestamp(TimeUnit.MILLISECONDS) - summary.dayStart) / HOUR_MILLIS);
+                if (hour >= 0 && hour < HOURS_PER_DAY && dp.getValue(Field.FIELD_BPM).asFloat() > 0f) {
+                    summary.heartRateCount[hour]++;
+                }
+            }
+        }
+        store.markComplete(HealthTimeSeriesStore.Metric.HEART_RATE, from, to);
+    }
+
+    private static void fillBuckets(HourlySummary summary, DataReadResponse response) {
+        for (Bucket bucket : response.getBuckets()) {
+            int hour = (int) ((bucket.getStartTime(TimeUnit.MILLISECONDS) - summary.dayStart) / HOUR_MILLIS);
+            if (hour < 0 || hour >= HOURS_PER_DAY) {
+                continue;
+            }
+            // A re-read bucket replaces whatever was stored for that hour
+            summary.clearHour(hour);
+            for (DataSet dataSet : bucket.getDataSets()) {
+                DataType type = dataSet.getDataType();
+                for (DataPoint dp : dataSet.getDataPoints()) {
+                    if (DataType.AGGREGATE_STEP_COUNT_DELTA.equals(type)) {
+                        summary.steps[hour] += dp.getValue(Field.FIELD_STEPS).asInt();
+                    } else if (DataType.AGGREGATE_CALORIES_EXPENDED.equals(type)) {
+                        summary.calories[hour] += dp.getValue(Field.FIELD_CALORIES).asFloat();
+                    } else if (DataType.AGGREGATE_HEART_RATE_SUMMARY.equals(type)) {
+                        summary.heartRateAvg[hour] = dp.getValue(Field.FIELD_AVERAGE).asFloat();
+                        summary.heartRateMin[hour] = dp.getValue(Field.FIELD_MIN).asFloat();
+                        summary.heartRateMax[hour] = dp.getValue(Field.FIELD_MAX).asFloat();
+                    }
+                }
+            }
+        }
+    }
+
+    private HourlySummary loadHourlySummary(long dayStart) {
+        HourlySummary summary = new HourlySummary(dayStart);
+        if (prefs.getLong(KEY_HOURLY_DAY, -1L) != dayStart) {
+            return summary;
+        }
+        summary.watermark = prefs.getLong(KEY_HOURLY_WATERMARK, dayStart);
+        decode(prefs.getString(KEY_HOURLY_STEPS, null), summary.steps);
+        decode(prefs.getString(KEY_HOURLY_CALORIES, null), summary.calories);
+        decode(prefs.getString(KEY_HOURLY_HEART_RATE_AVG, null), summary.heartRateAvg);
+        decode(prefs.getString(KEY_HOURLY_HEART_RATE_MIN, null), summary.heartRateMin);
+        decode(prefs.getString(KEY_HOURLY_HEART_RATE_MAX, null), summary.heartRateMax);
+        String counts = prefs.getString(KEY_HOURLY_HEART_RATE_COUNT, null);
+        if (counts != null) {
+            decode(counts, summary.heartRateCount);
+        } else {
+            // Written before counts were kept: re-read the day so its average can be weighted
+            summary.watermark = dayStart;
+        }
+        return summary;
+    }
+
+    private static String encode(float[] values) {
+        StringBuilder sb = new StringBuilder(values.length * 6);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(values[i]);
+        }
+        return sb.toString();
+    }
+
+    private static void decode(String encoded, float[] out) {
+        if (encoded == null) {
+            return;
+        }
+        String[] parts = encoded.split(",");
+        for (int i = 0; i < parts.length && i < out.length; i++) {
+            try {
+                out[i] = Float.parseFloat(parts[i]);
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Ignoring corrupt hourly value: " + parts[i]);
+            }
+        }
+    }
+
+    /**
+     * Writes the non-empty hours as {@code hour=stats} pairs separated by '|'.
+     */
+    private static String encodeHours(HeartRateStats[] hours) {
+        StringBuilder sb = new StringBuilder();
+        for (int hour = 0; hour < hours.length; hour++) {
+            if (hours[hour] != null) {
+                if (sb.length() > 0) {
+                    sb.append('|');
+                }
+                sb.append(hour).append('=').append(hours[hour].encode());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return false if the string is missing or unreadable
+     */
+    private static boolean decodeHours(String encoded, HeartRateStats[] out) {
+        if (encoded == null) {
+            return false;
+        }
+        if (encoded.isEmpty()) {
+            return true;
+        }
+        for (String entry : encoded.split("\\|")) {
+            int separator = entry.indexOf('=');
+            try {
+                int hour = Integer.parseInt(entry.substring(0, Math.max(separator, 0)));
+                HeartRateStats stats = HeartRateStats.decode(entry.substring(separator + 1));
+                if (hour < 0 || hour >= out.length || stats == null) {
+                    return false;
+                }
+                out[hour] = stats;
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Ignoring corrupt hourly heart-rate stats: " + entry);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private DailySummary loadSummary(long dayStart) {
+        DailySummary summary = new DailySummary(dayStart);
+        if (prefs.getLong(KEY_DAY, -1L) != dayStart || prefs.getInt(KEY_FORMAT, 1) != FORMAT_VERSION) {
+            // New day, first run, or boundaries written by an older version that were not on an hour:
+            // start from midnight with empty totals
+            return summary;
+        }
+        summary.watermarkSteps = prefs.getLong(KEY_WATERMARK_STEPS, dayStart);
+        summary.watermarkCalories = prefs.getLong(KEY_WATERMARK_CALORIES, dayStart);
+        summary.watermarkHeartRate = prefs.getLong(KEY_WATERMARK_HEART_RATE, dayStart);
+        // Missing boundaries (first run after an upgrade) default to midnight: the whole day is re-read
+        summary.settledAtSteps = prefs.getLong(KEY_SETTLED_AT_STEPS, dayStart);
+        summary.settledAtCalories = prefs.getLong(KEY_SETTLED_AT_CALORIES, dayStart);
+        summary.settledAtHeartRate = prefs.getLong(KEY_SETTLED_AT_HEART_RATE, dayStart);
+        summary.settledSteps = prefs.getInt(KEY_SETTLED_STEPS, 0);
+        summary.settledCalories = prefs.getFloat(KEY_SETTLED_CALORIES, 0f);
+        summary.steps = prefs.getInt(KEY_STEPS, 0);
+        summary.calories = prefs.getFloat(KEY_CALORIES, 0f);
+        HeartRateStats stats = HeartRateStats.decode(prefs.getString(KEY_HEART_RATE_STATS, null));
+        HeartRateStats settledStats = HeartRateStats.decode(prefs.getString(KEY_SETTLED_HEART_RATE_STATS, null));
+        if (stats != null && settledStats != null
+                && decodeHours(prefs.getString(KEY_OPEN_HEART_RATE_STATS, null), summary.openHeartRate)) {
+            summary.heartRateStats.merge(stats);
+            summary.settledHeartRateStats.merge(settledStats);
+        } else {
+            // Missing or unreadable: re-read today's heart rate to rebuild the statistics
+            Arrays.fill(summary.openHeartRate, null);
+            summary.settledAtHeartRate = dayStart;
+            summary.watermarkHeartRate = dayStart;
+        }
+        summary.lastSyncTime = prefs.getLong(KEY_LAST_SYNC, 0L);
+        summary.latestHeartRate = prefs.getFloat(KEY_LATEST_HEART_RATE, 0f);
+        summary.latestHeartRateTime = prefs.getLong(KEY_LATEST_HEART_RATE_TIME, 0L);
+        return summary;
+    }
+
+    private void saveSummary(DailySummary summary) {
+        prefs.edit()
+                .putLong(KEY_DAY, summary.dayStart)
+                .putInt(KEY_FORMAT, FORMAT_VERSION)
+                .putLong(KEY_WATERMARK_STEPS, summary.watermarkSteps)
+                .putLong(KEY_WATERMARK_CALORIES, summary.watermarkCalories)
+                .putLong(KEY_WATERMARK_HEART_RATE, summary.watermarkHeartRate)
+                .putLong(KEY_SETTLED_AT_STEPS, summary.settledAtSteps)
+                .putLong(KEY_SETTLED_AT_CALORIES, summary.settledAtCalories)
+                .putLong(KEY_SETTLED_AT_HEART_RATE, summary.settledAtHeartRate)
+                .putInt(KEY_SETTLED_STEPS, summary.settledSteps)
+                .putFloat(KEY_SETTLED_CALORIES, summary.settledCalories)
+                .putString(KEY_SETTLED_HEART_RATE_STATS, summary.settledHeartRateStats.encode())
+                .putString(KEY_OPEN_HEART_RATE_STATS, encodeHours(summary.openHeartRate))
+                .putLong(KEY_LAST_SYNC, summary.lastSyncTime)
+                .putInt(KEY_STEPS, summary.steps)
+                .putFloat(KEY_CALORIES, summary.calories)
+                .putString(KEY_HEART_RATE_STATS, summary.heartRateStats.encode())
+                .putFloat(KEY_LATEST_HEART_RATE, summary.latestHeartRate)
+                .putLong(KEY_LATEST_HEART_RATE_TIME, summary.latestHeartRateTime)
+                .apply();
+    }
+
+    /**
+     * Returns midnight (local time) of the day containing the given timestamp.
+     */
+    public static long startOfDay(long timestampMillis) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTimeInMillis(timestampMillis);
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        return cal.getTimeInMillis();
+    }
+
+    // === Data Classes ===
+
+    /**
+     * Totals for one day as of the last sync.
+     */
+    public static class DailySummary {
+        private final long dayStart;
+        // Newest end time seen per type
+        private long watermarkSteps;
+        private long watermarkCalories;
+        private long watermarkHeartRate;
+        // Hours ending up to these times (always on an hour) are final and included in the settled totals
+        private long settledAtSteps;
+        private long settledAtCalories;
+        private long settledAtHeartRate;
+        private int settledSteps;
+        private float settledCalories;
+        private final HeartRateStats settledHeartRateStats = new HeartRateStats();
+        // Stats of each hour after the heart-rate boundary, null for hours without samples
+        private final HeartRateStats[] openHeartRate = new HeartRateStats[HOURS_PER_DAY];
+        private int steps;
+        private float calories;
+        private HeartRateStats heartRateStats = new HeartRateStats();
+        private float latestHeartRate;
+        private long latestHeartRateTime;
+        private long lastSyncTime;
+
+        DailySummary(long dayStart) {
+            this.dayStart = dayStart;
+            this.watermarkSteps = dayStart;
+            this.watermarkCalories = dayStart;
+            this.watermarkHeartRate = dayStart;
+            this.settledAtSteps = dayStart;
+            this.settledAtCalories = dayStart;
+            this.settledAtHeartRate = dayStart;
+        }
+
+        public long getDayStart() {
+            return dayStart;
+        }
+
+        public int getSteps() {
+            return steps;
+        }
+
+        public float getCalories() {
+            return calories;
+        }
+
+        /**
+         * @return average BPM over all samples of the day, or 0 if there are none
+         */
+        public float getAverageHeartRate() {
+            return heartRateStats.getCount() > 0 ? heartRateStats.getMean() : 0f;
+        }
+
+        /**
+         * @return mean, variance, min/max and percentiles over all samples of the day (a copy)
+         */
+        public HeartRateStats getHeartRateStats() {
+            return heartRateStats.copy();
+        }
+
+        /**
+         * @return most recent BPM of the day, or 0 if there is none
+         */
+        public float getLatestHeartRate() {
+            return latestHeartRate;
+        }
+
+        public long getLastSyncTime() {
+            return lastSyncTime;
+        }
+    }
+
+    /**
+     * Server-aggregated hourly buckets for one day. Heart-rate slots are NaN for hours without data.
+     * Each hour also keeps its number of heart-rate samples, so the day's average weights every
+     * sample equally.
+     */
+    public static class HourlySummary {
+        private final long dayStart;
+        private long watermark;
+        private final float[] steps = new float[HOURS_PER_DAY];
+        private final float[] calories = new float[HOURS_PER_DAY];
+        private final float[] heartRateAvg = new float[HOURS_PER_DAY];
+        private final float[] heartRateMin = new float[HOURS_PER_DAY];
+        private final float[] heartRateMax = new float[HOURS_PER_DAY];
+        private final float[] heartRateCount = new float[HOURS_PER_DAY];
+
+        HourlySummary(long dayStart) {
+            this.dayStart = dayStart;
+            this.watermark = dayStart;
+            for (int hour = 0; hour < HOURS_PER_DAY; hour++) {
+                clearHour(hour);
+            }
+        }
+
+        void clearHour(int hour) {
+            steps[hour] = 0f;
+            calories[hour] = 0f;
+            heartRateAvg[hour] = Float.NaN;
+            heartRateMin[hour] = Float.NaN;
+            heartRateMax[hour] = Float.NaN;
+            heartRateCount[hour] = 0f;
+        }
+
+        public long getDayStart() {
+            return dayStart;
+        }
+
+        public int getSteps() {
+            float total = 0f;
+            for (float value : steps) {
+                total += value;
+            }
+            return (int) total;
+        }
+
+        public float getCalories() {
+            float total = 0f;
+            for (float value : calories) {
+                total += value;
+            }
+            return total;
+        }
+
+        /**
+         * @return average BPM over all samples of the day (the hourly averages weighted by their sample
+         * counts), or 0 if there is no heart-rate data
+         */
+        public float getAverageHeartRate() {
+            double total = 0;
+            double samples = 0;
+            for (int hour = 0; hour < HOURS_PER_DAY; hour++) {
+                if (!Float.isNaN(heartRateAvg[hour])) {
+                    // An hour the raw read found no samples for still counts, as a single sample
+                    float weight = Math.max(heartRateCount[hour], 1f);
+                    total += (double) heartRateAvg[hour] * weight;
+                    samples += weight;
+                }
+            }
+            return samples > 0 ? (float) (total / samples) : 0f;
+        }
+
+        /**
+         * @return lowest BPM of the day, or 0 if there is no heart-rate data
+         */
+        public float getMinHeartRate() {
+            float min = Float.NaN;
+            for (float value : heartRateMin) {
+                if (!Float.isNaN(value) && (Float.isNaN(min) || value < min)) {
+                    min = value;
+                }
+            }
+            return Float.isNaN(min) ? 0f : min;
+        }
+
+        /**
+         * @return highest BPM of the day, or 0 if there is no heart-rate data
+         */
+        public float getMaxHeartRate() {
+            float max = Float.NaN;
+            for (float value : heartRateMax) {
+                if (!Float.isNaN(value) && (Float.isNaN(max) || value > max)) {
+                    max = value;
+                }
+            }
+            return Float.isNaN(max) ? 0f : max;
+        }
+
+        /**
+         * @return steps recorded in the given hour of the day (0-based)
+         */
+        public int getStepsForHour(int hour) {
+            return hour >= 0 && hour < HOURS_PER_DAY ? (int) steps[hour] : 0;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.pulseguard.helpers;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.auth.api.signin.GoogleSignIn;
+import com.google.android.gms.auth.api.signin.GoogleSignInAccount;
+import com.google.android.gms.fitness.FitnessOptions;
+import com.google.android.gms.fitness.data.DataType;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide entry point for today's Google Fit data, shared by every screen.
+ * <p>
+ * Results are kept in a small in-memory LRU keyed by summary kind and day, backed on disk by the
+ * totals {@link FitSyncEngine} persists. Each kind has its own time-to-live: callers render
+ * {@link #peekTodaySummary()} / {@link #peekTodayHourlySummary()} straight away and then call the
+ * matching {@code refresh} method, which only goes to Google Fit once the cached copy has expired.
+ */
+public class FitnessRepository {
+
+    private static final String TAG = "FitnessRepository";
+
+    /**
+     * Fit data types the app reads; shared so every screen requests the same permission set.
+     */
+    public static final FitnessOptions FITNESS_OPTIONS = FitnessOptions.builder()
+            .addDataType(DataType.TYPE_STEP_COUNT_DELTA, FitnessOptions.ACCESS_READ)
+            .addDataType(DataType.TYPE_CALORIES_EXPENDED, FitnessOptions.ACCESS_READ)
+            .addDataType(DataType.TYPE_HEART_RATE_BPM, FitnessOptions.ACCESS_READ)
+            .build();
+
+    private static final String PREFS_NAME = "PulseGuardFitnessCache";
+    private static final String KEY_FETCHED_PREFIX = "fetched_";
+
+    private static final String KIND_DAILY = "daily";
+    private static final String KIND_HOURLY = "hourly";
+
+    // Raw totals carry the latest heart rate, so they go stale sooner than the hourly buckets
+    private static final long DAILY_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOURLY_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final int MEMORY_CACHE_ENTRIES = 14;
+
+    private static FitnessRepository instance;
+
+    private final Context context;
+    private final FitSyncEngine syncEngine;
+    private final SharedPreferences prefs;
+    private final LruCache<String, CacheEntry> memoryCache = new LruCache<>(MEMORY_CACHE_ENTRIES);
+
+    private FitnessRepository(Context context) {
+        this.context = context.getApplicationContext();
+        this.syncEngine = FitSyncEngine.getInstance(this.context);
+        this.prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        pruneExpiredDays();
+    }
+
+    /**
+     * Get singleton instance of FitnessRepository.
+     *
+     * @param context Any context; the application context is retained
+     * @return FitnessRepository instance
+     */
+    public static synchronized FitnessRepository getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new FitnessRepository(context);
+        }
+        return instance;
+    }
+
+    /**
+     * @return the signed-in Google account, or null if the user has not signed in
+     */
+    @Nullable
+    public GoogleSignInAccount getAccount() {
+        return GoogleSignIn.getLastSignedInAccount(context);
+    }
+
+    /**
+     * @return true if the signed-in account has granted every data type in {@link #FITNESS_OPTIONS}
+     */
+    public boolean hasFitnessPermissions() {
+        GoogleSignInAccount account = getAccount();
+        return account != null && GoogleSignIn.hasPermissions(account, FITNESS_OPTIONS);
+    }
+
+    /**
+     * Returns today's cached raw-read totals (memory first, then disk) without any network access.
+     *
+     * @return cached totals, or null if today was never synced
+     */
+    @Nullable
+    public FitSyncEngine.DailySummary peekTodaySummary() {
+        String key = key(KIND_DAILY, System.currentTimeMillis());
+        CacheEntry entry = memoryCache.get(key);
+        if (entry != null) {
+            return (FitSyncEngine.DailySummary) entry.value;
+        }
+        long fetchedAt = prefs.getLong(KEY_FETCHED_PREFIX + key, -1L);
+        if (fetchedAt < 0) {
+            return null;
+        }
+        FitSyncEngine.DailySummary summary = syncEngine.getCachedSummary();
+        memoryCache.put(key, new CacheEntry(summary, fetchedAt));
+        return summary;
+    }
+
+    /**
+     * Returns today's cached hourly buckets (memory first, then disk) without any network access.
+     *
+     * @return cached buckets, or null if today was never summarised
+     */
+    @Nullable
+    public FitSyncEngine.HourlySummary peekTodayHourlySummary() {
+        String key = key(KIND_HOURLY, System.currentTimeMillis());
+        CacheEntry entry = memoryCache.get(key);
+        if (entry != null) {
+            return (FitSyncEngine.HourlySummary) entry.value;
+        }
+        long fetchedAt = prefs.getLong(KEY_FETCHED_PREFIX + key, -1L);
+        if (fetchedAt < 0) {
+            return null;
+        }
+        FitSyncEngine.HourlySummary summary = syncEngine.getCachedHourlySummary();
+        memoryCache.put(key, new CacheEntry(summary, fetchedAt));
+        return summary;
+    }
+
+    /**
+     * Returns today's totals, syncing with Google Fit only if the cached copy is older than its TTL.
+     *
+     * @param force true to bypass the TTL, e.g. after the user pulls to refresh
+     * @return Task with today's totals
+     */
+    public Task<FitSyncEngine.DailySummary> refreshTodaySummary(boolean force) {
+        String key = key(KIND_DAILY, System.currentTimeMillis());
+        FitSyncEngine.DailySummary cached = peekTodaySummary();
+        if (!force && cached != null && isFresh(key, DAILY_TTL_MILLIS)) {
+            return Tasks.forResult(cached);
+        }
+
+        GoogleSignInAccount account = getAccount();
+        if (account == null) {
+            return Tasks.forException(new IllegalStateException("Google account not signed in"));
+        }
+        return syncEngine.sync(account)
+                .addOnSuccessListener(summary -> store(key, summary))
+                .addOnFailureListener(e -> Log.w(TAG, "Revalidation of " + key + " failed", e));
+    }
+
+    /**
+     * Returns today's hourly buckets, syncing with Google Fit only if the cached copy is older than its TTL.
+     *
+     * @param force true to bypass the TTL
+     * @return Task with today's hourly buckets
+     */
+    public Task<FitSyncEngine.HourlySummary> refreshTodayHourlySummary(boolean force) {
+        String key = key(KIND_HOURLY, System.currentTimeMillis());
+        FitSyncEngine.HourlySummary cached = peekTodayHourlySummary();
+        if (!force && cached != null && isFresh(key, HOURLY_TTL_MILLIS)) {
+            return Tasks.forResult(cached);
+        }
+
+        GoogleSignInAccount account = getAccount();
+        if (account == null) {
+            return Tasks.forException(new IllegalStateException("Google account not signed in"));
+        }
+        return syncEngine.syncHourlySummary(account)
+                .addOnSuccessListener(summary -> store(key, summary))
+                .addOnFailureListener(e -> Log.w(TAG, "Revalidation of " + key + " failed", e));
+    }
+
+    /**
+     * Reads the hourly buckets of a past day from Google Fit. Not cached: past days are read rarely,
+     * e.g. once after midnight to record the previous day's final totals.
+     *
+     * @param dayStart Midnight of the day, from {@link FitSyncEngine#startOfDay(long)}
+     * @return Task with the day's hourly buckets
+     */
+    public Task<FitSyncEngine.HourlySummary> readDayHourlySummary(long dayStart) {
+        GoogleSignInAccount account = getAccount();
+        if (account == null) {
+            return Tasks.forException(new IllegalStateException("Google account not signed in"));
+        }
+        return syncEngine.readHourlySummary(account, dayStart);
+    }
+
+    /**
+     * Makes sure {@link HealthTimeSeriesStore} holds every heart-rate sample of a day up to now, reading
+     * from Google Fit only what the store is missing.
+     *
+     * @param dayStart Midnight of the day, from {@link FitSyncEngine#startOfDay(long)}
+     * @return Task that resolves to true once the day is complete in the store
+     */
+    public Task<Boolean> loadDayHeartRate(long dayStart) {
+        GoogleSignInAccount account = getAccount();
+        if (account == null) {
+            return Tasks.forException(new IllegalStateException("Google account not signed in"));
+        }
+        long until = Math.min(System.currentTimeMillis(), dayStart + TimeUnit.DAYS.toMillis(1));
+        return syncEngine.loadHeartRate(account, dayStart, until);
+    }
+
+    /**
+     * Drops every cached entry and the engine's watermarks, e.g. on sign-out.
+     */
+    public void clear() {
+        memoryCache.evictAll();
+        prefs.edit().clear().apply();
+        syncEngine.reset();
+        HealthTimeSeriesStore.getInstance().clear();
+    }
+
+    private void store(String key, Object value) {
+        long now = System.currentTimeMillis();
+        memoryCache.put(key, new CacheEntry(value, now));
+        prefs.edit().putLong(KEY_FETCHED_PREFIX + key, now).apply();
+    }
+
+    // Disk entries only describe today; forget fetch times recorded for earlier days
+    private void pruneExpiredDays() {
+        String todaySuffix = ":" + HealthTimeSeriesStore.epochDay(System.currentTimeMillis());
+        SharedPreferences.Editor editor = prefs.edit();
+        for (String key : prefs.getAll().keySet()) {
+            if (!key.endsWith(todaySuffix)) {
+                editor.remove(key);
+            }
+        }
+        editor.apply();
+    }
+
+    private boolean isFresh(String key, long ttlMillis) {
+        CacheEntry entry = memoryCache.get(key);
+        return entry != null && System.currentTimeMillis() - entry.fetchedAt < ttlMillis;
+    }
+
+    private static String key(String kind, long timestampMillis) {
+        return kind + ":" + HealthTimeSeriesStore.epochDay(timestampMillis);
+    }
+
+    private static class CacheEntry {
+        final Object value;
+        final long fetchedAt;
+
+        CacheEntry(Object value, long fetchedAt) {
+            this.value = value;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
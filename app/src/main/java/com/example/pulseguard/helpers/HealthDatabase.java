@@ -0,0 +1,136 @@
+package com.example.pulseguard.helpers;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+/**
+ * SQLite schema for data the app keeps on the device.
+ */
+public class HealthDatabase extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "pulseguard.db";
+    private static final int DATABASE_VERSION = 3;
+
+    // Daily totals, the local source of truth for users/{uid}/healthData
+    static final String TABLE_DAILY_HEALTH = "daily_health";
+    static final String COLUMN_USER_ID = "user_id";
+    static final String COLUMN_DATE = "date";
+    static final String COLUMN_STEPS = "steps";
+    static final String COLUMN_CALORIES = "calories";
+    static final String COLUMN_HEART_RATE = "heart_rate";
+    static final String COLUMN_UPDATED_AT = "updated_at";
+
+    // Days changed locally and not yet pushed to Firestore (one row per day)
+    static final String TABLE_OUTBOX = "health_outbox";
+    static final String COLUMN_ENQUEUED_AT = "enqueued_at";
+
+    // SOS messages, one row per recipient, kept until they are sent or given up on
+    static final String TABLE_SOS_OUTBOX = "sos_outbox";
+    static final String COLUMN_ID = "_id";
+    static final String COLUMN_RECIPIENT = "recipient";
+    static final String COLUMN_MESSAGE = "message";
+    static final String COLUMN_STATUS = "status";
+    static final String COLUMN_ATTEMPTS = "attempts";
+    static final String COLUMN_PARTS = "parts";
+    static final String COLUMN_PARTS_SENT = "parts_sent";
+    static final String COLUMN_PARTS_DELIVERED = "parts_delivered";
+    static final String COLUMN_CREATED_AT = "created_at";
+    static final String COLUMN_LAST_ATTEMPT_AT = "last_attempt_at";
+
+    // Recorded location trails, simplified and stored as encoded polylines (see PolylineCodec)
+    static final String TABLE_TRAILS = "trails";
+    static final String COLUMN_STARTED_AT = "started_at";
+    static final String COLUMN_ENDED_AT = "ended_at";
+    static final String COLUMN_RECORDING = "recording";
+    static final String COLUMN_DISTANCE_M = "distance_m";
+    static final String COLUMN_POINT_COUNT = "point_count";
+    static final String COLUMN_POLYLINE = "polyline";
+    static final String COLUMN_TIMELINE = "timeline";
+
+    private static HealthDatabase instance;
+
+    private HealthDatabase(Context context) {
+        super(context.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    /**
+     * Get singleton instance of HealthDatabase.
+     *
+     * @param context Any context; the application context is retained
+     * @return HealthDatabase instance
+     */
+    public static synchronized HealthDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = new HealthDatabase(context);
+        }
+        return instance;
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // Readers do not block the writer
+        db.enableWriteAheadLogging();
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_DAILY_HEALTH + " ("
+                + COLUMN_USER_ID + " TEXT NOT NULL, "
+                + COLUMN_DATE + " TEXT NOT NULL, "
+                + COLUMN_STEPS + " INTEGER NOT NULL, "
+                + COLUMN_CALORIES + " REAL NOT NULL, "
+                + COLUMN_HEART_RATE + " REAL NOT NULL, "
+                + COLUMN_UPDATED_AT + " INTEGER NOT NULL, "
+                + "PRIMARY KEY (" + COLUMN_USER_ID + ", " + COLUMN_DATE + "))");
+
+        db.execSQL("CREATE TABLE " + TABLE_OUTBOX + " ("
+                + COLUMN_USER_ID + " TEXT NOT NULL, "
+                + COLUMN_DATE + " TEXT NOT NULL, "
+                + COLUMN_ENQUEUED_AT + " INTEGER NOT NULL, "
+                + "PRIMARY KEY (" + COLUMN_USER_ID + ", " + COLUMN_DATE + "))");
+
+        createSosOutbox(db);
+        createTrails(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            createSosOutbox(db);
+        }
+        if (oldVersion < 3) {
+            createTrails(db);
+        }
+    }
+
+    private static void createSosOutbox(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SOS_OUTBOX + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COLUMN_RECIPIENT + " TEXT NOT NULL, "
+                + COLUMN_MESSAGE + " TEXT NOT NULL, "
+                + COLUMN_STATUS + " TEXT NOT NULL, "
+                + COLUMN_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_PARTS + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_PARTS_SENT + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_PARTS_DELIVERED + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_CREATED_AT + " INTEGER NOT NULL, "
+                + COLUMN_LAST_ATTEMPT_AT + " INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE INDEX idx_sos_outbox_status ON " + TABLE_SOS_OUTBOX + " (" + COLUMN_STATUS + ")");
+    }
+
+    private static void createTrails(SQLiteDatabase db) {
+        // timeline holds the seconds between consecutive points, delta-coded like the polyline
+        db.execSQL("CREATE TABLE " + TABLE_TRAILS + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COLUMN_STARTED_AT + " INTEGER NOT NULL, "
+                + COLUMN_ENDED_AT + " INTEGER NOT NULL, "
+                + COLUMN_RECORDING + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_DISTANCE_M + " REAL NOT NULL DEFAULT 0, "
+                + COLUMN_POINT_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_POLYLINE + " TEXT NOT NULL DEFAULT '', "
+                + COLUMN_TIMELINE + " TEXT NOT NULL DEFAULT '')");
+        db.execSQL("CREATE INDEX idx_trails_started_at ON " + TABLE_TRAILS + " (" + COLUMN_STARTED_AT + ")");
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.pulseguard.helpers;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.fitness.data.DataPoint;
+import com.google.android.gms.fitness.data.DataSet;
+import com.google.android.gms.fitness.data.DataType;
+import com.google.android.gms.fitness.data.Field;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide in-memory store of intraday health samples.
+ * <p>
+ * Each metric keeps one {@link TimeSeries} per local calendar day, so a full day of 1 Hz heart-rate
+ * samples takes about 1 MB. Only the most recent {@link #MAX_DAYS} days are retained per metric.
+ * Screens append what they read from Google Fit and query ranges and aggregates from here instead
+ * of re-walking {@link DataSet} objects.
+ * <p>
+ * The store starts empty in every process, so it also tracks which time range of each metric was
+ * read from Google Fit in full ({@link #markComplete}); readers that need a whole day check
+ * {@link #isComplete} and fetch only the part before {@link #completeFrom}.
+ */
+public class HealthTimeSeriesStore {
+
+    public enum Metric {
+        HEART_RATE,
+        STEPS,
+        CALORIES
+    }
+
+    private static final int MAX_DAYS = 7;
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private static HealthTimeSeriesStore instance;
+
+    // Per metric: local epoch day -> samples of that day
+    private final Map<Metric, TreeMap<Long, TimeSeries>> days = new EnumMap<>(Metric.class);
+    // Per metric: {from, until} of the newest contiguous range read in full, absent if none
+    private final Map<Metric, long[]> complete = new EnumMap<>(Metric.class);
+
+    private HealthTimeSeriesStore() {
+        for (Metric metric : Metric.values()) {
+            days.put(metric, new TreeMap<>());
+        }
+    }
+
+    /**
+     * Get singleton instance of HealthTimeSeriesStore.
+     *
+     * @return HealthTimeSeriesStore instance
+     */
+    public static synchronized HealthTimeSeriesStore getInstance() {
+        if (instance == null) {
+            instance = new HealthTimeSeriesStore();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the local epoch day (days since 1970-01-01 in the default time zone) of a timestamp.
+     */
+    public static long epochDay(long timestampMillis) {
+        long local = timestampMillis + TimeZone.getDefault().getOffset(timestampMillis);
+        return Math.floorDiv(local, DAY_MILLIS);
+    }
+
+    /**
+     * Appends a single sample to the series of the day it falls in.
+     */
+    public void append(@NonNull Metric metric, long timestampMillis, float value) {
+        series(metric, epochDay(timestampMillis)).append(timestampMillis, value);
+    }
+
+    /**
+     * Appends every point of a Google Fit data set. Interval types (steps, calories) are stamped with
+     * the end of their interval; unsupported data types are ignored.
+     */
+    public void appendDataSet(@NonNull DataSet dataSet) {
+        DataType type = dataSet.getDataType();
+        if (DataType.TYPE_HEART_RATE_BPM.equals(type)) {
+            for (DataPoint dp : dataSet.getDataPoints()) {
+                append(Metric.HEART_RATE, dp.getTimestamp(TimeUnit.MILLISECONDS),
+                        dp.getValue(Field.FIELD_BPM).asFloat());
+            }
+        } else if (DataType.TYPE_STEP_COUNT_DELTA.equals(type)) {
+            for (DataPoint dp : dataSet.getDataPoints()) {
+                append(Metric.STEPS, dp.getEndTime(TimeUnit.MILLISECONDS),
+                        dp.getValue(Field.FIELD_STEPS).asInt());
+            }
+        } else if (DataType.TYPE_CALORIES_EXPENDED.equals(type)) {
+            for (DataPoint dp : dataSet.getDataPoints()) {
+                append(Metric.CALORIES, dp.getEndTime(TimeUnit.MILLISECONDS),
+                        dp.getValue(Field.FIELD_CALORIES).asFloat());
+            }
+        }
+    }
+
+    /**
+     * Returns the series for a metric and day, creating it if needed. Creating a new day may evict
+     * the oldest retained day of that metric.
+     */
+    @NonNull
+    public synchronized TimeSeries series(@NonNull Metric metric, long epochDay) {
+        TreeMap<Long, TimeSeries> metricDays = days.get(metric);
+        TimeSeries series = metricDays.get(epochDay);
+        if (series == null) {
+            series = new TimeSeries();
+            metricDays.put(epochDay, series);
+            while (metricDays.size() > MAX_DAYS) {
+                metricDays.pollFirstEntry();
+            }
+        }
+        return series;
+    }
+
+    /**
+     * Returns the series for a metric and day, or null if nothing was recorded.
+     */
+    @Nullable
+    public synchronized TimeSeries peekSeries(@NonNull Metric metric, long epochDay) {
+        return days.get(metric).get(epochDay);
+    }
+
+    /**
+     * Feeds every sample of a metric in [fromMillis, toMillis) to the consumer in time order,
+     * crossing day boundaries as needed.
+     *
+     * @return number of samples visited
+     */
+    public int scan(@NonNull Metric metric, long fromMillis, long toMillis, @NonNull SampleConsumer consumer) {
+        int visited = 0;
+        for (long day = epochDay(fromMillis), last = epochDay(toMillis - 1); day <= last; day++) {
+            TimeSeries series = peekSeries(metric, day);
+            if (series != null) {
+                visited += series.scan(fromMillis, toMillis, consumer);
+            }
+        }
+        return visited;
+    }
+
+    public int count(@NonNull Metric metric, long fromMillis, long toMillis) {
+        int count = 0;
+        for (long day = epochDay(fromMillis), last = epochDay(toMillis - 1); day <= last; day++) {
+            TimeSeries series = peekSeries(metric, day);
+            if (series != null) {
+                count += series.count(fromMillis, toMillis);
+            }
+        }
+        return count;
+    }
+
+    public double sum(@NonNull Metric metric, long fromMillis, long toMillis) {
+        double sum = 0;
+        for (long day = epochDay(fromMillis), last = epochDay(toMillis - 1); day <= last; day++) {
+            TimeSeries series = peekSeries(metric, day);
+            if (series != null) {
+                sum += series.sum(fromMillis, toMillis);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return mean of the samples in the range, or NaN if there are none
+     */
+    public float mean(@NonNull Metric metric, long fromMillis, long toMillis) {
+        int count = count(metric, fromMillis, toMillis);
+        return count > 0 ? (float) (sum(metric, fromMillis, toMillis) / count) : Float.NaN;
+    }
+
+    /**
+     * Computes heart-rate statistics over [fromMillis, toMillis) in one pass over the stored samples.
+     */
+    @NonNull
+    public HeartRateStats heartRateStats(long fromMillis, long toMillis) {
+        HeartRateStats stats = new HeartRateStats();
+        scan(Metric.HEART_RATE, fromMillis, toMillis, stats);
+        return stats;
+    }
+
+    /**
+     * @return the newest sample value recorded for a metric, or NaN if none
+     */
+    public synchronized float latestValue(@NonNull Metric metric) {
+        for (TimeSeries series : days.get(metric).descendingMap().values()) {
+            if (series.size() > 0) {
+                return series.latestValue();
+            }
+        }
+        return Float.NaN;
+    }
+
+    /**
+     * Records that every sample of a metric in [fromMillis, toMillis) has been appended. A range that
+     * touches or overlaps the one already recorded extends it; a disjoint newer range replaces it.
+     */
+    public synchronized void markComplete(@NonNull Metric metric, long fromMillis, long toMillis) {
+        if (toMillis <= fromMillis) {
+            return;
+        }
+        long[] range = complete.get(metric);
+        if (range != null && fromMillis <= range[1] && toMillis >= range[0]) {
+            range[0] = Math.min(range[0], fromMillis);
+            range[1] = Math.max(range[1], toMillis);
+        } else if (range == null || fromMillis > range[1]) {
+            complete.put(metric, new long[]{fromMillis, toMillis});
+        }
+    }
+
+    /**
+     * @return true if every sample of the metric in [fromMillis, toMillis) has been appended
+     */
+    public synchronized boolean isComplete(@NonNull Metric metric, long fromMillis, long toMillis) {
+        long[] range = complete.get(metric);
+        return range != null && range[0] <= fromMillis && range[1] >= toMillis;
+    }
+
+    /**
+     * @return start of the complete range that reaches toMillis, or toMillis if there is none; samples
+     * from there up to toMillis need not be read again
+     */
+    public synchronized long completeFrom(@NonNull Metric metric, long toMillis) {
+        long[] range = complete.get(metric);
+        return range != null && range[0] < toMillis && range[1] >= toMillis ? range[0] : toMillis;
+    }
+
+    /**
+     * Drops all retained samples, e.g. when the signed-in user changes.
+     */
+    public synchronized void clear() {
+        for (TreeMap<Long, TimeSeries> metricDays : days.values()) {
+            metricDays.clear();
+        }
+        complete.clear();
+    }
+}
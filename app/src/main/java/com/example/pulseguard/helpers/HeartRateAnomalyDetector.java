@@ -0,0 +1,249 @@
+package com.example.pulseguard.helpers;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluates {@link HeartRateRule}s against a stream of heart-rate samples.
+ * <p>
+ * Rules are compiled once into evaluators holding only primitive thresholds, and each keeps the
+ * start of its current breach instead of a window of samples, so a sample costs O(1) per rule and
+ * allocates nothing. A rule fires once its condition has held for the sustain time, clears only
+ * after BPM is back inside the threshold by the rule's hysteresis, and does not fire again within
+ * its cooldown.
+ * <p>
+ * Deviation rules compare against an exponentially weighted baseline of the user's own readings.
+ * Samples that breach any rule are kept out of the baseline so an episode does not become normal.
+ * <p>
+ * Not thread-safe: feed it from one thread.
+ */
+public class HeartRateAnomalyDetector implements SampleConsumer {
+
+    /**
+     * Receives rule transitions on the thread that feeds samples.
+     */
+    public interface Listener {
+        void onAnomaly(@NonNull HeartRateRule rule, long timestampMillis, float bpm);
+
+        void onRecovered(@NonNull HeartRateRule rule, long timestampMillis, float bpm);
+    }
+
+    // A longer silence breaks a sustained run; the condition has to hold again from scratch
+    private static final long MAX_SAMPLE_GAP_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    // Baseline: EWMA over roughly the last 10 minutes of 1 Hz samples
+    private static final double BASELINE_ALPHA = 1.0 / 600;
+    private static final int BASELINE_WARMUP_SAMPLES = 300;
+
+    private final Evaluator[] evaluators;
+    private final Listener listener;
+
+    private long lastTimestamp = Long.MIN_VALUE;
+    private double baselineMean;
+    private double baselineVariance;
+    private int baselineSamples;
+
+    public HeartRateAnomalyDetector(@NonNull List<HeartRateRule> rules, @NonNull Listener listener) {
+        this.listener = listener;
+        this.evaluators = new Evaluator[rules.size()];
+        for (int i = 0; i < evaluators.length; i++) {
+            evaluators[i] = compile(rules.get(i));
+        }
+    }
+
+    @Override
+    public void accept(long timestampMillis, float bpm) {
+        if (!(bpm > 0f) || timestampMillis <= lastTimestamp) {
+            return; // sensor dropout or out-of-order sample
+        }
+        boolean gap = lastTimestamp != Long.MIN_VALUE && timestampMillis - lastTimestamp > MAX_SAMPLE_GAP_MILLIS;
+        lastTimestamp = timestampMillis;
+
+        float deviation = Float.NaN;
+        if (baselineSamples >= BASELINE_WARMUP_SAMPLES && baselineVariance > 0) {
+            deviation = (float) ((bpm - baselineMean) / Math.sqrt(baselineVariance));
+        }
+
+        boolean anomalous = false;
+        for (Evaluator evaluator : evaluators) {
+            anomalous |= evaluator.evaluate(timestampMillis, bpm, deviation, gap, listener);
+        }
+
+        if (!anomalous) {
+            updateBaseline(bpm);
+        }
+    }
+
+    /**
+     * @return true while any rule is firing
+     */
+    public boolean isAlerting() {
+        for (Evaluator evaluator : evaluators) {
+            if (evaluator.active) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Forgets the baseline and every rule's state, e.g. when the wearer changes.
+     */
+    public void reset() {
+        lastTimestamp = Long.MIN_VALUE;
+        baselineMean = 0;
+        baselineVariance = 0;
+        baselineSamples = 0;
+        for (Evaluator evaluator : evaluators) {
+            evaluator.breachStart = -1;
+            evaluator.active = false;
+            evaluator.lastFired = Long.MIN_VALUE;
+        }
+    }
+
+    private void updateBaseline(float bpm) {
+        if (baselineSamples == 0) {
+            baselineMean = bpm;
+        } else {
+            double diff = bpm - baselineMean;
+            double increment = BASELINE_ALPHA * diff;
+            baselineMean += increment;
+            baselineVariance = (1 - BASELINE_ALPHA) * (baselineVariance + diff * increment);
+        }
+        if (baselineSamples < BASELINE_WARMUP_SAMPLES) {
+            baselineSamples++;
+        }
+    }
+
+    private static Evaluator compile(HeartRateRule rule) {
+        switch (rule.getKind()) {
+            case ABOVE:
+                return new AboveEvaluator(rule);
+            case BELOW:
+                return new BelowEvaluator(rule);
+            default:
+                return new DeviationEvaluator(rule);
+        }
+    }
+
+    /**
+     * Sustain, hysteresis and cooldown handling shared by every rule kind.
+     */
+    private abstract static class Evaluator {
+        final HeartRateRule rule;
+        final long sustainMillis;
+        final long cooldownMillis;
+
+        long breachStart = -1;
+        boolean active;
+        long lastFired = Long.MIN_VALUE;
+
+        Evaluator(HeartRateRule rule) {
+            this.rule = rule;
+            this.sustainMillis = rule.getSustainMillis();
+            this.cooldownMillis = rule.getCooldownMillis();
+        }
+
+        abstract boolean breached(float bpm, float deviation);
+
+        abstract boolean cleared(float bpm, float deviation);
+
+        /**
+         * @return true if the sample breaches this rule or the rule is firing
+         */
+        boolean evaluate(long timestamp, float bpm, float deviation, boolean gap, Listener listener) {
+            if (active) {
+                if (cleared(bpm, deviation)) {
+                    active = false;
+                    breachStart = -1;
+                    listener.onRecovered(rule, timestamp, bpm);
+                    return false;
+                }
+                return true;
+            }
+
+            if (gap) {
+                breachStart = -1;
+            }
+            if (!breached(bpm, deviation)) {
+                breachStart = -1;
+                return false;
+            }
+            if (breachStart < 0) {
+                breachStart = timestamp;
+            }
+            if (timestamp - breachStart >= sustainMillis
+                    && (lastFired == Long.MIN_VALUE || timestamp - lastFired >= cooldownMillis)) {
+                active = true;
+                lastFired = timestamp;
+                listener.onAnomaly(rule, timestamp, bpm);
+            }
+            return true;
+        }
+    }
+
+    private static final class AboveEvaluator extends Evaluator {
+        private final float trigger;
+        private final float release;
+
+        AboveEvaluator(HeartRateRule rule) {
+            super(rule);
+            trigger = rule.getThreshold();
+            release = rule.getThreshold() - rule.getHysteresis();
+        }
+
+        @Override
+        boolean breached(float bpm, float deviation) {
+            return bpm > trigger;
+        }
+
+        @Override
+        boolean cleared(float bpm, float deviation) {
+            return bpm < release;
+        }
+    }
+
+    private static final class BelowEvaluator extends Evaluator {
+        private final float trigger;
+        private final float release;
+
+        BelowEvaluator(HeartRateRule rule) {
+            super(rule);
+            trigger = rule.getThreshold();
+            release = rule.getThreshold() + rule.getHysteresis();
+        }
+
+        @Override
+        boolean breached(float bpm, float deviation) {
+            return bpm < trigger;
+        }
+
+        @Override
+        boolean cleared(float bpm, float deviation) {
+            return bpm > release;
+        }
+    }
+
+    private static final class DeviationEvaluator extends Evaluator {
+        private final float trigger;
+        private final float release;
+
+        DeviationEvaluator(HeartRateRule rule) {
+            super(rule);
+            trigger = rule.getThreshold();
+            release = Math.max(0f, rule.getThreshold() - rule.getHysteresis());
+        }
+
+        @Override
+        boolean breached(float bpm, float deviation) {
+            return Math.abs(deviation) > trigger; // false while the baseline warms up (NaN)
+        }
+
+        @Override
+        boolean cleared(float bpm, float deviation) {
+            return Float.isNaN(deviation) || Math.abs(deviation) < release;
+        }
+    }
+}
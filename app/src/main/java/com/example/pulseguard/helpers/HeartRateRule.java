@@ -0,0 +1,211 @@
+package com.example.pulseguard.helpers;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A user-configurable heart-rate alert rule.
+ * <p>
+ * Rules are stored as short specs, comma separated, in the "PulseGuardAlertRules" preferences:
+ * <ul>
+ *     <li>{@code above:120:10m} - BPM above 120 for 10 minutes</li>
+ *     <li>{@code below:40:5m} - BPM below 40 for 5 minutes</li>
+ *     <li>{@code deviation:3:2m} - BPM more than 3 standard deviations from the baseline for 2 minutes</li>
+ * </ul>
+ * Durations accept {@code s}, {@code m} or {@code h}.
+ */
+public class HeartRateRule {
+
+    private static final String TAG = "HeartRateRule";
+
+    private static final String PREFS_NAME = "PulseGuardAlertRules";
+    private static final String KEY_RULES = "rules";
+    private static final String DEFAULT_RULES = "above:120:10m,below:40:5m,deviation:3:2m";
+
+    // An alert clears only once BPM is back this far inside the threshold
+    private static final float HYSTERESIS_BPM = 5f;
+    private static final float HYSTERESIS_SIGMA = 0.5f;
+    // Minimum time between two alerts of the same rule
+    private static final long DEFAULT_COOLDOWN_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    public enum Kind {
+        ABOVE,
+        BELOW,
+        DEVIATION
+    }
+
+    private final Kind kind;
+    private final float threshold;
+    private final long sustainMillis;
+    private final float hysteresis;
+    private final long cooldownMillis;
+
+    /**
+     * @param kind          Comparison the rule makes
+     * @param threshold     BPM for ABOVE/BELOW, number of standard deviations for DEVIATION
+     * @param sustainMillis How long the condition must hold before the rule fires
+     */
+    public HeartRateRule(@NonNull Kind kind, float threshold, long sustainMillis) {
+        this(kind, threshold, sustainMillis,
+                kind == Kind.DEVIATION ? HYSTERESIS_SIGMA : HYSTERESIS_BPM, DEFAULT_COOLDOWN_MILLIS);
+    }
+
+    public HeartRateRule(@NonNull Kind kind, float threshold, long sustainMillis, float hysteresis, long cooldownMillis) {
+        this.kind = kind;
+        this.threshold = threshold;
+        this.sustainMillis = sustainMillis;
+        this.hysteresis = hysteresis;
+        this.cooldownMillis = cooldownMillis;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public float getThreshold() {
+        return threshold;
+    }
+
+    public long getSustainMillis() {
+        return sustainMillis;
+    }
+
+    public float getHysteresis() {
+        return hysteresis;
+    }
+
+    public long getCooldownMillis() {
+        return cooldownMillis;
+    }
+
+    /**
+     * @return the spec this rule is stored as, e.g. {@code above:120:10m}
+     */
+    @NonNull
+    public String toSpec() {
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(sustainMillis);
+        String duration = seconds % 60 != 0 ? seconds + "s" : seconds / 60 + "m";
+        String value = threshold == (int) threshold
+                ? String.valueOf((int) threshold)
+                : String.valueOf(threshold);
+        return kind.name().toLowerCase(Locale.ROOT) + ":" + value + ":" + duration;
+    }
+
+    /**
+     * @return a short description for alert texts, e.g. "above 120 bpm for 10 min"
+     */
+    @NonNull
+    public String describe() {
+        long minutes = TimeUnit.MILLISECONDS.toMinutes(sustainMillis);
+        String duration = minutes > 0 ? minutes + " min" : TimeUnit.MILLISECONDS.toSeconds(sustainMillis) + " s";
+        switch (kind) {
+            case ABOVE:
+                return String.format(Locale.getDefault(), "above %.0f bpm for %s", threshold, duration);
+            case BELOW:
+                return String.format(Locale.getDefault(), "below %.0f bpm for %s", threshold, duration);
+            default:
+                return String.format(Locale.getDefault(), "%.1fσ from your baseline for %s", threshold, duration);
+        }
+    }
+
+    /**
+     * Parses one spec.
+     *
+     * @return the rule, or null if the spec is malformed
+     */
+    @Nullable
+    public static HeartRateRule parse(@NonNull String spec) {
+        String[] parts = spec.trim().toLowerCase(Locale.ROOT).split(":");
+        if (parts.length != 3) {
+            Log.w(TAG, "Ignoring malformed rule: " + spec);
+            return null;
+        }
+        try {
+            Kind kind = Kind.valueOf(parts[0].toUpperCase(Locale.ROOT));
+            float threshold = Float.parseFloat(parts[1]);
+            long sustainMillis = parseDuration(parts[2]);
+            if (threshold <= 0 || sustainMillis < 0) {
+                Log.w(TAG, "Ignoring out-of-range rule: " + spec);
+                return null;
+            }
+            return new HeartRateRule(kind, threshold, sustainMillis);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Ignoring malformed rule: " + spec, e);
+            return null;
+        }
+    }
+
+    /**
+     * Parses a comma-separated list of specs, skipping malformed entries.
+     */
+    @NonNull
+    public static List<HeartRateRule> parseAll(@Nullable String specs) {
+        List<HeartRateRule> rules = new ArrayList<>();
+        if (specs == null || specs.trim().isEmpty()) {
+            return rules;
+        }
+        for (String spec : specs.split(",")) {
+            HeartRateRule rule = parse(spec);
+            if (rule != null) {
+                rules.add(rule);
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Loads the user's rules, falling back to the defaults if none were saved.
+     */
+    @NonNull
+    public static List<HeartRateRule> load(@NonNull Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        return parseAll(prefs.getString(KEY_RULES, DEFAULT_RULES));
+    }
+
+    /**
+     * Saves the user's rules.
+     */
+    public static void save(@NonNull Context context, @NonNull List<HeartRateRule> rules) {
+        StringBuilder specs = new StringBuilder();
+        for (HeartRateRule rule : rules) {
+            if (specs.length() > 0) {
+                specs.append(',');
+            }
+            specs.append(rule.toSpec());
+        }
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putString(KEY_RULES, specs.toString())
+                .apply();
+    }
+
+    private static long parseDuration(String text) {
+        if (text.isEmpty()) {
+            throw new IllegalArgumentException("Empty duration");
+        }
+        char unit = text.charAt(text.length() - 1);
+        if (Character.isDigit(unit)) {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(text));
+        }
+        long amount = Long.parseLong(text.substring(0, text.length() - 1));
+        switch (unit) {
+            case 's':
+                return TimeUnit.SECONDS.toMillis(amount);
+            case 'm':
+                return TimeUnit.MINUTES.toMillis(amount);
+            case 'h':
+                return TimeUnit.HOURS.toMillis(amount);
+            default:
+                throw new IllegalArgumentException("Unknown duration unit: " + unit);
+        }
+    }
+}
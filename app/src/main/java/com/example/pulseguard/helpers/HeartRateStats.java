@@ -0,0 +1,236 @@
+package com.example.pulseguard.helpers;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Single-pass, constant-memory statistics over heart-rate samples.
+ * <p>
+ * Count, mean and variance use Welford's update, so they stay accurate over long streams without
+ * keeping the samples. Percentiles come from a fixed histogram with 1 BPM buckets; two accumulators
+ * can be merged exactly (e.g. days into a week), and {@link #add} never allocates, so it can sit
+ * directly behind sensor callbacks.
+ * <p>
+ * Not thread-safe: confine an instance to one thread or guard it externally.
+ */
+public class HeartRateStats implements SampleConsumer {
+
+    private static final String TAG = "HeartRateStats";
+
+    // Histogram range; readings outside it count toward the edge buckets
+    private static final int MIN_BPM = 20;
+    private static final int MAX_BPM = 250;
+    private static final int BUCKET_COUNT = MAX_BPM - MIN_BPM + 1;
+
+    private static final String ENCODING_VERSION = "1";
+
+    private long count;
+    private double mean;
+    private double m2;
+    private float min = Float.NaN;
+    private float max = Float.NaN;
+    private final long[] buckets = new long[BUCKET_COUNT];
+
+    /**
+     * Adds one reading. Zero, negative and NaN readings are ignored, as sensors report them when
+     * they lose contact.
+     */
+    public void add(float bpm) {
+        if (!(bpm > 0f)) {
+            return;
+        }
+        count++;
+        double delta = bpm - mean;
+        mean += delta / count;
+        m2 += delta * (bpm - mean);
+
+        if (count == 1) {
+            min = bpm;
+            max = bpm;
+        } else {
+            min = Math.min(min, bpm);
+            max = Math.max(max, bpm);
+        }
+        buckets[bucketOf(bpm)]++;
+    }
+
+    @Override
+    public void accept(long timestampMillis, float value) {
+        add(value);
+    }
+
+    /**
+     * Folds another accumulator into this one, as if its samples had been added here.
+     */
+    public void merge(@NonNull HeartRateStats other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+            min = other.min;
+            max = other.max;
+        } else {
+            long total = count + other.count;
+            double delta = other.mean - mean;
+            mean += delta * other.count / total;
+            m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+            count = total;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] += other.buckets[i];
+        }
+    }
+
+    public void reset() {
+        count = 0;
+        mean = 0;
+        m2 = 0;
+        min = Float.NaN;
+        max = Float.NaN;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = 0;
+        }
+    }
+
+    @NonNull
+    public HeartRateStats copy() {
+        HeartRateStats copy = new HeartRateStats();
+        copy.merge(this);
+        return copy;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return mean BPM, or NaN if there are no samples
+     */
+    public float getMean() {
+        return count > 0 ? (float) mean : Float.NaN;
+    }
+
+    /**
+     * @return sample variance, or NaN with fewer than two samples
+     */
+    public float getVariance() {
+        return count > 1 ? (float) (m2 / (count - 1)) : Float.NaN;
+    }
+
+    public float getStandardDeviation() {
+        return (float) Math.sqrt(getVariance());
+    }
+
+    /**
+     * @return lowest BPM, or NaN if there are no samples
+     */
+    public float getMin() {
+        return min;
+    }
+
+    /**
+     * @return highest BPM, or NaN if there are no samples
+     */
+    public float getMax() {
+        return max;
+    }
+
+    /**
+     * Estimates a percentile to within half a BPM (the bucket width).
+     *
+     * @param quantile Fraction in [0, 1], e.g. 0.95 for p95
+     * @return estimated BPM, or NaN if there are no samples
+     */
+    public float getPercentile(double quantile) {
+        if (count == 0) {
+            return Float.NaN;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(1.0, Math.max(0.0, quantile)) * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                // Bucket i holds readings that round to MIN_BPM + i; keep within the observed range
+                float estimate = MIN_BPM + i;
+                return Math.max(min, Math.min(max, estimate));
+            }
+        }
+        return max;
+    }
+
+    public float getMedian() {
+        return getPercentile(0.5);
+    }
+
+    /**
+     * Serializes the accumulator into a compact string (only non-empty buckets are written).
+     */
+    @NonNull
+    public String encode() {
+        StringBuilder sb = new StringBuilder(64)
+                .append(ENCODING_VERSION).append(';')
+                .append(count).append(';')
+                .append(mean).append(';')
+                .append(m2).append(';')
+                .append(min).append(';')
+                .append(max).append(';');
+        boolean first = true;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (buckets[i] != 0) {
+                if (!first) {
+                    sb.append(',');
+                }
+                sb.append(i).append(':').append(buckets[i]);
+                first = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Restores an accumulator written by {@link #encode()}.
+     *
+     * @return the accumulator, or null if the string is missing or unreadable
+     */
+    @Nullable
+    public static HeartRateStats decode(@Nullable String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+        String[] parts = encoded.split(";", -1);
+        if (parts.length != 7 || !ENCODING_VERSION.equals(parts[0])) {
+            return null;
+        }
+        try {
+            HeartRateStats stats = new HeartRateStats();
+            stats.count = Long.parseLong(parts[1]);
+            stats.mean = Double.parseDouble(parts[2]);
+            stats.m2 = Double.parseDouble(parts[3]);
+            stats.min = Float.parseFloat(parts[4]);
+            stats.max = Float.parseFloat(parts[5]);
+            if (!parts[6].isEmpty()) {
+                for (String bucket : parts[6].split(",")) {
+                    int separator = bucket.indexOf(':');
+                    stats.buckets[Integer.parseInt(bucket.substring(0, separator))] =
+                            Long.parseLong(bucket.substring(separator + 1));
+                }
+            }
+            return stats;
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            Log.w(TAG, "Ignoring corrupt heart-rate stats", e);
+            return null;
+        }
+    }
+
+    private static int bucketOf(float bpm) {
+        int bucket = Math.round(bpm) - MIN_BPM;
+        return Math.max(0, Math.min(BUCKET_COUNT - 1, bucket));
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.pulseguard.helpers;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ingest stage for live sensor samples.
+ * <p>
+ * Each sensor callback writes into its own {@link SampleRingBuffer} (one producer per ring), and the
+ * main thread drains both rings at most once per display frame via {@link Choreographer}, coalescing
+ * step deltas into a single sum and heart-rate samples into the latest reading. Nothing is allocated
+ * per sample and no step increment is lost, even if the main thread stalls and a ring fills up.
+ * <p>
+ * Drained heart-rate samples are also recorded in {@link HealthTimeSeriesStore}. Step deltas are not,
+ * because the History API reports the same steps again on the next read.
+ */
+public class LiveSampleDispatcher {
+
+    /**
+     * Receives coalesced updates on the main thread, at most once per frame.
+     */
+    public interface Listener {
+        /**
+         * @param stepDelta       Sum of step deltas received since the previous frame
+         * @param latestHeartRate Most recent BPM since the previous frame, or NaN if none arrived
+         */
+        void onLiveSamples(int stepDelta, float latestHeartRate);
+    }
+
+    private static final int RING_CAPACITY = 256;
+    private static final int NO_HEART_RATE_BITS = Float.floatToRawIntBits(Float.NaN);
+
+    private final SampleRingBuffer stepSamples = new SampleRingBuffer(RING_CAPACITY);
+    private final SampleRingBuffer heartRateSamples = new SampleRingBuffer(RING_CAPACITY);
+
+    // Samples that did not fit into a full ring are folded here instead of being dropped
+    private final AtomicInteger overflowSteps = new AtomicInteger();
+    private final AtomicInteger overflowHeartRateBits = new AtomicInteger(NO_HEART_RATE_BITS);
+
+    private final AtomicBoolean frameScheduled = new AtomicBoolean();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Choreographer.FrameCallback frameCallback = this::doFrame;
+    private final Runnable postFrameCallback =
+            () -> Choreographer.getInstance().postFrameCallback(frameCallback);
+
+    private final HealthTimeSeriesStore store = HealthTimeSeriesStore.getInstance();
+
+    // Main-thread-only frame accumulators, reused every frame
+    private int frameSteps;
+    private float frameHeartRate;
+    private final SampleConsumer stepAccumulator =
+            (timestamp, value) -> frameSteps += (int) value;
+    private final SampleConsumer heartRateAccumulator = (timestamp, value) -> {
+        frameHeartRate = value;
+        store.append(HealthTimeSeriesStore.Metric.HEART_RATE, timestamp, value);
+        if (heartRateConsumer != null) {
+            heartRateConsumer.accept(timestamp, value);
+        }
+    };
+
+    private Listener listener;
+    private SampleConsumer heartRateConsumer;
+
+    public LiveSampleDispatcher(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Records a step delta. Must be called from a single thread (the step sensor callback).
+     */
+    public void offerSteps(long timestampMillis, int stepDelta) {
+        if (!stepSamples.offer(timestampMillis, stepDelta)) {
+            overflowSteps.addAndGet(stepDelta);
+        }
+        scheduleFrame();
+    }
+
+    /**
+     * Records a heart-rate reading. Must be called from a single thread (the heart-rate sensor callback).
+     */
+    public void offerHeartRate(long timestampMillis, float bpm) {
+        if (!heartRateSamples.offer(timestampMillis, bpm)) {
+            overflowHeartRateBits.set(Float.floatToRawIntBits(bpm));
+        }
+        scheduleFrame();
+    }
+
+    /**
+     * Sets a consumer that sees every drained heart-rate sample (not just the latest per frame),
+     * on the main thread. Pass null to remove it.
+     */
+    public void setHeartRateConsumer(@Nullable SampleConsumer consumer) {
+        heartRateConsumer = consumer;
+    }
+
+    /**
+     * Stops delivering updates. Samples still queued are discarded.
+     */
+    public void release() {
+        listener = null;
+        heartRateConsumer = null;
+        mainHandler.removeCallbacks(postFrameCallback);
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+        }
+    }
+
+    private void scheduleFrame() {
+        if (!frameScheduled.compareAndSet(false, true)) {
+            return; // a frame is already pending and will pick this sample up
+        }
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+        } else {
+            mainHandler.post(postFrameCallback);
+        }
+    }
+
+    private void doFrame(long frameTimeNanos) {
+        // Clear before draining so samples arriving mid-drain schedule the next frame
+        frameScheduled.set(false);
+
+        frameSteps = 0;
+        frameHeartRate = Float.NaN;
+        stepSamples.drain(stepAccumulator);
+        heartRateSamples.drain(heartRateAccumulator);
+
+        frameSteps += overflowSteps.getAndSet(0);
+        int overflowBits = overflowHeartRateBits.getAndSet(NO_HEART_RATE_BITS);
+        if (overflowBits != NO_HEART_RATE_BITS) {
+            frameHeartRate = Float.intBitsToFloat(overflowBits);
+        }
+
+        if (listener != null && (frameSteps != 0 || !Float.isNaN(frameHeartRate))) {
+            listener.onLiveSamples(frameSteps, frameHeartRate);
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.example.pulseguard.helpers;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_CALORIES;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_DATE;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_ENQUEUED_AT;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_HEART_RATE;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_STEPS;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_UPDATED_AT;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_USER_ID;
+import static com.example.pulseguard.helpers.HealthDatabase.TABLE_DAILY_HEALTH;
+import static com.example.pulseguard.helpers.HealthDatabase.TABLE_OUTBOX;
+
+/**
+ * Offline-first store of daily health totals.
+ * <p>
+ * The local database is the source of truth for {@code users/{uid}/healthData}: screens and reports
+ * read from it, and every local change is recorded in an outbox that {@link #syncWithFirestore}
+ * pushes through {@link FirestoreHelper}'s write queue. Remote documents are merged back by their
+ * timestamp, newest wins, so the store works without connectivity and converges once online.
+ */
+public class LocalHealthStore {
+
+    private static final String TAG = "LocalHealthStore";
+
+    private static final int OUTBOX_BATCH_SIZE = 500;
+    private static final int PULL_DAYS = 7;
+    private static final long SYNC_TIMEOUT_SECONDS = 60;
+
+    private static LocalHealthStore instance;
+
+    private final HealthDatabase database;
+    // Writes requested from the UI run here, one at a time
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+
+    private LocalHealthStore(Context context) {
+        this.database = HealthDatabase.getInstance(context);
+    }
+
+    /**
+     * Get singleton instance of LocalHealthStore.
+     *
+     * @param context Any context; the application context is retained
+     * @return LocalHealthStore instance
+     */
+    public static synchronized LocalHealthStore getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new LocalHealthStore(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Saves a day's totals locally and queues them for upload, off the calling thread.
+     *
+     * @return Task<Void> completing once the change is durable on disk
+     */
+    public Task<Void> saveDailyHealthData(@NonNull String userId, @NonNull String date,
+                                          int steps, float calories, float avgHeartRate) {
+        DailyHealthRecord record = new DailyHealthRecord(date, steps, calories, avgHeartRate,
+                System.currentTimeMillis());
+        return Tasks.call(writeExecutor, () -> {
+            save(userId, record);
+            return null;
+        });
+    }
+
+    /**
+     * Saves a record locally and adds it to the outbox in one transaction.
+     * Unchanged totals are ignored so they do not cause another upload.
+     */
+    @WorkerThread
+    public void save(@NonNull String userId, @NonNull DailyHealthRecord record) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            DailyHealthRecord existing = get(db, userId, record.getDate());
+            if (existing != null
+                    && existing.getSteps() == record.getSteps()
+                    && existing.getCalories() == record.getCalories()
+                    && existing.getHeartRate() == record.getHeartRate()) {
+                db.setTransactionSuccessful();
+                return;
+            }
+
+            db.insertWithOnConflict(TABLE_DAILY_HEALTH, null, toValues(userId, record),
+                    SQLiteDatabase.CONFLICT_REPLACE);
+
+            ContentValues outbox = new ContentValues();
+            outbox.put(COLUMN_USER_ID, userId);
+            outbox.put(COLUMN_DATE, record.getDate());
+            outbox.put(COLUMN_ENQUEUED_AT, record.getUpdatedAt());
+            db.insertWithOnConflict(TABLE_OUTBOX, null, outbox, SQLiteDatabase.CONFLICT_REPLACE);
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * @return the stored totals of a day, or null if nothing was recorded
+     */
+    @Nullable
+    @WorkerThread
+    public DailyHealthRecord getDailyHealthData(@NonNull String userId, @NonNull String date) {
+        return get(database.getReadableDatabase(), userId, date);
+    }
+
+    /**
+     * @return stored days in [fromDate, toDate] (yyyy-MM-dd, inclusive), oldest first
+     */
+    @NonNull
+    @WorkerThread
+    public List<DailyHealthRecord> getRange(@NonNull String userId, @NonNull String fromDate, @NonNull String toDate) {
+        List<DailyHealthRecord> records = new ArrayList<>();
+        try (Cursor cursor = database.getReadableDatabase().query(TABLE_DAILY_HEALTH, null,
+                COLUMN_USER_ID + " = ? AND " + COLUMN_DATE + " BETWEEN ? AND ?",
+                new String[]{userId, fromDate, toDate}, null, null, COLUMN_DATE + " ASC")) {
+            while (cursor.moveToNext()) {
+                records.add(fromCursor(cursor));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Returns a token that changes whenever any stored day in [fromDate, toDate] is added or changed.
+     * A row's updated_at only ever increases, so the row count and the sum of updated_at identify
+     * the state of the range without reading it.
+     */
+    @NonNull
+    @WorkerThread
+    public String getDataVersion(@NonNull String userId, @NonNull String fromDate, @NonNull String toDate) {
+        try (Cursor cursor = database.getReadableDatabase().rawQuery(
+                "SELECT COUNT(*), SUM(" + COLUMN_UPDATED_AT + ") FROM " + TABLE_DAILY_HEALTH
+                        + " WHERE " + COLUMN_USER_ID + " = ? AND " + COLUMN_DATE + " BETWEEN ? AND ?",
+                new String[]{userId, fromDate, toDate})) {
+            if (!cursor.moveToFirst()) {
+                return "0";
+            }
+            return cursor.getLong(0) + ":" + cursor.getLong(1);
+        }
+    }
+
+    /**
+     * Opens a cursor over stored days in [fromDate, toDate], oldest first, without loading them all.
+     * The caller must close it.
+     */
+    @NonNull
+    @WorkerThread
+    public RecordCursor openRange(@NonNull String userId, @NonNull String fromDate, @NonNull String toDate) {
+        return new RecordCursor(database.getReadableDatabase().query(TABLE_DAILY_HEALTH, null,
+                COLUMN_USER_ID + " = ? AND " + COLUMN_DATE + " BETWEEN ? AND ?",
+                new String[]{userId, fromDate, toDate}, null, null, COLUMN_DATE + " ASC"));
+    }
+
+    /**
+     * Applies a remote record unless the local copy is at least as new (last writer wins).
+     *
+     * @return true if the local copy was replaced
+     */
+    @WorkerThread
+    public boolean mergeRemote(@NonNull String userId, @NonNull DailyHealthRecord remote) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            DailyHealthRecord local = get(db, userId, remote.getDate());
+            if (local != null && local.getUpdatedAt() >= remote.getUpdatedAt()) {
+                db.setTransactionSuccessful();
+                return false;
+            }
+            db.insertWithOnConflict(TABLE_DAILY_HEALTH, null, toValues(userId, remote),
+                    SQLiteDatabase.CONFLICT_REPLACE);
+            // The remote copy supersedes any unsent local change of that day
+            db.delete(TABLE_OUTBOX, COLUMN_USER_ID + " = ? AND " + COLUMN_DATE + " = ?",
+                    new String[]{userId, remote.getDate()});
+            db.setTransactionSuccessful();
+            return true;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * @return number of days waiting to be uploaded for the user
+     */
+    @WorkerThread
+    public int getOutboxSize(@NonNull String userId) {
+        try (Cursor cursor = database.getReadableDatabase().rawQuery(
+                "SELECT COUNT(*) FROM " + TABLE_OUTBOX + " WHERE " + COLUMN_USER_ID + " = ?",
+                new String[]{userId})) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+    }
+
+    /**
+     * Pushes the outbox to Firestore and pulls recent remote days. Blocks until done; call it from a
+     * background thread such as a worker.
+     *
+     * @return true if every outbox entry was uploaded
+     */
+    @WorkerThread
+    public boolean syncWithFirestore(@NonNull String userId) throws InterruptedException {
+        boolean pushed = pushOutbox(userId);
+        pullRecent(userId);
+        return pushed;
+    }
+
+    private boolean pushOutbox(String userId) throws InterruptedException {
+        List<DailyHealthRecord> pending = new ArrayList<>();
+        try (Cursor cursor = database.getReadableDatabase().rawQuery(
+                "SELECT d.* FROM " + TABLE_DAILY_HEALTH + " d JOIN " + TABLE_OUTBOX + " o"
+                        + " ON d." + COLUMN_USER_ID + " = o." + COLUMN_USER_ID
+                        + " AND d." + COLUMN_DATE + " = o." + COLUMN_DATE
+                        + " WHERE o." + COLUMN_USER_ID + " = ?"
+                        + " ORDER BY o." + COLUMN_ENQUEUED_AT + " ASC LIMIT " + OUTBOX_BATCH_SIZE,
+                new String[]{userId})) {
+            while (cursor.moveToNext()) {
+                pending.add(fromCursor(cursor));
+            }
+        }
+        if (pending.isEmpty()) {
+            return true;
+        }
+
+        FirestoreHelper firestore = FirestoreHelper.getInstance();
+        List<Task<Void>> uploads = new ArrayList<>(pending.size());
+        for (DailyHealthRecord record : pending) {
+            uploads.add(firestore.enqueueDailyHealthData(userId, record));
+        }
+        firestore.flush();
+
+        try {
+            Tasks.await(Tasks.whenAllComplete(uploads), SYNC_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            Log.w(TAG, "Outbox upload did not complete", e);
+        }
+
+        boolean allUploaded = true;
+        SQLiteDatabase db = database.getWritableDatabase();
+        for (int i = 0; i < pending.size(); i++) {
+            DailyHealthRecord record = pending.get(i);
+            if (uploads.get(i).isSuccessful()) {
+                // Keep the entry if the day changed again while uploading
+                db.delete(TABLE_OUTBOX,
+                        COLUMN_USER_ID + " = ? AND " + COLUMN_DATE + " = ? AND " + COLUMN_ENQUEUED_AT + " <= ?",
+                        new String[]{userId, record.getDate(), String.valueOf(record.getUpdatedAt())});
+            } else {
+                allUploaded = false;
+            }
+        }
+        Log.i(TAG, "Pushed " + pending.size() + " outbox day(s), complete: " + allUploaded);
+        return allUploaded;
+    }
+
+    private void pullRecent(String userId) throws InterruptedException {
+        long now = System.currentTimeMillis();
+        String fromDate = FirestoreHelper.dateKey(now - TimeUnit.DAYS.toMillis(PULL_DAYS - 1));
+        String toDate = FirestoreHelper.dateKey(now);
+
+        List<DailyHealthRecord> remote;
+        try {
+            remote = Tasks.await(FirestoreHelper.getInstance().getHealthDataRange(userId, fromDate, toDate, true),
+                    SYNC_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            Log.w(TAG, "Pulling remote health data did not complete", e);
+            return;
+        }
+
+        int merged = 0;
+        for (DailyHealthRecord record : remote) {
+            if (mergeRemote(userId, record)) {
+                merged++;
+            }
+        }
+        Log.d(TAG, "Merged " + merged + " of " + remote.size() + " remote day(s)");
+    }
+
+    private static DailyHealthRecord get(SQLiteDatabase db, String userId, String date) {
+        try (Cursor cursor = db.query(TABLE_DAILY_HEALTH, null,
+                COLUMN_USER_ID + " = ? AND " + COLUMN_DATE + " = ?",
+                new String[]{userId, date}, null, null, null)) {
+            return cursor.moveToFirst() ? fromCursor(cursor) : null;
+        }
+    }
+
+    private static ContentValues toValues(String userId, DailyHealthRecord record) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_USER_ID, userId);
+        values.put(COLUMN_DATE, record.getDate());
+        values.put(COLUMN_STEPS, record.getSteps());
+        values.put(COLUMN_CALORIES, record.getCalories());
+        values.put(COLUMN_HEART_RATE, record.getHeartRate());
+        values.put(COLUMN_UPDATED_AT, record.getUpdatedAt());
+        return values;
+    }
+
+    private static DailyHealthRecord fromCursor(Cursor cursor) {
+        return new DailyHealthRecord(
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_DATE)),
+                cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_STEPS)),
+                cursor.getFloat(cursor.getColumnIndexOrThrow(COLUMN_CALORIES)),
+                cursor.getFloat(cursor.getColumnIndexOrThrow(COLUMN_HEART_RATE)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_UPDATED_AT)));
+    }
+
+    /**
+     * Iterates the rows of a query one record at a time.
+     */
+    public static class RecordCursor implements Iterator<DailyHealthRecord>, Closeable {
+        private final Cursor cursor;
+
+        RecordCursor(Cursor cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !cursor.isClosed() && cursor.getPosition() + 1 < cursor.getCount();
+        }
+
+        @Override
+        public DailyHealthRecord next() {
+            if (!hasNext() || !cursor.moveToNext()) {
+                throw new NoSuchElementException();
+            }
+            return fromCursor(cursor);
+        }
+
+        @Override
+        public void close() {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.pulseguard.helpers;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.location.CurrentLocationRequest;
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+import com.google.android.gms.tasks.CancellationTokenSource;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a recent location fix cached so emergency messages never wait for GPS.
+ * <p>
+ * While at least one owner (the dashboard, a monitoring session) holds the tracker, it receives
+ * balanced-power updates from the fused provider, which mostly come from Wi-Fi and cell data and
+ * cost little battery. {@link #getLastFix()} answers from memory immediately; {@link #refine} asks
+ * for a high-accuracy fix for a bounded time when precision matters more than speed.
+ */
+public class LocationTracker {
+
+    private static final String TAG = "LocationTracker";
+
+    private static final long UPDATE_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long MIN_UPDATE_INTERVAL_MS = TimeUnit.SECONDS.toMillis(30);
+    private static final float MIN_UPDATE_DISTANCE_M = 10f;
+
+    private static LocationTracker instance;
+
+    private final Context context;
+    private final FusedLocationProviderClient client;
+    private final Set<Object> owners = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final LocationCallback callback = new LocationCallback() {
+        @Override
+        public void onLocationResult(@NonNull LocationResult result) {
+            offer(result.getLastLocation());
+        }
+    };
+
+    private volatile Location lastFix;
+    private boolean updating;
+
+    private LocationTracker(Context context) {
+        this.context = context.getApplicationContext();
+        this.client = LocationServices.getFusedLocationProviderClient(this.context);
+    }
+
+    /**
+     * Get singleton instance of LocationTracker.
+     *
+     * @param context Any context; the application context is retained
+     * @return LocationTracker instance
+     */
+    public static synchronized LocationTracker getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new LocationTracker(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Starts tracking on behalf of an owner, if not already running. Calling it again after the
+     * location permission is granted starts the updates that could not start before.
+     */
+    public synchronized void acquire(@NonNull Object owner) {
+        owners.add(owner);
+        if (updating || !hasPermission()) {
+            return;
+        }
+        try {
+            if (lastFix == null) {
+                client.getLastLocation().addOnSuccessListener(this::offer);
+            }
+            LocationRequest request = new LocationRequest.Builder(Priority.PRIORITY_BALANCED_POWER_ACCURACY, UPDATE_INTERVAL_MS)
+                    .setMinUpdateIntervalMillis(MIN_UPDATE_INTERVAL_MS)
+                    .setMinUpdateDistanceMeters(MIN_UPDATE_DISTANCE_M)
+                    .build();
+            client.requestLocationUpdates(request, callback, Looper.getMainLooper());
+            updating = true;
+        } catch (SecurityException e) {
+            Log.w(TAG, "Location permission revoked", e);
+        }
+    }
+
+    /**
+     * Releases an owner's hold; updates stop when no owner is left. The cached fix is kept.
+     */
+    public synchronized void release(@NonNull Object owner) {
+        owners.remove(owner);
+        if (owners.isEmpty() && updating) {
+            client.removeLocationUpdates(callback);
+            updating = false;
+        }
+    }
+
+    /**
+     * @return the most recent fix, however old, or null if none was received yet
+     */
+    @Nullable
+    public Location getLastFix() {
+        return lastFix;
+    }
+
+    /**
+     * @return how long ago the fix was taken, in milliseconds
+     */
+    public static long getAgeMillis(@NonNull Location fix) {
+        return TimeUnit.NANOSECONDS.toMillis(SystemClock.elapsedRealtimeNanos() - fix.getElapsedRealtimeNanos());
+    }
+
+    /**
+     * Requests a fresh high-accuracy fix, giving up after timeoutMillis. A fix obtained this way
+     * also replaces the cached one.
+     *
+     * @return Task<Location> resolving to the new fix, or to null if none arrived in time
+     */
+    @NonNull
+    public Task<Location> refine(long timeoutMillis) {
+        if (!hasPermission()) {
+            return Tasks.forResult(null);
+        }
+        CurrentLocationRequest request = new CurrentLocationRequest.Builder()
+                .setPriority(Priority.PRIORITY_HIGH_ACCURACY)
+                .setDurationMillis(timeoutMillis)
+                .setMaxUpdateAgeMillis(0)
+                .build();
+        try {
+            return client.getCurrentLocation(request, new CancellationTokenSource().getToken())
+                    .continueWith(task -> {
+                        Location fix = task.isSuccessful() ? task.getResult() : null;
+                        offer(fix);
+                        return fix;
+                    });
+        } catch (SecurityException e) {
+            Log.w(TAG, "Location permission revoked", e);
+            return Tasks.forResult(null);
+        }
+    }
+
+    /**
+     * Replaces the cached fix if the given one is better, e.g. a fix received by {@link TrailRecorder}.
+     */
+    void offer(@Nullable Location fix) {
+        if (fix == null) {
+            return;
+        }
+        Location current = lastFix;
+        if (current == null) {
+            lastFix = fix;
+            return;
+        }
+        // Keep the newer fix, unless it is only marginally newer and much less accurate
+        long newerBy = fix.getElapsedRealtimeNanos() - current.getElapsedRealtimeNanos();
+        if (newerBy > TimeUnit.MILLISECONDS.toNanos(MIN_UPDATE_INTERVAL_MS)
+                || (newerBy >= 0 && fix.getAccuracy() <= current.getAccuracy() * 2)) {
+            lastFix = fix;
+        }
+    }
+
+    private boolean hasPermission() {
+        return ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION)
+                == PackageManager.PERMISSION_GRANTED
+                || ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_COARSE_LOCATION)
+                == PackageManager.PERMISSION_GRANTED;
+    }
+}
@@ -5,56 +5,318 @@ import android.app.NotificationManager;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
 
+import androidx.annotation.NonNull;
 import androidx.core.app.ActivityCompat;
 import androidx.core.app.NotificationCompat;
 import androidx.core.app.NotificationManagerCompat;
 
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Posts health alerts as a throttled, grouped set of notifications.
+ * <p>
+ * Each alert has a key (e.g. the rule that raised it) that owns one notification. A token bucket per
+ * key limits how often that notification is re-posted; alerts arriving while the bucket is empty, or
+ * repeating the text already shown, are counted and folded into a single update once a token is
+ * available. All keys share a group whose summary lists the latest alert of each, so an alert storm
+ * results in one update per interval rather than one notification per call.
+ */
 public class NotificationHelper {
 
-    private static final String CHANNEL_ID = "pulseguard_health_alerts";
-    private static final String CHANNEL_NAME = "Health Alerts";
-    private static final String CHANNEL_DESC = "Notifications about health alerts and reminders";
+    private static final String TAG = "NotificationHelper";
+
+    /**
+     * Alert severity, mapped to its own notification channel so users can tune each one.
+     */
+    public enum Severity {
+        INFO("pulseguard_health_info", "Health Updates",
+                "Reminders and informational health updates",
+                NotificationManager.IMPORTANCE_DEFAULT, NotificationCompat.PRIORITY_DEFAULT),
+        WARNING("pulseguard_health_alerts", "Health Alerts",
+                "Notifications about health alerts and reminders",
+                NotificationManager.IMPORTANCE_HIGH, NotificationCompat.PRIORITY_HIGH),
+        CRITICAL("pulseguard_health_critical", "Critical Health Alerts",
+                "Alerts that may need immediate attention",
+                NotificationManager.IMPORTANCE_HIGH, NotificationCompat.PRIORITY_MAX);
+
+        final String channelId;
+        final String channelName;
+        final String channelDescription;
+        final int importance;
+        final int priority;
+
+        Severity(String channelId, String channelName, String channelDescription, int importance, int priority) {
+            this.channelId = channelId;
+            this.channelName = channelName;
+            this.channelDescription = channelDescription;
+            this.importance = importance;
+            this.priority = priority;
+        }
+    }
+
+    private static final String GROUP_KEY = "com.example.pulseguard.HEALTH_ALERTS";
+    private static final int SUMMARY_NOTIFICATION_ID = 0x50470000;
+
+    // Per key: a burst of 3 posts, then one every minute
+    private static final int BUCKET_CAPACITY = 3;
+    private static final long REFILL_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+    // Keys kept with their cached builder; the least recently alerted is dropped beyond this
+    private static final int MAX_TRACKED_KEYS = 16;
+
+    private static NotificationHelper instance;
 
     private final Context context;
+    private final NotificationManagerCompat managerCompat;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, AlertState> alerts = new LinkedHashMap<String, AlertState>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, AlertState> eldest) {
+            if (size() > MAX_TRACKED_KEYS) {
+                // Nothing could update or cancel its notification once the state is gone
+                mainHandler.removeCallbacks(eldest.getValue().flush);
+                managerCompat.cancel(eldest.getValue().notificationId);
+                return true;
+            }
+            return false;
+        }
+    };
+    private NotificationCompat.Builder summaryBuilder;
+    // Ids of alert notifications are handed out in order, so two keys never share a notification
+    private int nextNotificationId = SUMMARY_NOTIFICATION_ID + 1;
+
+    private NotificationHelper(Context context) {
+        this.context = context.getApplicationContext();
+        this.managerCompat = NotificationManagerCompat.from(this.context);
+        createNotificationChannels();
+    }
 
-    public NotificationHelper(Context context) {
-        this.context = context;
-        createNotificationChannel();
+    /**
+     * Get singleton instance of NotificationHelper.
+     *
+     * @param context Any context; the application context is retained
+     * @return NotificationHelper instance
+     */
+    public static synchronized NotificationHelper getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new NotificationHelper(context);
+        }
+        return instance;
     }
 
-    private void createNotificationChannel() {
+    private void createNotificationChannels() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            NotificationChannel channel =
-                    new NotificationChannel(CHANNEL_ID, CHANNEL_NAME, NotificationManager.IMPORTANCE_HIGH);
-            channel.setDescription(CHANNEL_DESC);
             NotificationManager manager = context.getSystemService(NotificationManager.class);
-            if (manager != null) {
+            if (manager == null) {
+                return;
+            }
+            for (Severity severity : Severity.values()) {
+                NotificationChannel channel =
+                        new NotificationChannel(severity.channelId, severity.channelName, severity.importance);
+                channel.setDescription(severity.channelDescription);
                 manager.createNotificationChannel(channel);
             }
         }
     }
 
+    /**
+     * Posts a warning with a caller-chosen id. Kept for simple callers; the id is used as the alert key.
+     */
     public void sendNotification(int notificationId, String title, String message) {
+        notify(String.valueOf(notificationId), Severity.WARNING, title, message);
+    }
+
+    /**
+     * Posts or updates the notification of an alert key, subject to that key's rate limit.
+     *
+     * @param key      Identifies the alert source; repeated alerts with the same key update one notification
+     * @param severity Channel to post on
+     * @param title    Notification title
+     * @param message  Notification text
+     */
+    public synchronized void notify(@NonNull String key, @NonNull Severity severity,
+                                    @NonNull String title, @NonNull String message) {
+        long now = SystemClock.elapsedRealtime();
+        AlertState state = alerts.get(key);
+        if (state == null) {
+            state = new AlertState(key, nextNotificationId++, now);
+            alerts.put(key, state);
+        }
+
+        boolean duplicate = state.posted && message.equals(state.message) && title.equals(state.title)
+                && severity == state.severity;
+        state.severity = severity;
+        state.title = title;
+        state.message = message;
+
+        if (!duplicate && state.tryAcquire(now)) {
+            post(state);
+            return;
+        }
+
+        // Throttled or repeated: count it and fold it into the next update
+        state.coalesced++;
+        if (!state.flushScheduled) {
+            state.flushScheduled = true;
+            long delay = state.millisUntilToken(now);
+            mainHandler.postDelayed(state.flush, duplicate ? Math.max(delay, REFILL_INTERVAL_MS) : delay);
+        }
+    }
+
+    /**
+     * Removes the notification of an alert key, e.g. when the condition has cleared.
+     */
+    public synchronized void cancel(@NonNull String key) {
+        AlertState state = alerts.remove(key);
+        if (state == null) {
+            return;
+        }
+        mainHandler.removeCallbacks(state.flush);
+        managerCompat.cancel(state.notificationId);
+        updateSummary();
+    }
+
+    private synchronized void flush(AlertState state) {
+        state.flushScheduled = false;
+        if (alerts.get(state.key) != state || state.coalesced == 0) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        if (state.tryAcquire(now)) {
+            post(state);
+        } else {
+            state.flushScheduled = true;
+            mainHandler.postDelayed(state.flush, state.millisUntilToken(now));
+        }
+    }
+
+    private void post(AlertState state) {
+        String text = state.coalesced > 0
+                ? String.format(Locale.getDefault(), "%s (+%d similar)", state.message, state.coalesced)
+                : state.message;
+        state.coalesced = 0;
+        state.posted = true;
+
+        if (!canPostNotifications()) {
+            return;
+        }
+
+        NotificationCompat.Builder builder = state.builder;
+        if (builder == null || state.builderSeverity != state.severity) {
+            builder = new NotificationCompat.Builder(context, state.severity.channelId)
+                    .setSmallIcon(android.R.drawable.ic_dialog_alert) // TODO: Replace with your app icon drawable
+                    .setPriority(state.severity.priority)
+                    .setGroup(GROUP_KEY)
+                    .setOnlyAlertOnce(true)
+                    .setAutoCancel(true);
+            state.builder = builder;
+            state.builderSeverity = state.severity;
+        }
+        builder.setContentTitle(state.title)
+                .setContentText(text)
+                .setStyle(new NotificationCompat.BigTextStyle().bigText(text)) // For longer messages
+                .setWhen(System.currentTimeMillis());
+
+        try {
+            managerCompat.notify(state.notificationId, builder.build());
+            updateSummary();
+        } catch (SecurityException e) {
+            Log.w(TAG, "Notification permission revoked", e);
+        }
+    }
+
+    private void updateSummary() {
+        if (!canPostNotifications()) {
+            return;
+        }
+        int shown = 0;
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        for (AlertState state : alerts.values()) {
+            if (state.posted) {
+                style.addLine(state.title + ": " + state.message);
+                shown++;
+            }
+        }
+        if (shown == 0) {
+            managerCompat.cancel(SUMMARY_NOTIFICATION_ID);
+            return;
+        }
+
+        if (summaryBuilder == null) {
+            summaryBuilder = new NotificationCompat.Builder(context, Severity.WARNING.channelId)
+                    .setSmallIcon(android.R.drawable.ic_dialog_alert)
+                    .setGroup(GROUP_KEY)
+                    .setGroupSummary(true)
+                    .setOnlyAlertOnce(true)
+                    .setAutoCancel(true);
+        }
+        String summary = shown == 1 ? "1 health alert" : shown + " health alerts";
+        summaryBuilder.setContentTitle("PulseGuard")
+                .setContentText(summary)
+                .setStyle(style.setSummaryText(summary));
+        managerCompat.notify(SUMMARY_NOTIFICATION_ID, summaryBuilder.build());
+    }
+
+    private boolean canPostNotifications() {
         // For Android 13+ check notification permission before sending
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-            if (ActivityCompat.checkSelfPermission(context, android.Manifest.permission.POST_NOTIFICATIONS)
-                    != PackageManager.PERMISSION_GRANTED) {
-                // Permission not granted - notification cannot be sent
-                // Consider logging or prompting user to enable permission if needed
-                return;
+            return ActivityCompat.checkSelfPermission(context, android.Manifest.permission.POST_NOTIFICATIONS)
+                    == PackageManager.PERMISSION_GRANTED;
+        }
+        return true;
+    }
+
+    /**
+     * Notification, token bucket and coalescing state of one alert key.
+     */
+    private final class AlertState {
+        final String key;
+        final int notificationId;
+        final Runnable flush = () -> NotificationHelper.this.flush(this);
+
+        double tokens = BUCKET_CAPACITY;
+        long lastRefill;
+
+        Severity severity;
+        String title;
+        String message;
+        int coalesced;
+        boolean posted;
+        boolean flushScheduled;
+
+        NotificationCompat.Builder builder;
+        Severity builderSeverity;
+
+        AlertState(String key, int notificationId, long now) {
+            this.key = key;
+            this.notificationId = notificationId;
+            this.lastRefill = now;
+        }
+
+        boolean tryAcquire(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return true;
             }
+            return false;
         }
 
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
-                .setSmallIcon(android.R.drawable.ic_dialog_alert) // TODO: Replace with your app icon drawable
-                .setContentTitle(title)
-                .setContentText(message)
-                .setStyle(new NotificationCompat.BigTextStyle().bigText(message)) // For longer messages
-                .setPriority(NotificationCompat.PRIORITY_HIGH)
-                .setAutoCancel(true);
+        long millisUntilToken(long now) {
+            refill(now);
+            return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) * REFILL_INTERVAL_MS);
+        }
 
-        NotificationManagerCompat managerCompat = NotificationManagerCompat.from(context);
-        managerCompat.notify(notificationId, builder.build());
+        private void refill(long now) {
+            tokens = Math.min(BUCKET_CAPACITY, tokens + (double) (now - lastRefill) / REFILL_INTERVAL_MS);
+            lastRefill = now;
+        }
     }
 }
@@ -1,13 +1,21 @@
 package com.example.pulseguard.helpers;
 
+import android.content.ContentResolver;
+import android.content.ContentValues;
 import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Picture;
 import android.graphics.Typeface;
 import android.graphics.pdf.PdfDocument;
 import android.location.Location;
+import android.net.Uri;
+import android.os.Build;
 import android.os.Environment;
+import android.os.ParcelFileDescriptor;
+import android.provider.MediaStore;
 import android.util.Log;
 
 import androidx.core.content.FileProvider;
@@ -15,14 +23,29 @@ import androidx.core.content.FileProvider;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class PdfReportHelper {
 
     private static final String TAG = "PdfReportHelper";
 
+    // Part of every report cache key; bump when the rendered output changes
+    static final int LAYOUT_VERSION = 3;
+
     // Page and margin dimensions (A4 size)
     private static final int PAGE_WIDTH = 595;
     private static final int PAGE_HEIGHT = 842;
@@ -35,7 +58,46 @@ public class PdfReportHelper {
     private static final int VALUE_SIZE = 14;
     private static final int FOOTER_SIZE = 11;
 
+    // Wrapped values
+    private static final int MAX_VALUE_LINES = 3;
+    private static final int VALUE_LINE_HEIGHT = VALUE_SIZE + 4;
+
+    // Header and footer geometry
+    private static final int HEADER_HEIGHT = 50;
+    private static final int LOGO_RADIUS = 20;
+    private static final float FOOTER_Y = PAGE_HEIGHT - 25;
+    private static final String FOOTER_TEXT = "Generated by PulseGuard - Confidential Health Data";
+
+    // Colors
+    private static final int COLOR_PRIMARY = 0xFF3F51B5;      // Indigo 500
+    private static final int COLOR_PRIMARY_DARK = 0xFF303F9F; // Indigo 700
+    private static final int COLOR_ROW_SHADE = 0xFFF5F5F5;
+
+    // Range report table
+    private static final int ROW_HEIGHT = 20;
+    private static final int CONTENT_BOTTOM = PAGE_HEIGHT - 60; // keeps rows clear of the footer
+    private static final int SUMMARY_HEIGHT = 170;
+    private static final float COLUMN_DATE_X = MARGIN;
+    private static final float COLUMN_STEPS_END = MARGIN + 250;
+    private static final float COLUMN_CALORIES_END = MARGIN + 370;
+    private static final float COLUMN_HEART_RATE_END = PAGE_WIDTH - MARGIN;
+
+    // Trend charts; series are decimated to about one point per horizontal point of the plot
+    private static final int CHART_HEIGHT = 120;
+    private static final int CHART_LABEL_SIZE = 9;
+    private static final float CHART_LEFT = MARGIN + 40; // room for the value labels
+    private static final float CHART_RIGHT = PAGE_WIDTH - MARGIN;
+    private static final int CHART_MAX_POINTS = (int) (CHART_RIGHT - CHART_LEFT);
+    private static final int CHART_BLOCK_HEIGHT = LABEL_SIZE + 12 + CHART_HEIGHT + CHART_LABEL_SIZE + 28;
+    private static final String[] HOUR_LABELS = {"00:00", "06:00", "12:00", "18:00", "24:00"};
+    private static final int ROUTE_MAP_HEIGHT = 180;
+
     private final Context context;
+    private final Template style = Template.get();
+    // Reused by drawLabelValue for the wrapped lines of one value
+    private final List<String> valueLines = new ArrayList<>(MAX_VALUE_LINES);
+    // Reused by the chart methods for the current series
+    private final Path chartPath = new Path();
 
     public PdfReportHelper(Context context) {
         this.context = context;
@@ -48,10 +110,43 @@ public class PdfReportHelper {
      * @param userInfo    UserInfo object containing user details
      * @param healthData  HealthData object containing health metrics
      * @param location    Location data, can be null if unavailable
-     * @return File object pointing to the generated PDF file
+     * @return content URI of the report in Documents/PulseGuard
+     * @throws IOException if file creation or writing fails
+     */
+    public Uri createHealthReport(String reportTitle, UserInfo userInfo, HealthData healthData, Location location) throws IOException {
+        return createHealthReport(reportTitle, userInfo, healthData, location, null);
+    }
+
+    /**
+     * Creates a health report PDF file, including the street address of the location if known.
+     *
+     * @param reportTitle Title of the report (e.g., "PulseGuard Health Report")
+     * @param userInfo    UserInfo object containing user details
+     * @param healthData  HealthData object containing health metrics
+     * @param location    Location data, can be null if unavailable
+     * @param address     Street address of the location, can be null if unknown
+     * @return content URI of the report in Documents/PulseGuard
+     * @throws IOException if file creation or writing fails
+     */
+    public Uri createHealthReport(String reportTitle, UserInfo userInfo, HealthData healthData,
+                                  Location location, String address) throws IOException {
+        return createHealthReport(reportTitle, userInfo, healthData, location, address, null);
+    }
+
+    /**
+     * Creates a health report PDF file, followed by a page of intraday trend charts if given.
+     *
+     * @param reportTitle Title of the report (e.g., "PulseGuard Health Report")
+     * @param userInfo    UserInfo object containing user details
+     * @param healthData  HealthData object containing health metrics
+     * @param location    Location data, can be null if unavailable
+     * @param address     Street address of the location, can be null if unknown
+     * @param trends      Heart rate and step series of the reported day, can be null to omit charts
+     * @return content URI of the report in Documents/PulseGuard
      * @throws IOException if file creation or writing fails
      */
-    public File createHealthReport(String reportTitle, UserInfo userInfo, HealthData healthData, Location location) throws IOException {
+    public Uri createHealthReport(String reportTitle, UserInfo userInfo, HealthData healthData,
+                                  Location location, String address, TrendData trends) throws IOException {
         PdfDocument document = new PdfDocument();
 
         PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(PAGE_WIDTH, PAGE_HEIGHT, 1).create();
@@ -82,7 +177,7 @@ public class PdfReportHelper {
         // Draw location section or location unavailable message
         yPos += 15;
         if (location != null) {
-            yPos = drawLocationSection(canvas, location, yPos);
+            yPos = drawLocationSection(canvas, location, address, yPos);
         } else {
             yPos = drawLocationUnavailableSection(canvas, yPos);
         }
@@ -92,20 +187,436 @@ public class PdfReportHelper {
 
         document.finishPage(page);
 
-        // Create file in app documents folder
-        File pdfFile = createOutputFile();
+        if (trends != null) {
+            drawTrendPage(document, reportTitle + " (continued)", trends);
+        }
+
+        return writeDocument(document);
+    }
+
+    /**
+     * Creates a multi-page report of daily totals over a date range.
+     * <p>
+     * Rows are pulled from the iterator one at a time and each page is finished as soon as it is
+     * full, so only the current page is held while rendering, however long the range is. The range
+     * summary is accumulated along the way and drawn after the last row.
+     *
+     * @param reportTitle Title of the report
+     * @param userInfo    UserInfo object containing user details
+     * @param fromDate    First date of the range (yyyy-MM-dd), shown in the header
+     * @param toDate      Last date of the range (yyyy-MM-dd), shown in the header
+     * @param days        Daily totals in date order; days without data may be absent
+     * @return content URI of the report in Documents/PulseGuard
+     * @throws IOException if file creation or writing fails
+     */
+    public Uri createRangeReport(String reportTitle, UserInfo userInfo, String fromDate, String toDate,
+                                 Iterator<DailyHealthRecord> days) throws IOException {
+        PdfDocument document = new PdfDocument();
+        RangePageWriter writer = new RangePageWriter(document, reportTitle + " (continued)");
+
+        Canvas canvas = writer.startPage();
+        int y = drawHeader(canvas, reportTitle, MARGIN);
+        y += 20;
+        y = drawUserInfoSection(canvas, userInfo, y);
+        y += 15;
+        y = drawSeparator(canvas, y);
+        y += 15;
+
+        canvas.drawText("Daily Health Data: " + fromDate + " to " + toDate, MARGIN, y, style.sectionTitlePaint);
+        y += SECTION_TITLE_SIZE;
+        writer.y = drawTableHeader(canvas, y);
+
+        Paint rowPaint = style.valuePaint;
+
+        int dayCount = 0;
+        long totalSteps = 0;
+        double totalCalories = 0;
+        double heartRateSum = 0;
+        int heartRateDays = 0;
+        float minHeartRate = Float.NaN;
+        float maxHeartRate = Float.NaN;
+        DailyTrend trend = new DailyTrend();
+
+        while (days.hasNext()) {
+            DailyHealthRecord day = days.next();
+            canvas = writer.ensureSpace(ROW_HEIGHT, true);
+            if (dayCount % 2 == 1) {
+                canvas.drawRect(MARGIN, writer.y - ROW_HEIGHT + 5, PAGE_WIDTH - MARGIN, writer.y + 5, style.rowShadePaint);
+            }
+            canvas.drawText(day.getDate(), COLUMN_DATE_X, writer.y, rowPaint);
+            drawRightAligned(canvas, String.valueOf(day.getSteps()), COLUMN_STEPS_END, writer.y, rowPaint);
+            drawRightAligned(canvas, String.format(Locale.getDefault(), "%.1f", day.getCalories()),
+                    COLUMN_CALORIES_END, writer.y, rowPaint);
+            drawRightAligned(canvas, day.getHeartRate() > 0
+                            ? String.format(Locale.getDefault(), "%.1f", day.getHeartRate()) : "-",
+                    COLUMN_HEART_RATE_END, writer.y, rowPaint);
+            writer.y += ROW_HEIGHT;
+
+            dayCount++;
+            totalSteps += day.getSteps();
+            totalCalories += day.getCalories();
+            if (day.getHeartRate() > 0) {
+                heartRateSum += day.getHeartRate();
+                heartRateDays++;
+                minHeartRate = heartRateDays == 1 ? day.getHeartRate() : Math.min(minHeartRate, day.getHeartRate());
+                maxHeartRate = heartRateDays == 1 ? day.getHeartRate() : Math.max(maxHeartRate, day.getHeartRate());
+            }
+            trend.add(day);
+        }
 
-        try (FileOutputStream fos = new FileOutputStream(pdfFile)) {
-            document.writeTo(fos);
-            Log.i(TAG, "PDF report created successfully: " + pdfFile.getAbsolutePath());
+        if (dayCount == 0) {
+            canvas = writer.ensureSpace(ROW_HEIGHT, true);
+            canvas.drawText("No health data recorded in this period.", COLUMN_DATE_X, writer.y, rowPaint);
+            writer.y += ROW_HEIGHT;
+        }
+
+        // Range summary, moved to a new page as a whole if it does not fit
+        Paint labelPaint = style.labelPaint;
+        canvas = writer.ensureSpace(SUMMARY_HEIGHT, false);
+        y = drawSeparator(canvas, writer.y - 10) + 15 + SECTION_TITLE_SIZE;
+        canvas.drawText("Range Summary", MARGIN, y, style.sectionTitlePaint);
+        y += 10 + LABEL_SIZE;
+        y = drawLabelValue(canvas, "Days with data:", String.valueOf(dayCount), y, labelPaint, rowPaint);
+        y = drawLabelValue(canvas, "Total steps:", String.valueOf(totalSteps), y, labelPaint, rowPaint);
+        y = drawLabelValue(canvas, "Average steps:", dayCount > 0
+                ? String.valueOf(totalSteps / dayCount) : "N/A", y, labelPaint, rowPaint);
+        y = drawLabelValue(canvas, "Total calories:",
+                String.format(Locale.getDefault(), "%.1f kcal", totalCalories), y, labelPaint, rowPaint);
+        y = drawLabelValue(canvas, "Heart rate:", heartRateDays > 0
+                ? String.format(Locale.getDefault(), "%.1f bpm average (daily %.0f-%.0f)",
+                heartRateSum / heartRateDays, minHeartRate, maxHeartRate)
+                : "N/A", y, labelPaint, rowPaint);
+        writer.y = y;
+
+        // Multi-day trends, each moved to a new page as a whole if it does not fit
+        trend.decimate();
+        if (trend.stepCount > 1) {
+            canvas = writer.ensureSpace(CHART_BLOCK_HEIGHT, false);
+            writer.y = drawLineChart(canvas, "Daily Steps", trend.stepDays, trend.steps, trend.stepCount,
+                    trend.stepDays[0], trend.stepDays[trend.stepCount - 1],
+                    trend.labels(trend.stepDays, trend.stepCount), writer.y + LABEL_SIZE);
+        }
+        if (trend.heartRateCount > 1) {
+            canvas = writer.ensureSpace(CHART_BLOCK_HEIGHT, false);
+            writer.y = drawLineChart(canvas, "Average Heart Rate (bpm)", trend.heartRateDays, trend.heartRates,
+                    trend.heartRateCount, trend.heartRateDays[0], trend.heartRateDays[trend.heartRateCount - 1],
+                    trend.labels(trend.heartRateDays, trend.heartRateCount), writer.y + LABEL_SIZE);
+        }
+
+        writer.finishPage();
+        Log.d(TAG, "Range report rendered: " + dayCount + " day(s) on " + writer.pageNumber + " page(s)");
+
+        return writeDocument(document);
+    }
+
+    /**
+     * Adds a page with the intraday heart rate line and the hourly step bars of one day.
+     */
+    private void drawTrendPage(PdfDocument document, String continuationTitle, TrendData trends) {
+        int pageNumber = document.getPages().size() + 1;
+        PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(PAGE_WIDTH, PAGE_HEIGHT, pageNumber).create();
+        PdfDocument.Page page = document.startPage(pageInfo);
+        Canvas canvas = page.getCanvas();
+
+        int y = MARGIN;
+        canvas.drawText(continuationTitle, MARGIN, y, style.userLabelPaint);
+        y += ROW_HEIGHT + 15;
+        canvas.drawText("Trends", MARGIN, y, style.sectionTitlePaint);
+        y += SECTION_TITLE_SIZE + 10 + LABEL_SIZE;
+
+        y = drawLineChart(canvas, "Heart Rate (bpm)", trends.heartRateTimes, trends.heartRateValues,
+                trends.heartRateCount, trends.dayStart, trends.dayStart + TimeUnit.DAYS.toMillis(1),
+                HOUR_LABELS, y);
+        y += LABEL_SIZE;
+        y = drawBarChart(canvas, "Steps per Hour", trends.hourlySteps, HOUR_LABELS, y);
+        if (!trends.trails.isEmpty()) {
+            y += LABEL_SIZE;
+            drawRouteMap(canvas, "Recorded Routes", trends.trails, y);
+        }
+
+        drawFooter(canvas, pageNumber);
+        document.finishPage(page);
+    }
+
+    /**
+     * Draws a titled line chart of an already decimated series, with the plot area scaled to the
+     * series' value range. xLabels are spread evenly below the plot from xMin to xMax.
+     * Returns the vertical position after the chart.
+     */
+    private int drawLineChart(Canvas canvas, String title, long[] xs, float[] ys, int count,
+                              long xMin, long xMax, String[] xLabels, int titleY) {
+        float top = titleY + 12;
+        float bottom = top + CHART_HEIGHT;
+        canvas.drawText(title, MARGIN, titleY, style.labelPaint);
+
+        if (count == 0) {
+            drawChartFrame(canvas, top, bottom, Float.NaN, Float.NaN, xLabels);
+            float width = style.chartLabelPaint.measureText("No data");
+            canvas.drawText("No data", (CHART_LEFT + CHART_RIGHT - width) / 2, (top + bottom) / 2, style.chartLabelPaint);
+            return (int) bottom + CHART_LABEL_SIZE + 28;
+        }
+
+        float lo = ys[0];
+        float hi = ys[0];
+        for (int i = 1; i < count; i++) {
+            lo = Math.min(lo, ys[i]);
+            hi = Math.max(hi, ys[i]);
+        }
+        float pad = hi > lo ? (hi - lo) * 0.1f : 1f;
+        lo -= pad;
+        hi += pad;
+        drawChartFrame(canvas, top, bottom, lo, hi, xLabels);
+
+        float xScale = xMax > xMin ? (CHART_RIGHT - CHART_LEFT) / (xMax - xMin) : 0f;
+        float yScale = (bottom - top) / (hi - lo);
+        chartPath.rewind();
+        float px = 0;
+        float py = 0;
+        for (int i = 0; i < count; i++) {
+            px = xScale > 0 ? CHART_LEFT + (xs[i] - xMin) * xScale : (CHART_LEFT + CHART_RIGHT) / 2;
+            py = bottom - (ys[i] - lo) * yScale;
+            if (i == 0) {
+                chartPath.moveTo(px, py);
+            } else {
+                chartPath.lineTo(px, py);
+            }
+        }
+        if (count == 1) {
+            // A lone sample has no segment to stroke; mark it where it was plotted
+            chartPath.addCircle(px, py, 1.5f, Path.Direction.CW);
+        }
+        canvas.drawPath(chartPath, style.chartLinePaint);
+
+        return (int) bottom + CHART_LABEL_SIZE + 28;
+    }
+
+    /**
+     * Draws a titled bar chart with one bar per value, scaled from zero to the largest value.
+     * Returns the vertical position after the chart.
+     */
+    private int drawBarChart(Canvas canvas, String title, float[] values, String[] xLabels, int titleY) {
+        float top = titleY + 12;
+        float bottom = top + CHART_HEIGHT;
+        canvas.drawText(title, MARGIN, titleY, style.labelPaint);
+
+        float hi = 0;
+        for (float value : values) {
+            hi = Math.max(hi, value);
+        }
+        if (hi <= 0) {
+            hi = 1;
+        }
+        drawChartFrame(canvas, top, bottom, 0, hi, xLabels);
+
+        float slot = (CHART_RIGHT - CHART_LEFT) / values.length;
+        float yScale = (bottom - top) / hi;
+        chartPath.rewind();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] > 0) {
+                float left = CHART_LEFT + i * slot + slot * 0.15f;
+                chartPath.addRect(left, bottom - values[i] * yScale, left + slot * 0.7f, bottom, Path.Direction.CW);
+            }
+        }
+        canvas.drawPath(chartPath, style.chartBarPaint);
+
+        return (int) bottom + CHART_LABEL_SIZE + 28;
+    }
+
+    /**
+     * Draws recorded trails to scale, fitted into the plot area with north up, and a summary line
+     * below. Returns the vertical position after the map.
+     */
+    private int drawRouteMap(Canvas canvas, String title, List<TrailRecorder.Trail> trails, int titleY) {
+        float top = titleY + 12;
+        float bottom = top + ROUTE_MAP_HEIGHT;
+        canvas.drawText(title, MARGIN, titleY, style.labelPaint);
+
+        List<double[]> routes = new ArrayList<>(trails.size());
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        float distance = 0;
+        long duration = 0;
+        for (TrailRecorder.Trail trail : trails) {
+            distance += trail.getDistanceMeters();
+            duration += trail.getEndedAt() - trail.getStartedAt();
+            double[] points;
+            try {
+                points = trail.decodeCoordinates();
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Skipping unreadable trail " + trail.getId(), e);
+                continue;
+            }
+            for (int i = 0; i < points.length; i += 2) {
+                minLat = Math.min(minLat, points[i]);
+                maxLat = Math.max(maxLat, points[i]);
+                minLon = Math.min(minLon, points[i + 1]);
+                maxLon = Math.max(maxLon, points[i + 1]);
+            }
+            if (points.length > 0) {
+                routes.add(points);
+            }
+        }
+
+        canvas.drawLine(MARGIN, bottom, PAGE_WIDTH - MARGIN, bottom, style.chartAxisPaint);
+        if (!routes.isEmpty()) {
+            // Equirectangular projection, one scale for both axes so shapes are not distorted
+            double lonFactor = Math.cos(Math.toRadians((minLat + maxLat) / 2));
+            double width = Math.max((maxLon - minLon) * lonFactor, 1e-6);
+            double height = Math.max(maxLat - minLat, 1e-6);
+            float boxWidth = PAGE_WIDTH - 2 * MARGIN;
+            float scale = (float) Math.min(boxWidth / width, (ROUTE_MAP_HEIGHT - 8) / height);
+            float left = MARGIN + (boxWidth - (float) (width * scale)) / 2;
+            float base = bottom - 4 - (ROUTE_MAP_HEIGHT - 8 - (float) (height * scale)) / 2;
+
+            for (double[] points : routes) {
+                chartPath.rewind();
+                for (int i = 0; i < points.length; i += 2) {
+                    float px = left + (float) ((points[i + 1] - minLon) * lonFactor * scale);
+                    float py = base - (float) ((points[i] - minLat) * scale);
+                    if (i == 0) {
+                        chartPath.moveTo(px, py);
+                        chartPath.addCircle(px, py, 2f, Path.Direction.CW);
+                        chartPath.moveTo(px, py);
+                    } else {
+                        chartPath.lineTo(px, py);
+                    }
+                }
+                canvas.drawPath(chartPath, style.chartLinePaint);
+            }
+        }
+
+        long minutes = TimeUnit.MILLISECONDS.toMinutes(duration);
+        String summary = String.format(Locale.getDefault(), "%d route(s), %.2f km in %d h %02d min",
+                trails.size(), distance / 1000f, minutes / 60, minutes % 60);
+        canvas.drawText(summary, MARGIN, bottom + CHART_LABEL_SIZE + 4, style.chartLabelPaint);
+        return (int) bottom + CHART_LABEL_SIZE + 28;
+    }
+
+    /**
+     * Draws the grid lines and value labels of a plot area (none if lo is NaN) and the x labels.
+     */
+    private void drawChartFrame(Canvas canvas, float top, float bottom, float lo, float hi, String[] xLabels) {
+        Paint labelPaint = style.chartLabelPaint;
+        for (int i = 0; i <= 2; i++) {
+            float y = bottom - (bottom - top) * i / 2f;
+            canvas.drawLine(CHART_LEFT, y, CHART_RIGHT, y, i == 0 ? style.chartAxisPaint : style.chartGridPaint);
+            if (!Float.isNaN(lo)) {
+                String value = String.format(Locale.getDefault(), "%.0f", lo + (hi - lo) * i / 2f);
+                drawRightAligned(canvas, value, CHART_LEFT - 4, y + CHART_LABEL_SIZE / 3f, labelPaint);
+            }
+        }
+
+        float labelY = bottom + CHART_LABEL_SIZE + 4;
+        for (int i = 0; i < xLabels.length; i++) {
+            float width = labelPaint.measureText(xLabels[i]);
+            float x = xLabels.length == 1 ? CHART_LEFT
+                    : CHART_LEFT + (CHART_RIGHT - CHART_LEFT) * i / (xLabels.length - 1);
+            // First label starts at the axis, last ends at it, the rest are centred on their tick
+            float offset = i == 0 ? 0 : i == xLabels.length - 1 ? width : width / 2;
+            canvas.drawText(xLabels[i], x - offset, labelY, labelPaint);
+        }
+    }
+
+    /**
+     * Streams a finished document into a new file in the shared Documents/PulseGuard folder and
+     * closes it. On Android 10+ the bytes go straight into the MediaStore entry through its file
+     * descriptor; the entry stays pending, hidden from other apps, until it is complete.
+     *
+     * @return shareable content URI of the report
+     */
+    private Uri writeDocument(PdfDocument document) throws IOException {
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        String filename = "PulseGuard_Report_" + timestamp + ".pdf";
+        try {
+            Uri uri = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                    ? writeToMediaStore(document, filename)
+                    : writeToPublicDocuments(document, filename);
+            Log.i(TAG, "PDF report created successfully: " + uri);
+            return uri;
         } catch (IOException e) {
             Log.e(TAG, "Error writing PDF file", e);
             throw e;
         } finally {
             document.close();
         }
+    }
+
+    private Uri writeToMediaStore(PdfDocument document, String filename) throws IOException {
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.MediaColumns.DISPLAY_NAME, filename);
+        values.put(MediaStore.MediaColumns.MIME_TYPE, "application/pdf");
+        values.put(MediaStore.MediaColumns.RELATIVE_PATH, Environment.DIRECTORY_DOCUMENTS + "/PulseGuard");
+        values.put(MediaStore.MediaColumns.IS_PENDING, 1);
+
+        ContentResolver resolver = context.getContentResolver();
+        Uri uri = resolver.insert(MediaStore.Files.getContentUri("external"), values);
+        if (uri == null) {
+            throw new IOException("Failed to create file URI");
+        }
+        try {
+            ParcelFileDescriptor pfd = resolver.openFileDescriptor(uri, "w");
+            if (pfd == null) {
+                throw new IOException("Failed to open " + uri);
+            }
+            try (OutputStream out = new ParcelFileDescriptor.AutoCloseOutputStream(pfd)) {
+                document.writeTo(out);
+            }
+        } catch (IOException | RuntimeException e) {
+            resolver.delete(uri, null, null);
+            throw e;
+        }
+
+        values.clear();
+        values.put(MediaStore.MediaColumns.IS_PENDING, 0);
+        resolver.update(uri, values, null, null);
+        return uri;
+    }
+
+    private Uri writeToPublicDocuments(PdfDocument document, String filename) throws IOException {
+        File dir = new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOCUMENTS), "PulseGuard");
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Unable to create Documents/PulseGuard directory.");
+        }
+        File target = new File(dir, filename);
+        try (OutputStream out = new FileOutputStream(target)) {
+            document.writeTo(out);
+        } catch (IOException e) {
+            if (!target.delete()) {
+                Log.w(TAG, "Could not delete " + target);
+            }
+            throw e;
+        }
+        return getPdfUri(target);
+    }
 
-        return pdfFile;
+    /**
+     * Deletes a report written by this helper, e.g. when its export was cancelled.
+     */
+    public void discard(Uri uri) {
+        try {
+            context.getContentResolver().delete(uri, null, null);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Could not delete " + uri, e);
+        }
+    }
+
+    /**
+     * Draws the column titles of the daily table and an underline.
+     * Returns the baseline of the first row.
+     */
+    private int drawTableHeader(Canvas canvas, int startY) {
+        int y = startY + 10 + LABEL_SIZE;
+        canvas.save();
+        canvas.translate(0, y - LABEL_SIZE);
+        canvas.drawPicture(style.tableHeader);
+        canvas.restore();
+        y += 6;
+        drawSeparator(canvas, y);
+        return y + ROW_HEIGHT;
+    }
+
+    private void drawRightAligned(Canvas canvas, String text, float endX, float y, Paint paint) {
+        canvas.drawText(text, endX - paint.measureText(text), y, paint);
     }
 
     /**
@@ -113,37 +624,26 @@ public class PdfReportHelper {
      * Returns the vertical position after header content.
      */
     private int drawHeader(Canvas canvas, String title, int startY) {
-        Paint paint = new Paint();
-
-        // Draw background rectangle for header
-        paint.setColor(Color.parseColor("#3F51B5")); // Indigo 500
-        canvas.drawRect(0, 0, PAGE_WIDTH, startY + 50, paint);
-
-        // Draw simple circular logo (white)
-        paint.setColor(Color.WHITE);
-        paint.setAntiAlias(true);
-        int logoRadius = 20;
-        int logoX = MARGIN + logoRadius;
-        int logoY = startY + 25;
-        canvas.drawCircle(logoX, logoY, logoRadius, paint);
-
-        // Draw title text next to logo
-        paint.setColor(Color.WHITE);
-        paint.setTextSize(TITLE_SIZE);
-        paint.setTypeface(Typeface.create(Typeface.DEFAULT_BOLD, Typeface.BOLD));
-        float titleX = logoX + logoRadius + 15;
-        float titleY = logoY + (TITLE_SIZE / 3f);
-        canvas.drawText(title, titleX, titleY, paint);
+        // Background band and logo are replayed; only the title and timestamp are drawn per report
+        canvas.save();
+        canvas.translate(0, startY - MARGIN);
+        canvas.drawPicture(style.headerChrome);
+        canvas.restore();
+
+        float titleX = MARGIN + 2 * LOGO_RADIUS + 15;
+        float titleY = startY + LOGO_RADIUS + 5 + (TITLE_SIZE / 3f);
 
         // Draw timestamp on right side
-        paint.setTextSize(12);
-        paint.setTypeface(Typeface.DEFAULT);
-        paint.setAlpha(160);
-        String timestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date());
-        float timestampX = PAGE_WIDTH - MARGIN - paint.measureText("Generated: " + timestamp);
-        canvas.drawText("Generated: " + timestamp, timestampX, titleY, paint);
+        String generated = "Generated: "
+                + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date());
+        float timestampX = PAGE_WIDTH - MARGIN - style.timestampPaint.measureText(generated);
+        canvas.drawText(generated, timestampX, titleY, style.timestampPaint);
 
-        return startY + 50;  // height of header area
+        // Title fills the space up to the timestamp
+        canvas.drawText(TextLayout.ellipsize(title, style.titlePaint, timestampX - 10 - titleX),
+                titleX, titleY, style.titlePaint);
+
+        return startY + HEADER_HEIGHT;  // height of header area
     }
 
     /**
@@ -151,8 +651,8 @@ public class PdfReportHelper {
      * Returns vertical position after section.
      */
     private int drawUserInfoSection(Canvas canvas, UserInfo userInfo, int startY) {
-        Paint labelPaint = createPaint(Color.parseColor("#303F9F"), LABEL_SIZE, Typeface.BOLD);
-        Paint valuePaint = createPaint(Color.BLACK, VALUE_SIZE, Typeface.NORMAL);
+        Paint labelPaint = style.userLabelPaint;
+        Paint valuePaint = style.valuePaint;
 
         // Section title
         canvas.drawText("User Information", MARGIN, startY, labelPaint);
@@ -173,9 +673,9 @@ public class PdfReportHelper {
      * Returns vertical position after section.
      */
     private int drawHealthDataSection(Canvas canvas, HealthData data, int startY) {
-        Paint sectionTitlePaint = createPaint(Color.parseColor("#303F9F"), SECTION_TITLE_SIZE, Typeface.BOLD);
-        Paint labelPaint = createPaint(Color.DKGRAY, LABEL_SIZE, Typeface.BOLD);
-        Paint valuePaint = createPaint(Color.BLACK, VALUE_SIZE, Typeface.NORMAL);
+        Paint sectionTitlePaint = style.sectionTitlePaint;
+        Paint labelPaint = style.labelPaint;
+        Paint valuePaint = style.valuePaint;
 
         canvas.drawText("Health Metrics", MARGIN, startY, sectionTitlePaint);
 
@@ -192,10 +692,10 @@ public class PdfReportHelper {
      * Draws location data section with coordinates, accuracy, and Google Maps link.
      * Returns vertical position after section.
      */
-    private int drawLocationSection(Canvas canvas, Location location, int startY) {
-        Paint sectionTitlePaint = createPaint(Color.parseColor("#303F9F"), SECTION_TITLE_SIZE, Typeface.BOLD);
-        Paint labelPaint = createPaint(Color.DKGRAY, LABEL_SIZE, Typeface.BOLD);
-        Paint valuePaint = createPaint(Color.BLACK, VALUE_SIZE, Typeface.NORMAL);
+    private int drawLocationSection(Canvas canvas, Location location, String address, int startY) {
+        Paint sectionTitlePaint = style.sectionTitlePaint;
+        Paint labelPaint = style.labelPaint;
+        Paint valuePaint = style.valuePaint;
 
         canvas.drawText("Location Data", MARGIN, startY, sectionTitlePaint);
 
@@ -207,6 +707,10 @@ public class PdfReportHelper {
         String mapsUrl = "https://maps.google.com/?q=" + location.getLatitude() + "," + location.getLongitude();
         y = drawLabelValue(canvas, "Google Maps:", mapsUrl, y, labelPaint, valuePaint);
 
+        if (address != null) {
+            y = drawLabelValue(canvas, "Address:", safeText(address), y, labelPaint, valuePaint);
+        }
+
         return y;
     }
 
@@ -215,8 +719,8 @@ public class PdfReportHelper {
      * Returns vertical position after message.
      */
     private int drawLocationUnavailableSection(Canvas canvas, int startY) {
-        Paint sectionTitlePaint = createPaint(Color.parseColor("#303F9F"), SECTION_TITLE_SIZE, Typeface.BOLD);
-        Paint valuePaint = createPaint(Color.RED, VALUE_SIZE, Typeface.NORMAL);
+        Paint sectionTitlePaint = style.sectionTitlePaint;
+        Paint valuePaint = style.errorPaint;
 
         canvas.drawText("Location Data", MARGIN, startY, sectionTitlePaint);
 
@@ -232,10 +736,7 @@ public class PdfReportHelper {
      * Returns the y position passed in.
      */
     private int drawSeparator(Canvas canvas, int y) {
-        Paint paint = new Paint();
-        paint.setColor(Color.LTGRAY);
-        paint.setStrokeWidth(2);
-        canvas.drawLine(MARGIN, y, PAGE_WIDTH - MARGIN, y, paint);
+        canvas.drawLine(MARGIN, y, PAGE_WIDTH - MARGIN, y, style.separatorPaint);
         return y;
     }
 
@@ -243,103 +744,274 @@ public class PdfReportHelper {
      * Draws footer text including confidentiality note and page number.
      */
     private void drawFooter(Canvas canvas, int pageNumber) {
-        Paint paint = new Paint();
-        paint.setColor(Color.DKGRAY);
-        paint.setTextSize(FOOTER_SIZE);
-        paint.setTextAlign(Paint.Align.CENTER);
-
-        String footerText = "Generated by PulseGuard - Confidential Health Data";
-        float centerX = PAGE_WIDTH / 2f;
-        float yFooter = PAGE_HEIGHT - 25;
-
-        canvas.drawText(footerText, centerX, yFooter, paint);
-        canvas.drawText("Page " + pageNumber, centerX, yFooter + FOOTER_SIZE + 5, paint);
+        canvas.drawPicture(style.footerChrome);
+        canvas.drawText("Page " + pageNumber, PAGE_WIDTH / 2f, FOOTER_Y + FOOTER_SIZE + 5, style.footerPaint);
     }
 
     /**
-     * Draws a label and its corresponding value on the same line.
+     * Draws a label and its value to the right of it, wrapping long values (addresses, URLs) onto
+     * up to three lines aligned with the first.
      * Returns the next vertical position for following text.
      */
     private int drawLabelValue(Canvas canvas, String label, String value, int y, Paint labelPaint, Paint valuePaint) {
         canvas.drawText(label, MARGIN, y, labelPaint);
 
-        float labelWidth = labelPaint.measureText(label);
+        float labelWidth = style.measureLabel(labelPaint, label);
         float valueX = MARGIN + labelWidth + 10;
-
-        // Clip long text for values if needed, or wrap logic can be added later
-        String clippedValue = value;
         float maxWidth = PAGE_WIDTH - MARGIN - valueX;
-        if (valuePaint.measureText(value) > maxWidth) {
-            clippedValue = clipText(value, valuePaint, maxWidth);
-        }
 
-        canvas.drawText(clippedValue, valueX, y, valuePaint);
+        valueLines.clear();
+        int lineCount = TextLayout.wrap(value, valuePaint, maxWidth, MAX_VALUE_LINES, valueLines);
+        for (int i = 0; i < lineCount; i++) {
+            canvas.drawText(valueLines.get(i), valueX, y + i * VALUE_LINE_HEIGHT, valuePaint);
+        }
 
-        return y + LABEL_SIZE + 12;
+        return y + LABEL_SIZE + 12 + Math.max(0, lineCount - 1) * VALUE_LINE_HEIGHT;
     }
 
     /**
-     * Clips text to fit max width with ellipsis.
+     * Ensures text is not null or empty, returns "N/A" if so.
      */
-    private String clipText(String text, Paint paint, float maxWidth) {
-        if (paint.measureText(text) <= maxWidth) {
-            return text;
-        }
-        String ellipsis = "...";
-        int len = text.length();
-        while (len > 0 && paint.measureText(text.substring(0, len) + ellipsis) > maxWidth) {
-            len--;
-        }
-        return text.substring(0, len) + ellipsis;
+    private String safeText(String text) {
+        return (text == null || text.trim().isEmpty()) ? "N/A" : text.trim();
     }
 
     /**
-     * Creates a configured Paint object with given color, size, and style.
+     * Returns a content URI for the given file using FileProvider.
+     * Make sure your app manifest and provider paths are configured correctly.
      */
-    private Paint createPaint(int color, int textSize, int style) {
-        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        paint.setColor(color);
-        paint.setTextSize(textSize);
-        paint.setTypeface(Typeface.create(Typeface.DEFAULT, style));
-        return paint;
+    public Uri getPdfUri(File file) {
+        return FileProvider.getUriForFile(
+                context,
+                context.getPackageName() + ".fileprovider",
+                file
+        );
     }
 
     /**
-     * Ensures text is not null or empty, returns "N/A" if so.
+     * Styles and static page chrome shared by every report, built once per process.
+     * <p>
+     * Paints are created with their typeface and color resolved up front, static label widths are
+     * measured once, and the parts of a page that never change (header band and logo, footer note,
+     * table column titles) are recorded into {@link Picture}s that each page replays. Nothing here
+     * is modified after construction except the label width cache, so it can be shared by reports
+     * rendered on different threads.
      */
-    private String safeText(String text) {
-        return (text == null || text.trim().isEmpty()) ? "N/A" : text.trim();
+    private static final class Template {
+        private static Template instance;
+
+        final Paint titlePaint = textPaint(Color.WHITE, TITLE_SIZE, Typeface.BOLD);
+        final Paint timestampPaint = textPaint(Color.WHITE, 12, Typeface.NORMAL);
+        final Paint sectionTitlePaint = textPaint(COLOR_PRIMARY_DARK, SECTION_TITLE_SIZE, Typeface.BOLD);
+        final Paint userLabelPaint = textPaint(COLOR_PRIMARY_DARK, LABEL_SIZE, Typeface.BOLD);
+        final Paint labelPaint = textPaint(Color.DKGRAY, LABEL_SIZE, Typeface.BOLD);
+        final Paint valuePaint = textPaint(Color.BLACK, VALUE_SIZE, Typeface.NORMAL);
+        final Paint errorPaint = textPaint(Color.RED, VALUE_SIZE, Typeface.NORMAL);
+        final Paint footerPaint = textPaint(Color.DKGRAY, FOOTER_SIZE, Typeface.NORMAL);
+        final Paint separatorPaint = new Paint();
+        final Paint rowShadePaint = new Paint();
+        final Paint chartLabelPaint = textPaint(Color.DKGRAY, CHART_LABEL_SIZE, Typeface.NORMAL);
+        final Paint chartAxisPaint = new Paint();
+        final Paint chartGridPaint = new Paint();
+        final Paint chartLinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        final Paint chartBarPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+        final Picture headerChrome;
+        final Picture footerChrome;
+        final Picture tableHeader;
+
+        private final Map<Paint, Map<String, Float>> labelWidths = new IdentityHashMap<>();
+
+        static synchronized Template get() {
+            if (instance == null) {
+                instance = new Template();
+            }
+            return instance;
+        }
+
+        private Template() {
+            timestampPaint.setAlpha(160);
+            footerPaint.setTextAlign(Paint.Align.CENTER);
+            separatorPaint.setColor(Color.LTGRAY);
+            separatorPaint.setStrokeWidth(2);
+            rowShadePaint.setColor(COLOR_ROW_SHADE);
+            chartAxisPaint.setColor(Color.GRAY);
+            chartAxisPaint.setStrokeWidth(1);
+            chartGridPaint.setColor(Color.LTGRAY);
+            chartGridPaint.setStrokeWidth(0.5f);
+            chartLinePaint.setColor(COLOR_PRIMARY);
+            chartLinePaint.setStyle(Paint.Style.STROKE);
+            chartLinePaint.setStrokeWidth(1.5f);
+            chartLinePaint.setStrokeJoin(Paint.Join.ROUND);
+            chartLinePaint.setStrokeCap(Paint.Cap.ROUND);
+            chartBarPaint.setColor(COLOR_PRIMARY);
+
+            headerChrome = new Picture();
+            Canvas canvas = headerChrome.beginRecording(PAGE_WIDTH, MARGIN + HEADER_HEIGHT);
+            Paint bandPaint = new Paint();
+            bandPaint.setColor(COLOR_PRIMARY);
+            canvas.drawRect(0, 0, PAGE_WIDTH, MARGIN + HEADER_HEIGHT, bandPaint);
+            Paint logoPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            logoPaint.setColor(Color.WHITE);
+            canvas.drawCircle(MARGIN + LOGO_RADIUS, MARGIN + LOGO_RADIUS + 5, LOGO_RADIUS, logoPaint);
+            headerChrome.endRecording();
+
+            footerChrome = new Picture();
+            canvas = footerChrome.beginRecording(PAGE_WIDTH, PAGE_HEIGHT);
+            canvas.drawText(FOOTER_TEXT, PAGE_WIDTH / 2f, FOOTER_Y, footerPaint);
+            footerChrome.endRecording();
+
+            // Recorded with the text baseline at y = LABEL_SIZE
+            tableHeader = new Picture();
+            canvas = tableHeader.beginRecording(PAGE_WIDTH, LABEL_SIZE + 6);
+            canvas.drawText("Date", COLUMN_DATE_X, LABEL_SIZE, labelPaint);
+            drawEndAligned(canvas, "Steps", COLUMN_STEPS_END, labelPaint);
+            drawEndAligned(canvas, "Calories", COLUMN_CALORIES_END, labelPaint);
+            drawEndAligned(canvas, "Avg HR", COLUMN_HEART_RATE_END, labelPaint);
+            tableHeader.endRecording();
+        }
+
+        /**
+         * Width of a static label, measured on first use.
+         */
+        synchronized float measureLabel(Paint paint, String label) {
+            Map<String, Float> widths = labelWidths.get(paint);
+            if (widths == null) {
+                widths = new HashMap<>();
+                labelWidths.put(paint, widths);
+            }
+            Float width = widths.get(label);
+            if (width == null) {
+                width = paint.measureText(label);
+                widths.put(label, width);
+            }
+            return width;
+        }
+
+        private void drawEndAligned(Canvas canvas, String text, float endX, Paint paint) {
+            canvas.drawText(text, endX - paint.measureText(text), LABEL_SIZE, paint);
+        }
+
+        private static Paint textPaint(int color, int textSize, int style) {
+            Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            paint.setColor(color);
+            paint.setTextSize(textSize);
+            paint.setTypeface(Typeface.create(Typeface.DEFAULT, style));
+            return paint;
+        }
     }
 
     /**
-     * Creates the output file in the app's Documents folder with a timestamped filename.
+     * Starts and finishes pages of a range report as rows are added, repeating a compact header
+     * and the table header on each continuation page.
      */
-    private File createOutputFile() throws IOException {
-        File directory = context.getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS);
-        if (directory == null) {
-            throw new IOException("Unable to access external Documents directory.");
+    private class RangePageWriter {
+        private final PdfDocument document;
+        private final String continuationTitle;
+        private PdfDocument.Page page;
+        int pageNumber;
+        int y;
+
+        RangePageWriter(PdfDocument document, String continuationTitle) {
+            this.document = document;
+            this.continuationTitle = continuationTitle;
         }
 
-        if (!directory.exists() && !directory.mkdirs()) {
-            throw new IOException("Unable to create Documents directory.");
+        Canvas startPage() {
+            pageNumber++;
+            PdfDocument.PageInfo pageInfo =
+                    new PdfDocument.PageInfo.Builder(PAGE_WIDTH, PAGE_HEIGHT, pageNumber).create();
+            page = document.startPage(pageInfo);
+            y = MARGIN;
+            return page.getCanvas();
         }
 
-        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-        String filename = "PulseGuard_Report_" + timestamp + ".pdf";
+        void finishPage() {
+            drawFooter(page.getCanvas(), pageNumber);
+            document.finishPage(page);
+            page = null;
+        }
 
-        return new File(directory, filename);
+        /**
+         * @param height     Space needed above the footer
+         * @param tableRows  Whether table rows follow, so a new page repeats the table header
+         * @return canvas with enough space left, on a new page if needed
+         */
+        Canvas ensureSpace(int height, boolean tableRows) {
+            if (y + height <= CONTENT_BOTTOM) {
+                return page.getCanvas();
+            }
+            finishPage();
+            Canvas canvas = startPage();
+            canvas.drawText(continuationTitle, MARGIN, y, style.userLabelPaint);
+            y = tableRows ? drawTableHeader(canvas, y) : y + ROW_HEIGHT;
+            return canvas;
+        }
     }
 
     /**
-     * Returns a content URI for the given file using FileProvider.
-     * Make sure your app manifest and provider paths are configured correctly.
+     * Per-day steps and average heart rate of a range report, collected while its rows are drawn
+     * and decimated once at the end.
      */
-    public android.net.Uri getPdfUri(File file) {
-        return FileProvider.getUriForFile(
-                context,
-                context.getPackageName() + ".provider",
-                file
-        );
+    private static final class DailyTrend {
+        long[] stepDays = new long[32];
+        float[] steps = new float[32];
+        int stepCount;
+        long[] heartRateDays = new long[32];
+        float[] heartRates = new float[32];
+        int heartRateCount;
+
+        void add(DailyHealthRecord day) {
+            long epochDay;
+            try {
+                epochDay = LocalDate.parse(day.getDate()).toEpochDay();
+            } catch (DateTimeParseException e) {
+                Log.w(TAG, "Skipping unparseable date in trend: " + day.getDate());
+                return;
+            }
+            if (stepCount == stepDays.length) {
+                stepDays = Arrays.copyOf(stepDays, stepCount * 2);
+                steps = Arrays.copyOf(steps, stepCount * 2);
+            }
+            stepDays[stepCount] = epochDay;
+            steps[stepCount++] = day.getSteps();
+            if (day.getHeartRate() > 0) {
+                if (heartRateCount == heartRateDays.length) {
+                    heartRateDays = Arrays.copyOf(heartRateDays, heartRateCount * 2);
+                    heartRates = Arrays.copyOf(heartRates, heartRateCount * 2);
+                }
+                heartRateDays[heartRateCount] = epochDay;
+                heartRates[heartRateCount++] = day.getHeartRate();
+            }
+        }
+
+        /**
+         * Decimates both series to the chart resolution. Call once, after the last day.
+         */
+        void decimate() {
+            if (stepCount > CHART_MAX_POINTS) {
+                long[] days = new long[CHART_MAX_POINTS];
+                float[] values = new float[CHART_MAX_POINTS];
+                stepCount = ChartDecimator.lttb(stepDays, steps, stepCount, CHART_MAX_POINTS, days, values);
+                stepDays = days;
+                steps = values;
+            }
+            if (heartRateCount > CHART_MAX_POINTS) {
+                long[] days = new long[CHART_MAX_POINTS];
+                float[] values = new float[CHART_MAX_POINTS];
+                heartRateCount = ChartDecimator.lttb(heartRateDays, heartRates, heartRateCount, CHART_MAX_POINTS,
+                        days, values);
+                heartRateDays = days;
+                heartRates = values;
+            }
+        }
+
+        String[] labels(long[] epochDays, int count) {
+            return new String[]{
+                    LocalDate.ofEpochDay(epochDays[0]).toString(),
+                    LocalDate.ofEpochDay(epochDays[count - 1]).toString()
+            };
+        }
     }
 
     // === Data Classes ===
@@ -371,6 +1043,108 @@ public class PdfReportHelper {
         }
     }
 
+    /**
+     * Intraday series of one day for the trend page: heart rate reduced to the chart resolution,
+     * and steps per hour.
+     */
+    public static class TrendData {
+        private final long dayStart;
+        private final long[] heartRateTimes;
+        private final float[] heartRateValues;
+        private final int heartRateCount;
+        private final float[] hourlySteps;
+        private final List<TrailRecorder.Trail> trails;
+        private final boolean complete;
+
+        /**
+         * @param dayStart        Local midnight starting the day, in epoch milliseconds
+         * @param heartRateTimes  Heart rate sample times, ascending
+         * @param heartRateValues Heart rate samples in bpm
+         * @param heartRateCount  Number of samples to chart; should already be decimated
+         * @param hourlySteps     Steps in each of the 24 hours of the day
+         */
+        public TrendData(long dayStart, long[] heartRateTimes, float[] heartRateValues, int heartRateCount,
+                         float[] hourlySteps) {
+            this(dayStart, heartRateTimes, heartRateValues, heartRateCount, hourlySteps,
+                    Collections.<TrailRecorder.Trail>emptyList());
+        }
+
+        /**
+         * @param trails Routes recorded during the day, drawn below the charts if not empty
+         */
+        public TrendData(long dayStart, long[] heartRateTimes, float[] heartRateValues, int heartRateCount,
+                         float[] hourlySteps, List<TrailRecorder.Trail> trails) {
+            this(dayStart, heartRateTimes, heartRateValues, heartRateCount, hourlySteps, trails, true);
+        }
+
+        /**
+         * @param complete false if the series are known to miss part of the day
+         */
+        public TrendData(long dayStart, long[] heartRateTimes, float[] heartRateValues, int heartRateCount,
+                         float[] hourlySteps, List<TrailRecorder.Trail> trails, boolean complete) {
+            this.dayStart = dayStart;
+            this.heartRateTimes = heartRateTimes;
+            this.heartRateValues = heartRateValues;
+            this.heartRateCount = heartRateCount;
+            this.hourlySteps = hourlySteps;
+            this.trails = trails;
+            this.complete = complete;
+        }
+
+        /**
+         * Builds the trends of a day. Heart rate is streamed from the in-memory series through
+         * min/max buckets, so a full day of 1 Hz samples is read once and reduced to at most one
+         * point per horizontal point of the chart without being copied. Steps per hour come from
+         * {@link FitSyncEngine}'s hourly buckets, which are persisted and cover the whole day.
+         *
+         * @param store    Source of the heart-rate samples, filled for the day by
+         *                 {@link FitnessRepository#loadDayHeartRate(long)}
+         * @param hourly   Hourly buckets of the day, or null if they could not be read
+         * @param dayStart Local midnight starting the day, in epoch milliseconds
+         * @param trails   Routes recorded during the day
+         * @param complete true if the store holds every heart-rate sample of the day so far
+         */
+        public static TrendData fromStore(HealthTimeSeriesStore store, FitSyncEngine.HourlySummary hourly,
+                                          long dayStart, List<TrailRecorder.Trail> trails, boolean complete) {
+            long dayEnd = dayStart + TimeUnit.DAYS.toMillis(1);
+            ChartDecimator.MinMaxBuckets buckets = new ChartDecimator.MinMaxBuckets(dayStart, dayEnd, CHART_MAX_POINTS / 2);
+            store.scan(HealthTimeSeriesStore.Metric.HEART_RATE, dayStart, dayEnd, buckets);
+            long[] times = new long[buckets.capacity()];
+            float[] values = new float[buckets.capacity()];
+            int count = buckets.toPoints(times, values);
+
+            float[] hourlySteps = new float[24];
+            if (hourly != null) {
+                for (int i = 0; i < hourlySteps.length; i++) {
+                    hourlySteps[i] = hourly.getStepsForHour(i);
+                }
+            }
+            return new TrendData(dayStart, times, values, count, hourlySteps, trails, complete && hourly != null);
+        }
+
+        /**
+         * @return false if part of the day could not be read; such a report must not be cached
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+
+        void addTo(ReportCache.KeyBuilder key) {
+            key.add(dayStart).add(complete ? "complete" : "partial").add(heartRateCount);
+            for (int i = 0; i < heartRateCount; i++) {
+                key.add(heartRateTimes[i]).add(heartRateValues[i]);
+            }
+            for (float steps : hourlySteps) {
+                key.add(steps);
+            }
+            key.add(trails.size());
+            for (TrailRecorder.Trail trail : trails) {
+                key.add(trail.getStartedAt()).add(trail.getEndedAt()).add(trail.getDistanceMeters())
+                        .add(trail.getPolyline());
+            }
+        }
+    }
+
     /**
      * Struct to hold user information.
      */
@@ -0,0 +1,107 @@
+package com.example.pulseguard.helpers;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Encoded polyline format: each value is stored as the difference to the previous one, zigzag-coded
+ * and written in 5-bit groups as printable ASCII. Coordinates are rounded to 1e-5 degrees (about a
+ * metre), so a point moved by a few metres costs two or three characters per coordinate.
+ * <p>
+ * Strings are compatible with the Google Maps polyline encoding. Because values are deltas, a
+ * string encoding points after a known last point can be appended to an existing one.
+ */
+public final class PolylineCodec {
+
+    private static final double SCALE = 1e5;
+
+    private PolylineCodec() {
+    }
+
+    /**
+     * @return degrees in the fixed-point units of the encoding
+     */
+    public static long toFixed(double degrees) {
+        return Math.round(degrees * SCALE);
+    }
+
+    public static double toDegrees(long fixed) {
+        return fixed / SCALE;
+    }
+
+    /**
+     * Appends one signed value, usually the delta to the previous value of the same dimension.
+     */
+    public static void appendValue(@NonNull StringBuilder out, long value) {
+        long bits = value < 0 ? ~(value << 1) : value << 1;
+        while (bits >= 0x20) {
+            out.append((char) ((0x20 | (bits & 0x1F)) + 63));
+            bits >>>= 5;
+        }
+        out.append((char) (bits + 63));
+    }
+
+    /**
+     * Encodes points as (latitude, longitude) pairs.
+     */
+    @NonNull
+    public static String encode(@NonNull double[] latitudes, @NonNull double[] longitudes, int count) {
+        StringBuilder out = new StringBuilder(count * 6);
+        long lastLat = 0;
+        long lastLon = 0;
+        for (int i = 0; i < count; i++) {
+            long lat = toFixed(latitudes[i]);
+            long lon = toFixed(longitudes[i]);
+            appendValue(out, lat - lastLat);
+            appendValue(out, lon - lastLon);
+            lastLat = lat;
+            lastLon = lon;
+        }
+        return out.toString();
+    }
+
+    /**
+     * Decodes every value of an encoded string and sums the deltas of each of the given number of
+     * interleaved dimensions back into absolute values.
+     *
+     * @param dimensions 2 for a polyline, 1 for a plain delta-coded sequence
+     * @return absolute values, dimension by dimension for each point
+     * @throws IllegalArgumentException if the string is not a valid encoding
+     */
+    @NonNull
+    public static long[] decode(@NonNull CharSequence encoded, int dimensions) {
+        long[] values = new long[Math.max(dimensions, encoded.length() / 2)];
+        long[] running = new long[dimensions];
+        int count = 0;
+        int i = 0;
+        while (i < encoded.length()) {
+            long bits = 0;
+            int shift = 0;
+            int chunk;
+            do {
+                if (i >= encoded.length() || shift > 60) {
+                    throw new IllegalArgumentException("Truncated polyline at " + i);
+                }
+                chunk = encoded.charAt(i++) - 63;
+                if (chunk < 0 || chunk > 0x3F) {
+                    throw new IllegalArgumentException("Invalid polyline character at " + (i - 1));
+                }
+                bits |= (long) (chunk & 0x1F) << shift;
+                shift += 5;
+            } while (chunk >= 0x20);
+            long delta = (bits & 1) != 0 ? ~(bits >>> 1) : bits >>> 1;
+
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            int dimension = count % dimensions;
+            running[dimension] += delta;
+            values[count++] = running[dimension];
+        }
+        if (count % dimensions != 0) {
+            throw new IllegalArgumentException("Polyline ends in the middle of a point");
+        }
+        return Arrays.copyOf(values, count);
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.pulseguard.helpers;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+/**
+ * Remembers published reports by a hash of everything that went into them.
+ * <p>
+ * A report's key covers its kind, user, dates, data version, locale and layout version, so an
+ * export whose inputs have not changed since the last one is answered with the document already
+ * in Documents/PulseGuard instead of being rendered again. Entries whose document was deleted or
+ * moved are dropped on lookup.
+ */
+public class ReportCache {
+
+    private static final String TAG = "ReportCache";
+
+    private static final String PREFS_NAME = "PulseGuardReportCache";
+    private static final int MAX_ENTRIES = 32;
+
+    private static ReportCache instance;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+
+    private ReportCache(Context context) {
+        this.context = context.getApplicationContext();
+        this.prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Get singleton instance of ReportCache.
+     *
+     * @param context Any context; the application context is retained
+     * @return ReportCache instance
+     */
+    public static synchronized ReportCache getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new ReportCache(context);
+        }
+        return instance;
+    }
+
+    /**
+     * @return URI of the report published for this key, or null if there is none or it is gone
+     */
+    @Nullable
+    @WorkerThread
+    public synchronized Uri get(@NonNull String key) {
+        String entry = prefs.getString(key, null);
+        if (entry == null) {
+            return null;
+        }
+        Uri uri = Uri.parse(entry.substring(entry.indexOf('|') + 1));
+        try (ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(uri, "r")) {
+            if (pfd != null && pfd.getStatSize() != 0) {
+                return uri;
+            }
+        } catch (FileNotFoundException | SecurityException e) {
+            Log.d(TAG, "Cached report no longer available: " + uri);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not close " + uri, e);
+        }
+        prefs.edit().remove(key).apply();
+        return null;
+    }
+
+    /**
+     * Records the published report of a key, forgetting the oldest entry beyond the limit. The
+     * forgotten document itself stays in Documents.
+     */
+    public synchronized void put(@NonNull String key, @NonNull Uri uri) {
+        SharedPreferences.Editor editor = prefs.edit();
+        Map<String, ?> entries = prefs.getAll();
+        if (entries.size() >= MAX_ENTRIES && !entries.containsKey(key)) {
+            String oldestKey = null;
+            long oldest = Long.MAX_VALUE;
+            for (Map.Entry<String, ?> entry : entries.entrySet()) {
+                String value = String.valueOf(entry.getValue());
+                long savedAt = parseSavedAt(value);
+                if (savedAt < oldest) {
+                    oldest = savedAt;
+                    oldestKey = entry.getKey();
+                }
+            }
+            editor.remove(oldestKey);
+        }
+        editor.putString(key, System.currentTimeMillis() + "|" + uri).apply();
+    }
+
+    public synchronized void clear() {
+        prefs.edit().clear().apply();
+    }
+
+    private static long parseSavedAt(String value) {
+        int separator = value.indexOf('|');
+        try {
+            return separator > 0 ? Long.parseLong(value.substring(0, separator)) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Builds a cache key as the SHA-256 of a sequence of values. Each value is length-prefixed, so
+     * different sequences never produce the same input.
+     */
+    public static class KeyBuilder {
+        private final MessageDigest digest;
+
+        public KeyBuilder(@NonNull String kind) {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+            add(kind);
+        }
+
+        public KeyBuilder add(@Nullable String value) {
+            if (value == null) {
+                return add(-1L);
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            add((long) bytes.length);
+            digest.update(bytes);
+            return this;
+        }
+
+        public KeyBuilder add(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                digest.update((byte) (value >>> shift));
+            }
+            return this;
+        }
+
+        public KeyBuilder add(double value) {
+            return add(Double.doubleToLongBits(value));
+        }
+
+        @NonNull
+        public String build() {
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.example.pulseguard.helpers;
+
+import android.content.Context;
+import android.location.Location;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Generates PDF reports off the main thread.
+ * <p>
+ * Every report goes through {@link PdfReportHelper} on a single background thread: address lookup,
+ * then rendering straight into the shared Documents folder. Reports are keyed in {@link ReportCache}
+ * by a hash of their inputs, so exporting unchanged data returns the earlier document without
+ * rendering. A snapshot report first makes sure today's heart rate and hourly steps cover the whole
+ * day; if either cannot be read it is rendered from what is available and not cached. Submitting a
+ * new request cancels the one still running, so repeated taps on Export produce one report. Progress and the result are delivered on the main thread, and never for a
+ * cancelled request.
+ */
+public class ReportPipeline {
+
+    private static final String TAG = "ReportPipeline";
+
+    private static final long GEOCODE_TIMEOUT_MS = 3000;
+    private static final long FIT_READ_TIMEOUT_MS = 15000;
+
+    /**
+     * Receives the progress and outcome of a report, on the main thread.
+     */
+    public interface Callback {
+        void onProgress(int percent, @NonNull String stage);
+
+        void onReportReady(@NonNull Result result);
+
+        void onReportFailed(@NonNull Exception error);
+    }
+
+    private static ReportPipeline instance;
+
+    private final Context context;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private Job currentJob;
+
+    private ReportPipeline(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Get singleton instance of ReportPipeline.
+     *
+     * @param context Any context; the application context is retained
+     * @return ReportPipeline instance
+     */
+    public static synchronized ReportPipeline getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new ReportPipeline(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Starts generating a report, cancelling the one in progress if any.
+     */
+    @MainThread
+    public synchronized void submit(@NonNull Request request, @NonNull Callback callback) {
+        cancel();
+        Job job = new Job(request, callback);
+        job.future = executor.submit(job);
+        currentJob = job;
+    }
+
+    /**
+     * Cancels the report in progress. Its callback is not called again.
+     */
+    @MainThread
+    public synchronized void cancel() {
+        if (currentJob != null) {
+            currentJob.cancel();
+            currentJob = null;
+        }
+    }
+
+    private synchronized void finished(Job job) {
+        if (currentJob == job) {
+            currentJob = null;
+        }
+    }
+
+    /**
+     * One report run. Checks for cancellation between stages; a stage already running is allowed
+     * to finish but its output is discarded.
+     */
+    private final class Job implements Runnable {
+        private final Request request;
+        private volatile Callback callback;
+        private volatile boolean cancelled;
+        private Future<?> future;
+
+        Job(Request request, Callback callback) {
+            this.request = request;
+            this.callback = callback;
+        }
+
+        void cancel() {
+            cancelled = true;
+            callback = null; // do not keep the caller (usually an Activity) alive
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                PdfReportHelper helper = new PdfReportHelper(context);
+                Uri uri;
+                boolean fromCache;
+                if (request.isRange()) {
+                    progress(20, "Rendering report");
+                    Result range = renderRange(context, helper, request.title, request.userInfo,
+                            request.userId, request.fromDate, request.toDate);
+                    uri = range.getSharedUri();
+                    fromCache = range.isFromCache();
+                } else {
+                    String address = null;
+                    if (request.location != null) {
+                        progress(10, "Looking up address");
+                        // Cached addresses return at once; otherwise the report waits at most the deadline
+                        // and shows coordinates only
+                        address = ReverseGeocoder.getInstance(context).lookUpBlocking(
+                                request.location.getLatitude(), request.location.getLongitude(), GEOCODE_TIMEOUT_MS);
+                    }
+                    if (cancelled) {
+                        return;
+                    }
+
+                    progress(20, "Reading today's data");
+                    PdfReportHelper.TrendData trends = loadTrends();
+                    if (cancelled) {
+                        return;
+                    }
+
+                    ReportCache cache = ReportCache.getInstance(context);
+                    String key = snapshotKey(request, address, trends);
+                    uri = cache.get(key);
+                    fromCache = uri != null;
+                    if (!fromCache) {
+                        progress(40, "Rendering report");
+                        uri = helper.createHealthReport(request.title, request.userInfo, request.healthData,
+                                request.location, address, trends);
+                        if (trends.isComplete()) {
+                            cache.put(key, uri);
+                        }
+                    }
+                }
+
+                if (cancelled) {
+                    // The cache entry of a discarded report is dropped on its next lookup
+                    if (!fromCache) {
+                        helper.discard(uri);
+                    }
+                    return;
+                }
+
+                Result result = new Result(uri, fromCache);
+                deliver(() -> {
+                    Callback target = callback;
+                    if (!cancelled && target != null) {
+                        target.onReportReady(result);
+                    }
+                });
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Report generation failed", e);
+                deliver(() -> {
+                    Callback target = callback;
+                    if (!cancelled && target != null) {
+                        target.onReportFailed(e);
+                    }
+                });
+            } finally {
+                finished(this);
+            }
+        }
+
+        /**
+         * Reads the part of today's heart rate the in-memory store is missing (after a cold start it only
+         * holds the last sync's window) and today's hourly buckets, waiting at most the deadline for each.
+         */
+        private PdfReportHelper.TrendData loadTrends() {
+            long dayStart = FitSyncEngine.startOfDay(System.currentTimeMillis());
+            FitnessRepository repository = FitnessRepository.getInstance(context);
+            Task<Boolean> heartRate = repository.loadDayHeartRate(dayStart);
+            Task<FitSyncEngine.HourlySummary> hourly = repository.refreshTodayHourlySummary(false);
+
+            boolean heartRateComplete = false;
+            FitSyncEngine.HourlySummary hourlySummary = null;
+            try {
+                heartRateComplete = Tasks.await(heartRate, FIT_READ_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                Log.w(TAG, "Charting the heart rate held in memory only", e);
+            } catch (InterruptedException e) {
+                // Cancelled; run() checks the flag next
+                Thread.currentThread().interrupt();
+            }
+            try {
+                hourlySummary = Tasks.await(hourly, FIT_READ_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                Log.w(TAG, "Hourly steps unavailable", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            List<TrailRecorder.Trail> trails = TrailRecorder.getInstance(context)
+                    .getTrails(dayStart, dayStart + TimeUnit.DAYS.toMillis(1));
+            return PdfReportHelper.TrendData.fromStore(HealthTimeSeriesStore.getInstance(), hourlySummary,
+                    dayStart, trails, heartRateComplete);
+        }
+
+        private void progress(int percent, String stage) {
+            deliver(() -> {
+                Callback target = callback;
+                if (!cancelled && target != null) {
+                    target.onProgress(percent, stage);
+                }
+            });
+        }
+
+        private void deliver(Runnable action) {
+            if (!cancelled) {
+                mainHandler.post(action);
+            }
+        }
+    }
+
+    /**
+     * Renders a range report from {@link LocalHealthStore}, or returns the cached one if none of the
+     * stored days in the range changed since. A new report is added to the cache.
+     */
+    @WorkerThread
+    static Result renderRange(Context context, PdfReportHelper helper, String title, PdfReportHelper.UserInfo userInfo,
+                              String userId, String fromDate, String toDate) throws IOException {
+        LocalHealthStore store = LocalHealthStore.getInstance(context);
+        ReportCache cache = ReportCache.getInstance(context);
+        String key = baseKey("range", title, userInfo)
+                .add(userId).add(fromDate).add(toDate).add(store.getDataVersion(userId, fromDate, toDate))
+                .build();
+        Uri cached = cache.get(key);
+        if (cached != null) {
+            return new Result(cached, true);
+        }
+
+        Uri uri;
+        try (LocalHealthStore.RecordCursor days = store.openRange(userId, fromDate, toDate)) {
+            uri = helper.createRangeReport(title, userInfo, fromDate, toDate, days);
+        }
+        cache.put(key, uri);
+        return new Result(uri, false);
+    }
+
+    /**
+     * Starts a cache key with the inputs shared by both kinds of report.
+     */
+    private static ReportCache.KeyBuilder baseKey(String kind, String title, PdfReportHelper.UserInfo user) {
+        return new ReportCache.KeyBuilder(kind)
+                .add(PdfReportHelper.LAYOUT_VERSION)
+                .add(Locale.getDefault().toLanguageTag())
+                .add(title)
+                .add(user.getName()).add(user.getEmail()).add(user.getDob()).add(user.getPhone()).add(user.getAddress());
+    }
+
+    private static String snapshotKey(Request request, @Nullable String address, PdfReportHelper.TrendData trends) {
+        PdfReportHelper.HealthData data = request.healthData;
+        ReportCache.KeyBuilder key = baseKey("snapshot", request.title, request.userInfo)
+                .add(data.getSteps()).add(data.getCalories()).add(data.getHeartRate());
+        Location location = request.location;
+        if (location != null) {
+            key.add(location.getLatitude()).add(location.getLongitude()).add(location.getAccuracy()).add(address);
+        } else {
+            key.add("no location");
+        }
+        trends.addTo(key);
+        return key.build();
+    }
+
+    // === Data Classes ===
+
+    /**
+     * Inputs of one report: either today's snapshot or a date range read from {@link LocalHealthStore}.
+     */
+    public static class Request {
+        private final String title;
+        private final PdfReportHelper.UserInfo userInfo;
+        private final PdfReportHelper.HealthData healthData;
+        private final Location location;
+        private final String userId;
+        private final String fromDate;
+        private final String toDate;
+
+        /**
+         * @param title      Title of the report
+         * @param userInfo   User details
+         * @param healthData Health metrics
+         * @param location   Location to include, can be null if unavailable
+         */
+        public Request(@NonNull String title, @NonNull PdfReportHelper.UserInfo userInfo,
+                       @NonNull PdfReportHelper.HealthData healthData, @Nullable Location location) {
+            this.title = title;
+            this.userInfo = userInfo;
+            this.healthData = healthData;
+            this.location = location;
+            this.userId = null;
+            this.fromDate = null;
+            this.toDate = null;
+        }
+
+        /**
+         * @param title    Title of the report
+         * @param userInfo User details
+         * @param userId   User whose stored days are reported
+         * @param fromDate First date (yyyy-MM-dd), inclusive
+         * @param toDate   Last date (yyyy-MM-dd), inclusive
+         */
+        public Request(@NonNull String title, @NonNull PdfReportHelper.UserInfo userInfo,
+                       @NonNull String userId, @NonNull String fromDate, @NonNull String toDate) {
+            this.title = title;
+            this.userInfo = userInfo;
+            this.healthData = null;
+            this.location = null;
+            this.userId = userId;
+            this.fromDate = fromDate;
+            this.toDate = toDate;
+        }
+
+        boolean isRange() {
+            return userId != null;
+        }
+    }
+
+    /**
+     * A generated report in the shared Documents folder.
+     */
+    public static class Result {
+        private final Uri sharedUri;
+        private final boolean fromCache;
+
+        Result(Uri sharedUri, boolean fromCache) {
+            this.sharedUri = sharedUri;
+            this.fromCache = fromCache;
+        }
+
+        /**
+         * @return content URI of the report, readable by apps it is shared with
+         */
+        public Uri getSharedUri() {
+            return sharedUri;
+        }
+
+        /**
+         * @return true if nothing changed since an earlier export and its document was reused
+         */
+        public boolean isFromCache() {
+            return fromCache;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.example.pulseguard.helpers;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.location.Address;
+import android.location.Geocoder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.annotation.WorkerThread;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Turns coordinates into a street address without ever blocking a report or an SOS message.
+ * <p>
+ * Addresses are cached by geohash cell (about 150 m across) and locale, in memory and in
+ * SharedPreferences, so repeated lookups from the same place never reach the {@link Geocoder}.
+ * Misses use the asynchronous Geocoder API on Android 13+ and a background thread before that.
+ * Every lookup has a deadline: when it passes, the caller gets no address (and can fall back to
+ * coordinates) while the lookup keeps running and caches its answer for next time.
+ */
+public class ReverseGeocoder {
+
+    private static final String TAG = "ReverseGeocoder";
+
+    private static final String PREFS_NAME = "PulseGuardGeocodeCache";
+
+    // 7 characters: cells of roughly 153 m x 153 m
+    private static final int GEOHASH_PRECISION = 7;
+    private static final String GEOHASH_ALPHABET = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    private static final int MEMORY_CACHE_SIZE = 64;
+    private static final int DISK_CACHE_SIZE = 256;
+    private static final long DISK_ENTRY_TTL_MS = TimeUnit.DAYS.toMillis(30);
+
+    private static ReverseGeocoder instance;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private final LruCache<String, String> memoryCache = new LruCache<>(MEMORY_CACHE_SIZE);
+    private final Map<String, Task<String>> inFlight = new HashMap<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Runs the blocking Geocoder call on devices without the asynchronous API
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private ReverseGeocoder(Context context) {
+        this.context = context.getApplicationContext();
+        this.prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Get singleton instance of ReverseGeocoder.
+     *
+     * @param context Any context; the application context is retained
+     * @return ReverseGeocoder instance
+     */
+    public static synchronized ReverseGeocoder getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new ReverseGeocoder(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the cached address of the cell containing the coordinates, without any lookup.
+     */
+    @Nullable
+    public String peek(double latitude, double longitude) {
+        String key = cacheKey(latitude, longitude);
+        String address = memoryCache.get(key);
+        if (address != null) {
+            return address;
+        }
+
+        String entry = prefs.getString(key, null);
+        if (entry == null) {
+            return null;
+        }
+        int separator = entry.indexOf('|');
+        long savedAt = separator > 0 ? parseLong(entry.substring(0, separator)) : 0;
+        if (System.currentTimeMillis() - savedAt > DISK_ENTRY_TTL_MS) {
+            prefs.edit().remove(key).apply();
+            return null;
+        }
+        address = entry.substring(separator + 1);
+        memoryCache.put(key, address);
+        return address;
+    }
+
+    /**
+     * Looks up the address of the coordinates.
+     *
+     * @param timeoutMillis How long to wait for the Geocoder before giving up
+     * @return Task<String> resolving to the address, or to null if none was found in time; it never fails
+     */
+    @NonNull
+    public Task<String> lookUp(double latitude, double longitude, long timeoutMillis) {
+        String cached = peek(latitude, longitude);
+        if (cached != null) {
+            return Tasks.forResult(cached);
+        }
+        if (!Geocoder.isPresent()) {
+            return Tasks.forResult(null);
+        }
+
+        String key = cacheKey(latitude, longitude);
+        Task<String> lookup;
+        synchronized (inFlight) {
+            lookup = inFlight.get(key);
+            if (lookup == null) {
+                lookup = startLookup(key, latitude, longitude);
+                inFlight.put(key, lookup);
+            }
+        }
+
+        TaskCompletionSource<String> deadline = new TaskCompletionSource<>();
+        Runnable expire = () -> {
+            if (deadline.trySetResult(null)) {
+                Log.w(TAG, "Address lookup timed out after " + timeoutMillis + " ms");
+            }
+        };
+        mainHandler.postDelayed(expire, timeoutMillis);
+        lookup.addOnCompleteListener(task -> {
+            mainHandler.removeCallbacks(expire);
+            deadline.trySetResult(task.isSuccessful() ? task.getResult() : null);
+        });
+        return deadline.getTask();
+    }
+
+    /**
+     * Looks up the address of the coordinates, waiting at most timeoutMillis.
+     *
+     * @return the address, or null if none was found in time
+     */
+    @WorkerThread
+    @Nullable
+    public String lookUpBlocking(double latitude, double longitude, long timeoutMillis) {
+        String cached = peek(latitude, longitude);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            return Tasks.await(lookUp(latitude, longitude, timeoutMillis), timeoutMillis + 100, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Coordinates formatted for display when no address is known.
+     */
+    @NonNull
+    public static String formatCoordinates(double latitude, double longitude) {
+        return String.format(Locale.US, "%.6f, %.6f", latitude, longitude);
+    }
+
+    /**
+     * Encodes coordinates as a geohash of the given length.
+     */
+    @NonNull
+    public static String geohash(double latitude, double longitude, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+        StringBuilder hash = new StringBuilder(precision);
+        boolean lonBit = true;
+        int bits = 0;
+        int value = 0;
+
+        while (hash.length() < precision) {
+            if (lonBit) {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid) {
+                    value = (value << 1) | 1;
+                    minLon = mid;
+                } else {
+                    value <<= 1;
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    value = (value << 1) | 1;
+                    minLat = mid;
+                } else {
+                    value <<= 1;
+                    maxLat = mid;
+                }
+            }
+            lonBit = !lonBit;
+            if (++bits == 5) {
+                hash.append(GEOHASH_ALPHABET.charAt(value));
+                bits = 0;
+                value = 0;
+            }
+        }
+        return hash.toString();
+    }
+
+    private Task<String> startLookup(String key, double latitude, double longitude) {
+        TaskCompletionSource<String> result = new TaskCompletionSource<>();
+        Geocoder geocoder = new Geocoder(context, Locale.getDefault());
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            lookUpAsync(geocoder, latitude, longitude, result);
+        } else {
+            executor.execute(() -> {
+                try {
+                    result.setResult(firstAddressLine(geocoder.getFromLocation(latitude, longitude, 1)));
+                } catch (IOException | IllegalArgumentException e) {
+                    Log.e(TAG, "Geocoder failed: " + e.getMessage());
+                    result.setResult(null);
+                }
+            });
+        }
+
+        return result.getTask().addOnCompleteListener(task -> {
+            synchronized (inFlight) {
+                inFlight.remove(key);
+            }
+            String address = task.getResult();
+            if (address != null) {
+                store(key, address);
+            }
+        });
+    }
+
+    @RequiresApi(Build.VERSION_CODES.TIRAMISU)
+    private void lookUpAsync(Geocoder geocoder, double latitude, double longitude, TaskCompletionSource<String> result) {
+        geocoder.getFromLocation(latitude, longitude, 1, new Geocoder.GeocodeListener() {
+            @Override
+            public void onGeocode(@NonNull List<Address> addresses) {
+                result.trySetResult(firstAddressLine(addresses));
+            }
+
+            @Override
+            public void onError(@Nullable String errorMessage) {
+                Log.e(TAG, "Geocoder failed: " + errorMessage);
+                result.trySetResult(null);
+            }
+        });
+    }
+
+    private void store(String key, String address) {
+        memoryCache.put(key, address);
+
+        SharedPreferences.Editor editor = prefs.edit();
+        Map<String, ?> entries = prefs.getAll();
+        if (entries.size() >= DISK_CACHE_SIZE && !entries.containsKey(key)) {
+            // Evict the oldest entry; values start with the time they were saved
+            String oldestKey = null;
+            long oldest = Long.MAX_VALUE;
+            for (Map.Entry<String, ?> entry : entries.entrySet()) {
+                String value = String.valueOf(entry.getValue());
+                int separator = value.indexOf('|');
+                long savedAt = separator > 0 ? parseLong(value.substring(0, separator)) : 0;
+                if (savedAt < oldest) {
+                    oldest = savedAt;
+                    oldestKey = entry.getKey();
+                }
+            }
+            editor.remove(oldestKey);
+        }
+        editor.putString(key, System.currentTimeMillis() + "|" + address).apply();
+    }
+
+    @Nullable
+    private static String firstAddressLine(@Nullable List<Address> addresses) {
+        if (addresses == null || addresses.isEmpty()) {
+            return null;
+        }
+        return addresses.get(0).getAddressLine(0);
+    }
+
+    private static String cacheKey(double latitude, double longitude) {
+        // Addresses are localized, so the same cell is cached once per language
+        return geohash(latitude, longitude, GEOHASH_PRECISION) + ":" + Locale.getDefault().toLanguageTag();
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
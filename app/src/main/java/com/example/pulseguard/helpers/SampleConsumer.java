@@ -0,0 +1,8 @@
+package com.example.pulseguard.helpers;
+
+/**
+ * Callback receiving primitive (timestamp, value) samples without boxing.
+ */
+public interface SampleConsumer {
+    void accept(long timestampMillis, float value);
+}
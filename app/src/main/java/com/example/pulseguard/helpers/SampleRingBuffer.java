@@ -0,0 +1,76 @@
+package com.example.pulseguard.helpers;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded single-producer / single-consumer ring buffer of primitive (timestamp, value) samples.
+ * The producer and the consumer may run on different threads; neither side locks or allocates.
+ */
+public class SampleRingBuffer {
+
+    private final long[] timestamps;
+    private final float[] values;
+    private final int capacity;
+    private final int mask;
+
+    // Next slot to read (written by the consumer only)
+    private final AtomicLong head = new AtomicLong();
+    // Next slot to write (written by the producer only)
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity Number of slots, must be a power of two
+     */
+    public SampleRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two");
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.timestamps = new long[capacity];
+        this.values = new float[capacity];
+    }
+
+    /**
+     * Appends a sample. Must only be called from the single producer thread.
+     *
+     * @return false if the buffer is full and the sample was not stored
+     */
+    public boolean offer(long timestampMillis, float value) {
+        long t = tail.get();
+        if (t - head.get() >= capacity) {
+            return false;
+        }
+        int index = (int) (t & mask);
+        timestamps[index] = timestampMillis;
+        values[index] = value;
+        // Release store: the slot contents become visible before the new tail
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Hands every available sample to the consumer, in arrival order.
+     * Must only be called from the single consumer thread.
+     *
+     * @return number of samples drained
+     */
+    public int drain(SampleConsumer consumer) {
+        long h = head.get();
+        long t = tail.get();
+        int drained = 0;
+        while (h < t) {
+            int index = (int) (h & mask);
+            consumer.accept(timestamps[index], values[index]);
+            h++;
+            drained++;
+        }
+        // Release the slots back to the producer
+        head.lazySet(h);
+        return drained;
+    }
+
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+}
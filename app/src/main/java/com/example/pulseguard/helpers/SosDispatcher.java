@@ -0,0 +1,354 @@
+package com.example.pulseguard.helpers;
+
+import android.app.Activity;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.telephony.SmsManager;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.example.pulseguard.workers.SosRetryWorker;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_ATTEMPTS;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_CREATED_AT;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_ID;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_LAST_ATTEMPT_AT;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_MESSAGE;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_PARTS;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_PARTS_DELIVERED;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_PARTS_SENT;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_RECIPIENT;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_STATUS;
+import static com.example.pulseguard.helpers.HealthDatabase.TABLE_SOS_OUTBOX;
+
+/**
+ * Sends SOS text messages to every emergency contact and makes sure they go out.
+ * <p>
+ * Each recipient gets a row in a durable outbox before anything is sent. All recipients are handed
+ * to the radio at once, long messages are split into parts, and every part reports back through
+ * sent and delivered intents ({@link SosStatusReceiver}). A message whose part fails goes back to
+ * pending and {@link SosRetryWorker} sends it again with exponential backoff, also after a restart,
+ * until it is sent or {@link #MAX_ATTEMPTS} is reached.
+ */
+public class SosDispatcher {
+
+    private static final String TAG = "SosDispatcher";
+
+    public enum Status {
+        /** Waiting to be (re)sent */
+        PENDING,
+        /** Handed to the radio, waiting for the sent result of every part */
+        SENDING,
+        /** Every part left the device */
+        SENT,
+        /** The recipient's network confirmed every part */
+        DELIVERED,
+        /** Given up after too many attempts */
+        FAILED
+    }
+
+    /**
+     * Receives status changes of outbox messages, on the main thread.
+     */
+    public interface Listener {
+        void onStatusChanged(long messageId, @NonNull String recipient, @NonNull Status status);
+    }
+
+    static final String ACTION_SENT = "com.example.pulseguard.action.SOS_SENT";
+    static final String ACTION_DELIVERED = "com.example.pulseguard.action.SOS_DELIVERED";
+    private static final String EXTRA_MESSAGE_ID = "message_id";
+    private static final String EXTRA_ATTEMPT = "attempt";
+
+    static final int MAX_ATTEMPTS = 10;
+    // A message still SENDING after this long lost its sent intents (e.g. the process died)
+    private static final long SENDING_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(2);
+
+    private static SosDispatcher instance;
+
+    private final Context context;
+    private final HealthDatabase database;
+    // Outbox reads and writes, and the sends that follow them, run here in order
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile Listener listener;
+
+    private SosDispatcher(Context context) {
+        this.context = context.getApplicationContext();
+        this.database = HealthDatabase.getInstance(this.context);
+    }
+
+    /**
+     * Get singleton instance of SosDispatcher.
+     *
+     * @param context Any context; the application context is retained
+     * @return SosDispatcher instance
+     */
+    public static synchronized SosDispatcher getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new SosDispatcher(context);
+        }
+        return instance;
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Queues a message for every recipient and sends them all right away.
+     *
+     * @return Task<Integer> resolving to the number of recipients queued once the outbox is on disk
+     */
+    @NonNull
+    public Task<Integer> dispatch(@NonNull List<String> recipients, @NonNull String message) {
+        Task<Integer> queued = Tasks.call(executor, () -> {
+            long now = System.currentTimeMillis();
+            List<Long> ids = new ArrayList<>(recipients.size());
+            SQLiteDatabase db = database.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (String recipient : recipients) {
+                    ContentValues values = new ContentValues();
+                    values.put(COLUMN_RECIPIENT, recipient);
+                    values.put(COLUMN_MESSAGE, message);
+                    values.put(COLUMN_STATUS, Status.PENDING.name());
+                    values.put(COLUMN_CREATED_AT, now);
+                    ids.add(db.insertOrThrow(TABLE_SOS_OUTBOX, null, values));
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            // Durable first, then fan out: the radio queues every recipient without waiting on the others
+            for (int i = 0; i < ids.size(); i++) {
+                send(ids.get(i), recipients.get(i), message);
+            }
+            return ids.size();
+        });
+        // Catches messages whose sent intents never arrive
+        SosRetryWorker.schedule(context);
+        return queued;
+    }
+
+    /**
+     * Sends again every message that failed, or whose result never came back.
+     *
+     * @return number of messages not yet sent or given up on
+     */
+    @WorkerThread
+    public int retryDue() throws InterruptedException {
+        try {
+            // On the outbox thread, so a retry never races a result arriving for the same message
+            return executor.submit(this::resendDue).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("SOS retry failed", e.getCause());
+        }
+    }
+
+    private int resendDue() {
+        long staleBefore = System.currentTimeMillis() - SENDING_TIMEOUT_MS;
+        List<Object[]> due = new ArrayList<>();
+        try (Cursor cursor = database.getReadableDatabase().query(TABLE_SOS_OUTBOX,
+                new String[]{COLUMN_ID, COLUMN_RECIPIENT, COLUMN_MESSAGE, COLUMN_ATTEMPTS},
+                COLUMN_STATUS + " = ? OR (" + COLUMN_STATUS + " = ? AND " + COLUMN_LAST_ATTEMPT_AT + " < ?)",
+                new String[]{Status.PENDING.name(), Status.SENDING.name(), String.valueOf(staleBefore)},
+                null, null, COLUMN_ID + " ASC")) {
+            while (cursor.moveToNext()) {
+                due.add(new Object[]{cursor.getLong(0), cursor.getString(1), cursor.getString(2), cursor.getInt(3)});
+            }
+        }
+        for (Object[] row : due) {
+            long id = (Long) row[0];
+            int attempts = (Integer) row[3];
+            if (attempts >= MAX_ATTEMPTS) {
+                // Last attempt never reported back; count it as failed
+                onPartSent(id, attempts, false, SmsManager.RESULT_ERROR_GENERIC_FAILURE);
+            } else {
+                send(id, (String) row[1], (String) row[2]);
+            }
+        }
+        return countUnfinished();
+    }
+
+    /**
+     * Handles a sent or delivered result of one message part. Called by {@link SosStatusReceiver}.
+     */
+    void onStatusIntent(@NonNull Intent intent, int resultCode, @NonNull BroadcastReceiver.PendingResult pending) {
+        executor.execute(() -> {
+            try {
+                long id = intent.getLongExtra(EXTRA_MESSAGE_ID, -1);
+                int attempt = intent.getIntExtra(EXTRA_ATTEMPT, -1);
+                if (ACTION_SENT.equals(intent.getAction())) {
+                    onPartSent(id, attempt, resultCode == Activity.RESULT_OK, resultCode);
+                } else if (ACTION_DELIVERED.equals(intent.getAction())) {
+                    onPartDelivered(id, attempt);
+                }
+            } finally {
+                pending.finish();
+            }
+        });
+    }
+
+    @WorkerThread
+    private void send(long id, String recipient, String message) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        int attempt;
+        try (Cursor cursor = db.query(TABLE_SOS_OUTBOX, new String[]{COLUMN_ATTEMPTS},
+                COLUMN_ID + " = ?", new String[]{String.valueOf(id)}, null, null, null)) {
+            if (!cursor.moveToFirst()) {
+                return;
+            }
+            attempt = cursor.getInt(0) + 1;
+        }
+
+        SmsManager smsManager = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                ? context.getSystemService(SmsManager.class)
+                : SmsManager.getDefault();
+        ArrayList<String> parts = smsManager.divideMessage(message);
+
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_STATUS, Status.SENDING.name());
+        values.put(COLUMN_ATTEMPTS, attempt);
+        values.put(COLUMN_PARTS, parts.size());
+        values.put(COLUMN_PARTS_SENT, 0);
+        values.put(COLUMN_PARTS_DELIVERED, 0);
+        values.put(COLUMN_LAST_ATTEMPT_AT, System.currentTimeMillis());
+        db.update(TABLE_SOS_OUTBOX, values, COLUMN_ID + " = ?", new String[]{String.valueOf(id)});
+
+        ArrayList<PendingIntent> sentIntents = new ArrayList<>(parts.size());
+        ArrayList<PendingIntent> deliveredIntents = new ArrayList<>(parts.size());
+        for (int part = 0; part < parts.size(); part++) {
+            sentIntents.add(statusIntent(ACTION_SENT, id, attempt, part));
+            deliveredIntents.add(statusIntent(ACTION_DELIVERED, id, attempt, part));
+        }
+
+        try {
+            if (parts.size() > 1) {
+                smsManager.sendMultipartTextMessage(recipient, null, parts, sentIntents, deliveredIntents);
+            } else {
+                smsManager.sendTextMessage(recipient, null, message, sentIntents.get(0), deliveredIntents.get(0));
+            }
+            Log.i(TAG, "SOS #" + id + " attempt " + attempt + " handed to radio (" + parts.size() + " part(s))");
+            notifyListener(id, recipient, Status.SENDING);
+        } catch (RuntimeException e) {
+            // SecurityException without SEND_SMS, IllegalArgumentException for a malformed number
+            Log.e(TAG, "SOS #" + id + " could not be sent", e);
+            onPartSent(id, attempt, false, SmsManager.RESULT_ERROR_GENERIC_FAILURE);
+        }
+    }
+
+    @WorkerThread
+    private void onPartSent(long id, int attempt, boolean ok, int resultCode) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        String[] args = {String.valueOf(id), String.valueOf(attempt)};
+        // Results of an earlier attempt are ignored once the message was sent again
+        String current = " WHERE " + COLUMN_ID + " = ? AND " + COLUMN_ATTEMPTS + " = ? AND "
+                + COLUMN_STATUS + " = '" + Status.SENDING.name() + "'";
+
+        Status status;
+        if (ok) {
+            update(db, "UPDATE " + TABLE_SOS_OUTBOX + " SET " + COLUMN_PARTS_SENT + " = " + COLUMN_PARTS_SENT + " + 1"
+                    + current, args);
+            status = Status.SENT;
+            if (update(db, "UPDATE " + TABLE_SOS_OUTBOX + " SET " + COLUMN_STATUS + " = '" + status.name() + "'"
+                    + current + " AND " + COLUMN_PARTS_SENT + " >= " + COLUMN_PARTS, args) == 0) {
+                return; // more parts to go
+            }
+        } else {
+            Log.w(TAG, "SOS #" + id + " attempt " + attempt + " failed with result " + resultCode);
+            status = attempt >= MAX_ATTEMPTS ? Status.FAILED : Status.PENDING;
+            if (update(db, "UPDATE " + TABLE_SOS_OUTBOX + " SET " + COLUMN_STATUS + " = '" + status.name() + "'"
+                    + current, args) == 0) {
+                return; // another part of this attempt already failed it
+            }
+        }
+
+        String recipient = recipientOf(db, id);
+        notifyListener(id, recipient, status);
+        if (status == Status.PENDING) {
+            SosRetryWorker.schedule(context);
+        } else if (status == Status.FAILED) {
+            NotificationHelper.getInstance(context).notify("sos:" + id, NotificationHelper.Severity.CRITICAL,
+                    "SOS not sent", "Your emergency message to " + recipient + " could not be sent.");
+        }
+    }
+
+    @WorkerThread
+    private void onPartDelivered(long id, int attempt) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        String[] args = {String.valueOf(id), String.valueOf(attempt)};
+        String current = " WHERE " + COLUMN_ID + " = ? AND " + COLUMN_ATTEMPTS + " = ? AND "
+                + COLUMN_STATUS + " != '" + Status.DELIVERED.name() + "'";
+
+        update(db, "UPDATE " + TABLE_SOS_OUTBOX + " SET " + COLUMN_PARTS_DELIVERED + " = " + COLUMN_PARTS_DELIVERED
+                + " + 1" + current, args);
+        if (update(db, "UPDATE " + TABLE_SOS_OUTBOX + " SET " + COLUMN_STATUS + " = '" + Status.DELIVERED.name() + "'"
+                + current + " AND " + COLUMN_PARTS_DELIVERED + " >= " + COLUMN_PARTS, args) > 0) {
+            notifyListener(id, recipientOf(db, id), Status.DELIVERED);
+        }
+    }
+
+    private static int update(SQLiteDatabase db, String sql, String[] args) {
+        try (SQLiteStatement statement = db.compileStatement(sql)) {
+            statement.bindAllArgsAsStrings(args);
+            return statement.executeUpdateDelete();
+        }
+    }
+
+    private static String recipientOf(SQLiteDatabase db, long id) {
+        try (Cursor cursor = db.query(TABLE_SOS_OUTBOX, new String[]{COLUMN_RECIPIENT},
+                COLUMN_ID + " = ?", new String[]{String.valueOf(id)}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getString(0) : "";
+        }
+    }
+
+    private int countUnfinished() {
+        try (Cursor cursor = database.getReadableDatabase().rawQuery(
+                "SELECT COUNT(*) FROM " + TABLE_SOS_OUTBOX + " WHERE " + COLUMN_STATUS + " IN (?, ?)",
+                new String[]{Status.PENDING.name(), Status.SENDING.name()})) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+    }
+
+    private PendingIntent statusIntent(String action, long id, int attempt, int part) {
+        Intent intent = new Intent(context, SosStatusReceiver.class)
+                .setAction(action)
+                // Distinct data keeps one PendingIntent per part instead of one being reused
+                .setData(Uri.parse("pulseguard-sos://" + id + "/" + attempt + "/" + part))
+                .putExtra(EXTRA_MESSAGE_ID, id)
+                .putExtra(EXTRA_ATTEMPT, attempt);
+        return PendingIntent.getBroadcast(context, 0, intent, PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_ONE_SHOT);
+    }
+
+    private void notifyListener(long id, String recipient, Status status) {
+        mainHandler.post(() -> {
+            Listener target = listener;
+            if (target != null) {
+                target.onStatusChanged(id, recipient, status);
+            }
+        });
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.pulseguard.helpers;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Receives the sent and delivered results of SOS message parts and records them in the outbox.
+ */
+public class SosStatusReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        // The outbox update runs on the dispatcher's thread; keep the broadcast alive until it is done
+        SosDispatcher.getInstance(context).onStatusIntent(intent, getResultCode(), goAsync());
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.pulseguard.helpers;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.auth.api.signin.GoogleSignIn;
+import com.google.firebase.auth.FirebaseAuth;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gets the app's clients ready in the background while the first activity is being created.
+ * <p>
+ * Firebase Auth and Firestore, the Google sign-in state, the Fitness cache, the fused location
+ * client, the local database and the notification channels each cost disk reads, class loading
+ * or binder calls on first use. {@link #start()} creates them in parallel on background threads
+ * as soon as the process starts, so by the time an activity asks for them they are usually ready;
+ * if not, the singleton's lock makes the activity wait for the work already under way instead of
+ * repeating it. Work that no screen needs right away is deferred with {@link #runAfterFirstFrame}
+ * until the first frame is out. Every step is recorded in {@link StartupTimeline}.
+ */
+public class StartupOrchestrator {
+
+    private static final String TAG = "StartupOrchestrator";
+
+    private static final int INIT_THREADS = 3;
+    // Processes started without an activity never draw; deferred work runs after this instead
+    private static final long DEFERRED_WORK_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(5);
+
+    private static StartupOrchestrator instance;
+
+    private final Context context;
+    private final StartupTimeline timeline = StartupTimeline.getInstance();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Runnable> deferred = new ArrayList<>();
+    private final Runnable runDeferredWork = this::runDeferredWork;
+    private ExecutorService executor;
+    private boolean firstFrameDone;
+
+    private StartupOrchestrator(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Get singleton instance of StartupOrchestrator.
+     *
+     * @param context Any context; the application context is retained
+     * @return StartupOrchestrator instance
+     */
+    public static synchronized StartupOrchestrator getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new StartupOrchestrator(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Starts the background initialisation. Called once, from Application.onCreate.
+     */
+    @MainThread
+    public void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newFixedThreadPool(INIT_THREADS, new InitThreadFactory());
+
+        // Needed by the launch activity to decide between sign-in and the dashboard
+        initialize("auth", () -> {
+            FirebaseAuth.getInstance().getCurrentUser();
+            GoogleSignIn.getLastSignedInAccount(context);
+        });
+        // Opening the database may run a schema upgrade
+        initialize("database", () -> HealthDatabase.getInstance(context).getWritableDatabase());
+        initialize("fitness", () -> FitnessRepository.getInstance(context));
+        initialize("firestore", FirestoreHelper::getInstance);
+        initialize("location", () -> LocationTracker.getInstance(context));
+        initialize("notifications", () -> NotificationHelper.getInstance(context));
+
+        timeline.runOnFirstFrame(() -> {
+            mainHandler.removeCallbacks(runDeferredWork);
+            runDeferredWork();
+        });
+        mainHandler.postDelayed(runDeferredWork, DEFERRED_WORK_TIMEOUT_MS);
+    }
+
+    /**
+     * Runs non-critical work on a background thread once the first frame has been drawn, or right
+     * away if it already has.
+     */
+    @MainThread
+    public void runAfterFirstFrame(@NonNull Runnable task) {
+        if (firstFrameDone || executor == null) {
+            background(task);
+        } else {
+            deferred.add(task);
+        }
+    }
+
+    private void runDeferredWork() {
+        if (firstFrameDone) {
+            return;
+        }
+        firstFrameDone = true;
+        for (Runnable task : deferred) {
+            background(task);
+        }
+        deferred.clear();
+        // Nothing else runs on the init threads; let them end once the queue is empty
+        executor.shutdown();
+    }
+
+    private void initialize(String name, Runnable step) {
+        executor.execute(() -> {
+            long start = SystemClock.uptimeMillis();
+            try {
+                step.run();
+            } catch (RuntimeException e) {
+                // The activity that needs it will hit the same error and handle it there
+                Log.w(TAG, "Early init of " + name + " failed", e);
+            }
+            timeline.recordSpan(name, start);
+        });
+    }
+
+    private void background(Runnable task) {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            task.run();
+        }, "startup-deferred");
+        thread.start();
+    }
+
+    private static final class InitThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            // Default priority: this work is on the critical path of the first screen
+            return new Thread(runnable, "startup-init-" + count.incrementAndGet());
+        }
+    }
+}
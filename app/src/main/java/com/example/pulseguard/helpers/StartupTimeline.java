@@ -0,0 +1,304 @@
+package com.example.pulseguard.helpers;
+
+import android.app.Activity;
+import android.app.ActivityManager;
+import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Records how long a cold start takes, phase by phase.
+ * <p>
+ * Phases are measured on the {@link SystemClock#uptimeMillis()} clock from the moment the process was
+ * started: the Application's onCreate, the first activity's onCreate, the first frame it draws and
+ * the first time real health data is shown. Background initialisation steps are recorded as named
+ * spans. Only starts where the process was launched to show an activity are counted; a process
+ * started for a worker or a broadcast would distort the numbers.
+ * <p>
+ * When the first data is shown, the timeline is logged as one line and kept with the previous
+ * {@link #HISTORY_SIZE} cold starts, and the log line compares it against their median so
+ * regressions stand out in logcat ({@code adb logcat -s StartupTimeline}).
+ */
+public class StartupTimeline {
+
+    private static final String TAG = "StartupTimeline";
+
+    public enum Phase {
+        APPLICATION_CREATED,
+        FIRST_ACTIVITY_CREATED,
+        FIRST_FRAME,
+        FIRST_DATA
+    }
+
+    /**
+     * Receives the first frame of the first activity, on the main thread.
+     */
+    public interface FirstFrameListener {
+        void onFirstFrame();
+    }
+
+    private static final String PREFS_NAME = "PulseGuardStartup";
+    private static final String KEY_HISTORY = "history";
+    private static final int HISTORY_SIZE = 20;
+
+    private static StartupTimeline instance;
+
+    private final long processStart;
+    private final long[] phaseTimes = new long[Phase.values().length];
+    private final List<String> spans = Collections.synchronizedList(new ArrayList<>());
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<FirstFrameListener> firstFrameListeners = new ArrayList<>();
+    private boolean coldStart;
+    private SharedPreferences prefs;
+
+    private StartupTimeline() {
+        // Android 13 knows when the launch was requested, before the process was forked
+        processStart = Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                ? Process.getStartRequestedUptimeMillis()
+                : Process.getStartUptimeMillis();
+        Arrays.fill(phaseTimes, -1);
+    }
+
+    /**
+     * Get singleton instance of StartupTimeline.
+     *
+     * @return StartupTimeline instance
+     */
+    public static synchronized StartupTimeline getInstance() {
+        if (instance == null) {
+            instance = new StartupTimeline();
+        }
+        return instance;
+    }
+
+    /**
+     * Starts the timeline from Application.onCreate: marks that phase and watches for the first
+     * activity and its first frame.
+     */
+    @MainThread
+    public void attach(@NonNull Application application) {
+        prefs = application.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        ActivityManager.RunningAppProcessInfo state = new ActivityManager.RunningAppProcessInfo();
+        ActivityManager.getMyMemoryState(state);
+        coldStart = state.importance == ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND;
+        mark(Phase.APPLICATION_CREATED);
+
+        application.registerActivityLifecycleCallbacks(new ActivityCallbacks(application));
+    }
+
+    /**
+     * Records a phase the first time it is reached; later calls are ignored.
+     */
+    public synchronized void mark(@NonNull Phase phase) {
+        if (phaseTimes[phase.ordinal()] < 0) {
+            phaseTimes[phase.ordinal()] = SystemClock.uptimeMillis() - processStart;
+        }
+    }
+
+    /**
+     * Records the first time an activity shows real data, reports the activity fully drawn to the
+     * system and logs the finished timeline.
+     */
+    @MainThread
+    public void markFirstData(@NonNull Activity activity) {
+        synchronized (this) {
+            if (phaseTimes[Phase.FIRST_DATA.ordinal()] >= 0) {
+                return;
+            }
+            mark(Phase.FIRST_DATA);
+        }
+        activity.reportFullyDrawn();
+        if (coldStart) {
+            report();
+        }
+    }
+
+    /**
+     * Records a named piece of startup work, e.g. initialising a client on a background thread.
+     *
+     * @param startUptime When the work started, from {@link SystemClock#uptimeMillis()}
+     */
+    public void recordSpan(@NonNull String name, long startUptime) {
+        long end = SystemClock.uptimeMillis();
+        spans.add(String.format(Locale.US, "%s=%d+%dms", name, startUptime - processStart, end - startUptime));
+    }
+
+    /**
+     * Runs the listener once the first activity has drawn its first frame: right away if that
+     * already happened.
+     */
+    @MainThread
+    public void runOnFirstFrame(@NonNull FirstFrameListener listener) {
+        if (getPhaseMillis(Phase.FIRST_FRAME) >= 0) {
+            listener.onFirstFrame();
+        } else {
+            firstFrameListeners.add(listener);
+        }
+    }
+
+    /**
+     * @return milliseconds from process start to the phase, or -1 if it was not reached yet
+     */
+    public synchronized long getPhaseMillis(@NonNull Phase phase) {
+        return phaseTimes[phase.ordinal()];
+    }
+
+    public boolean isColdStart() {
+        return coldStart;
+    }
+
+    private void onFirstFrame() {
+        mark(Phase.FIRST_FRAME);
+        for (FirstFrameListener listener : firstFrameListeners) {
+            listener.onFirstFrame();
+        }
+        firstFrameListeners.clear();
+    }
+
+    private void report() {
+        long[] current;
+        synchronized (this) {
+            current = phaseTimes.clone();
+        }
+        StringBuilder line = new StringBuilder("cold start:");
+        for (Phase phase : Phase.values()) {
+            line.append(' ').append(phase.name().toLowerCase(Locale.US)).append('=').append(current[phase.ordinal()]);
+        }
+
+        // History: one line per start, phase times separated by commas, newest last
+        List<String> history = new ArrayList<>(Arrays.asList(prefs.getString(KEY_HISTORY, "").split("\n")));
+        history.remove("");
+        long[] medians = medians(history);
+        if (medians != null) {
+            line.append(" | median of last ").append(history.size()).append(':');
+            for (Phase phase : Phase.values()) {
+                line.append(' ').append(medians[phase.ordinal()]);
+            }
+        }
+        Log.i(TAG, line.toString());
+        synchronized (spans) {
+            if (!spans.isEmpty()) {
+                Log.i(TAG, "startup work: " + String.join(" ", spans));
+            }
+        }
+
+        StringBuilder entry = new StringBuilder();
+        for (long time : current) {
+            entry.append(entry.length() == 0 ? "" : ",").append(time);
+        }
+        history.add(entry.toString());
+        while (history.size() > HISTORY_SIZE) {
+            history.remove(0);
+        }
+        prefs.edit().putString(KEY_HISTORY, String.join("\n", history)).apply();
+    }
+
+    @Nullable
+    private static long[] medians(List<String> history) {
+        int phases = Phase.values().length;
+        long[][] columns = new long[phases][history.size()];
+        int rows = 0;
+        for (String entry : history) {
+            String[] fields = entry.split(",");
+            if (fields.length != phases) {
+                continue;
+            }
+            try {
+                for (int p = 0; p < phases; p++) {
+                    columns[p][rows] = Long.parseLong(fields[p]);
+                }
+                rows++;
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Ignoring malformed history entry: " + entry);
+            }
+        }
+        if (rows == 0) {
+            return null;
+        }
+        long[] medians = new long[phases];
+        for (int p = 0; p < phases; p++) {
+            long[] column = Arrays.copyOf(columns[p], rows);
+            Arrays.sort(column);
+            medians[p] = column[rows / 2];
+        }
+        return medians;
+    }
+
+    /**
+     * Marks the first activity's creation and, when it is first resumed, waits for its first draw.
+     */
+    private final class ActivityCallbacks implements Application.ActivityLifecycleCallbacks {
+        private final Application application;
+
+        ActivityCallbacks(Application application) {
+            this.application = application;
+        }
+
+        @Override
+        public void onActivityCreated(@NonNull Activity activity, @Nullable Bundle savedInstanceState) {
+            mark(Phase.FIRST_ACTIVITY_CREATED);
+        }
+
+        @Override
+        public void onActivityResumed(@NonNull Activity activity) {
+            // Only the first resumed activity is of interest
+            application.unregisterActivityLifecycleCallbacks(this);
+            View decorView = activity.getWindow().getDecorView();
+            decorView.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+                private boolean drawn;
+
+                @Override
+                public void onDraw() {
+                    if (drawn) {
+                        return;
+                    }
+                    drawn = true;
+                    // Listeners cannot be removed during a draw; the frame is out once it returns
+                    mainHandler.postAtFrontOfQueue(() -> {
+                        decorView.getViewTreeObserver().removeOnDrawListener(this);
+                        onFirstFrame();
+                    });
+                }
+            });
+        }
+
+        @Override
+        public void onActivityStarted(@NonNull Activity activity) {
+        }
+
+        @Override
+        public void onActivityPaused(@NonNull Activity activity) {
+        }
+
+        @Override
+        public void onActivityStopped(@NonNull Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {
+        }
+
+        @Override
+        public void onActivityDestroyed(@NonNull Activity activity) {
+        }
+    }
+}
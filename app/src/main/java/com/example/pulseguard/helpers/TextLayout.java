@@ -0,0 +1,108 @@
+package com.example.pulseguard.helpers;
+
+import android.graphics.Paint;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+
+/**
+ * Line breaking for text drawn directly on a Canvas (PDF reports).
+ * <p>
+ * Widths come from {@link Paint#breakText}, which measures each character once, so wrapping and
+ * ellipsizing are linear in the text length. Lines break at the last space that fits; text without
+ * spaces, such as URLs, breaks after the last '/', '?', '&amp;', '=', ',' or '-' that fits, and only
+ * then mid-word.
+ */
+public final class TextLayout {
+
+    private static final String ELLIPSIS = "...";
+
+    private TextLayout() {
+    }
+
+    /**
+     * Shortens text to fit a width, ending it with an ellipsis if anything was cut.
+     */
+    @NonNull
+    public static String ellipsize(@NonNull String text, @NonNull Paint paint, float maxWidth) {
+        int fit = paint.breakText(text, true, maxWidth, null);
+        if (fit >= text.length()) {
+            return text;
+        }
+        float available = Math.max(0f, maxWidth - paint.measureText(ELLIPSIS));
+        fit = paint.breakText(text, true, available, null);
+        return text.substring(0, fit) + ELLIPSIS;
+    }
+
+    /**
+     * Breaks text into lines no wider than maxWidth. If it needs more than maxLines lines, the last
+     * line is ellipsized.
+     *
+     * @param lines Receives the lines; it is not cleared first
+     * @return number of lines added (at least 1 for non-blank text)
+     */
+    public static int wrap(@NonNull String text, @NonNull Paint paint, float maxWidth, int maxLines,
+                           @NonNull List<String> lines) {
+        int length = text.length();
+        int start = 0;
+        int added = 0;
+
+        while (added < maxLines) {
+            while (start < length && text.charAt(start) == ' ') {
+                start++;
+            }
+            if (start >= length) {
+                break;
+            }
+
+            int fit = paint.breakText(text, start, length, true, maxWidth, null);
+            int end = start + Math.max(1, fit); // always advance, even if one glyph is wider than the line
+            if (end < length) {
+                if (added == maxLines - 1) {
+                    lines.add(ellipsize(text.substring(start), paint, maxWidth));
+                    return added + 1;
+                }
+                int breakAt = findBreak(text, start, end);
+                if (breakAt > start) {
+                    end = breakAt;
+                }
+            }
+
+            int lineEnd = end;
+            while (lineEnd > start && text.charAt(lineEnd - 1) == ' ') {
+                lineEnd--;
+            }
+            lines.add(text.substring(start, lineEnd));
+            added++;
+            start = end;
+        }
+        return added;
+    }
+
+    /**
+     * @return where to end a line that must stop at or before {@code end}, or {@code start} if
+     * there is no break opportunity
+     */
+    private static int findBreak(String text, int start, int end) {
+        // The character right after the fitted run may itself be a space
+        if (text.charAt(end) == ' ') {
+            return end;
+        }
+        int soft = start;
+        for (int i = end - 1; i > start; i--) {
+            char c = text.charAt(i);
+            if (c == ' ') {
+                return i + 1;
+            }
+            if (soft == start && isSoftBreak(c)) {
+                soft = i + 1;
+            }
+        }
+        return soft;
+    }
+
+    private static boolean isSoftBreak(char c) {
+        return c == '/' || c == '?' || c == '&' || c == '=' || c == ',' || c == '-';
+    }
+}
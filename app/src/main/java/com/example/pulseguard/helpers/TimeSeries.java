@@ -0,0 +1,195 @@
+package com.example.pulseguard.helpers;
+
+import java.util.Arrays;
+
+/**
+ * Growable columnar series of (timestamp, value) samples kept sorted by timestamp.
+ * <p>
+ * Samples live in two parallel primitive arrays, so a point costs 12 bytes instead of the
+ * several boxed objects a {@code DataPoint} graph needs. Appending in time order is amortised O(1);
+ * a sample whose timestamp already exists overwrites the stored value, which makes re-reading an
+ * overlapping window idempotent. All methods are thread-safe.
+ */
+public class TimeSeries {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] timestamps;
+    private float[] values;
+    private int size;
+
+    public TimeSeries() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public TimeSeries(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        timestamps = new long[capacity];
+        values = new float[capacity];
+    }
+
+    /**
+     * Inserts a sample, or replaces the value of an existing sample with the same timestamp.
+     */
+    public synchronized void append(long timestampMillis, float value) {
+        if (size == 0 || timestampMillis > timestamps[size - 1]) {
+            ensureCapacity(size + 1);
+            timestamps[size] = timestampMillis;
+            values[size] = value;
+            size++;
+            return;
+        }
+
+        int index = lowerBound(timestampMillis);
+        if (index < size && timestamps[index] == timestampMillis) {
+            values[index] = value;
+            return;
+        }
+
+        // Late sample: shift the tail right by one
+        ensureCapacity(size + 1);
+        System.arraycopy(timestamps, index, timestamps, index + 1, size - index);
+        System.arraycopy(values, index, values, index + 1, size - index);
+        timestamps[index] = timestampMillis;
+        values[index] = value;
+        size++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        size = 0;
+    }
+
+    /**
+     * Feeds every sample in [fromMillis, toMillis) to the consumer in time order.
+     *
+     * @return number of samples visited
+     */
+    public synchronized int scan(long fromMillis, long toMillis, SampleConsumer consumer) {
+        int start = lowerBound(fromMillis);
+        int end = lowerBound(toMillis);
+        for (int i = start; i < end; i++) {
+            consumer.accept(timestamps[i], values[i]);
+        }
+        return Math.max(0, end - start);
+    }
+
+    /**
+     * Copies samples in [fromMillis, toMillis) into the given arrays.
+     *
+     * @return number of samples copied, at most the length of the smaller array
+     */
+    public synchronized int copyRange(long fromMillis, long toMillis, long[] outTimestamps, float[] outValues) {
+        int start = lowerBound(fromMillis);
+        int count = Math.min(Math.max(0, lowerBound(toMillis) - start),
+                Math.min(outTimestamps.length, outValues.length));
+        System.arraycopy(timestamps, start, outTimestamps, 0, count);
+        System.arraycopy(values, start, outValues, 0, count);
+        return count;
+    }
+
+    public synchronized int count(long fromMillis, long toMillis) {
+        return Math.max(0, lowerBound(toMillis) - lowerBound(fromMillis));
+    }
+
+    public synchronized double sum(long fromMillis, long toMillis) {
+        double sum = 0;
+        for (int i = lowerBound(fromMillis), end = lowerBound(toMillis); i < end; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @return mean of samples in the range, or NaN if there are none
+     */
+    public synchronized float mean(long fromMillis, long toMillis) {
+        int start = lowerBound(fromMillis);
+        int end = lowerBound(toMillis);
+        if (end <= start) {
+            return Float.NaN;
+        }
+        double sum = 0;
+        for (int i = start; i < end; i++) {
+            sum += values[i];
+        }
+        return (float) (sum / (end - start));
+    }
+
+    /**
+     * @return minimum of samples in the range, or NaN if there are none
+     */
+    public synchronized float min(long fromMillis, long toMillis) {
+        float min = Float.NaN;
+        for (int i = lowerBound(fromMillis), end = lowerBound(toMillis); i < end; i++) {
+            if (Float.isNaN(min) || values[i] < min) {
+                min = values[i];
+            }
+        }
+        return min;
+    }
+
+    /**
+     * @return maximum of samples in the range, or NaN if there are none
+     */
+    public synchronized float max(long fromMillis, long toMillis) {
+        float max = Float.NaN;
+        for (int i = lowerBound(fromMillis), end = lowerBound(toMillis); i < end; i++) {
+            if (Float.isNaN(max) || values[i] > max) {
+                max = values[i];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return timestamp of the newest sample, or -1 if the series is empty
+     */
+    public synchronized long latestTimestamp() {
+        return size > 0 ? timestamps[size - 1] : -1L;
+    }
+
+    /**
+     * @return value of the newest sample, or NaN if the series is empty
+     */
+    public synchronized float latestValue() {
+        return size > 0 ? values[size - 1] : Float.NaN;
+    }
+
+    /**
+     * Releases unused array capacity, e.g. once a day is complete.
+     */
+    public synchronized void trimToSize() {
+        if (size > 0 && size < timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size);
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    // First index whose timestamp is >= the given one
+    private int lowerBound(long timestampMillis) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < timestampMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= timestamps.length) {
+            return;
+        }
+        int newCapacity = Math.max(required, timestamps.length + (timestamps.length >> 1));
+        timestamps = Arrays.copyOf(timestamps, newCapacity);
+        values = Arrays.copyOf(values, newCapacity);
+    }
+}
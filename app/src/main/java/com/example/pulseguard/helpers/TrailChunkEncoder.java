@@ -0,0 +1,70 @@
+package com.example.pulseguard.helpers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes the points of a recording into the chunks {@link TrailRecorder} appends to a trail's row:
+ * a {@link PolylineCodec} polyline of the coordinates and a timeline of seconds since the start.
+ * <p>
+ * Deltas continue from the last point of the previous chunk, so the stored columns decode as one
+ * polyline and one timeline however the points were split into chunks.
+ */
+final class TrailChunkEncoder implements TrailSimplifier.Sink {
+
+    private final StringBuilder polyline = new StringBuilder();
+    private final StringBuilder timeline = new StringBuilder();
+    private int points;
+    private long lastLat;
+    private long lastLon;
+    private long lastSeconds;
+
+    /**
+     * Starts a new trail whose timeline counts from the given time.
+     */
+    void reset(long startedAtMillis) {
+        polyline.setLength(0);
+        timeline.setLength(0);
+        points = 0;
+        lastLat = 0;
+        lastLon = 0;
+        lastSeconds = TimeUnit.MILLISECONDS.toSeconds(startedAtMillis);
+    }
+
+    @Override
+    public void accept(double latitude, double longitude, long timeMillis) {
+        long lat = PolylineCodec.toFixed(latitude);
+        long lon = PolylineCodec.toFixed(longitude);
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(timeMillis);
+        PolylineCodec.appendValue(polyline, lat - lastLat);
+        PolylineCodec.appendValue(polyline, lon - lastLon);
+        PolylineCodec.appendValue(timeline, seconds - lastSeconds);
+        lastLat = lat;
+        lastLon = lon;
+        lastSeconds = seconds;
+        points++;
+    }
+
+    /**
+     * @return the number of points encoded since the last {@link #clearChunk()}
+     */
+    int chunkPoints() {
+        return points;
+    }
+
+    String polylineChunk() {
+        return polyline.toString();
+    }
+
+    String timelineChunk() {
+        return timeline.toString();
+    }
+
+    /**
+     * Drops the chunk once it has been taken; the next point is still encoded against the last one.
+     */
+    void clearChunk() {
+        polyline.setLength(0);
+        timeline.setLength(0);
+        points = 0;
+    }
+}
@@ -0,0 +1,467 @@
+package com.example.pulseguard.helpers;
+
+import android.Manifest;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.location.Location;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.core.content.ContextCompat;
+
+import com.example.pulseguard.services.TrailRecordingService;
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_DISTANCE_M;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_ENDED_AT;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_ID;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_POINT_COUNT;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_POLYLINE;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_RECORDING;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_STARTED_AT;
+import static com.example.pulseguard.helpers.HealthDatabase.COLUMN_TIMELINE;
+import static com.example.pulseguard.helpers.HealthDatabase.TABLE_TRAILS;
+
+/**
+ * Records the route of an activity session, e.g. a walk, into the local database.
+ * <p>
+ * Sampling adapts to movement: while the wearer moves, the fused provider delivers a high-accuracy
+ * fix every few seconds, but only once they have covered a few metres; after a couple of minutes
+ * without leaving a small radius it drops to a balanced-power request that wakes only on larger
+ * moves, and it speeds up again as soon as one arrives. Accepted fixes are simplified on the fly
+ * by {@link TrailSimplifier} and appended to the trail's row as encoded polyline chunks, so an hour
+ * of walking takes a few kilobytes and at most one window of points is lost if the process dies.
+ * <p>
+ * While recording, {@link TrailRecordingService} keeps the app in the foreground with an ongoing
+ * notification, so fixes keep arriving at these rates with the screen off or another app in front.
+ * <p>
+ * Fixes also keep {@link LocationTracker}'s cached fix fresh while recording, and the most recent
+ * ones are kept in memory so an SOS can include the path that led to the current position.
+ */
+public class TrailRecorder {
+
+    private static final String TAG = "TrailRecorder";
+
+    private static final long MOVING_INTERVAL_MS = TimeUnit.SECONDS.toMillis(5);
+    private static final long MOVING_MIN_INTERVAL_MS = TimeUnit.SECONDS.toMillis(2);
+    private static final float MOVING_MIN_DISTANCE_M = 5f;
+    private static final long STILL_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final float STILL_MIN_DISTANCE_M = 25f;
+    // Staying within this radius for this long counts as standing still
+    private static final float STILL_RADIUS_M = 15f;
+    private static final long STILL_AFTER_MS = TimeUnit.MINUTES.toMillis(2);
+
+    // Fixes less accurate than this move the motion detection but are not recorded
+    private static final float MAX_ACCURACY_M = 40f;
+    private static final float MIN_SPACING_M = 5f;
+    // Records a point now and then even without moving, so pauses show in the timeline
+    private static final long HEARTBEAT_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final double SIMPLIFY_TOLERANCE_M = 5;
+    private static final int SIMPLIFY_WINDOW = 128;
+
+    // Recent accepted fixes for SOS messages
+    private static final int RECENT_CAPACITY = 64;
+    private static final long RECENT_PATH_MS = TimeUnit.MINUTES.toMillis(15);
+    private static final int MAX_PATH_POINTS = 8;
+
+    private static TrailRecorder instance;
+
+    private final Context context;
+    private final FusedLocationProviderClient client;
+    private final HealthDatabase database;
+    // Database writes, in order; the row id is only read and written on this thread
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final LocationCallback callback = new LocationCallback() {
+        @Override
+        public void onLocationResult(@NonNull LocationResult result) {
+            for (Location fix : result.getLocations()) {
+                onFix(fix);
+            }
+        }
+    };
+
+    // Main-thread state of the recording in progress
+    private boolean recording;
+    private boolean moving;
+    private long startedAt;
+    private Location lastAccepted;
+    private Location anchor;
+    private double distanceMeters;
+    private TrailSimplifier simplifier;
+
+    // Encoded points not yet written; deltas continue from the last point emitted
+    private final TrailChunkEncoder encoder = new TrailChunkEncoder();
+
+    private final double[] recentLatitudes = new double[RECENT_CAPACITY];
+    private final double[] recentLongitudes = new double[RECENT_CAPACITY];
+    private final long[] recentTimes = new long[RECENT_CAPACITY];
+    private int recentCount;
+    private int recentNext;
+
+    private long trailId = -1;
+
+    private TrailRecorder(Context context) {
+        this.context = context.getApplicationContext();
+        this.client = LocationServices.getFusedLocationProviderClient(this.context);
+        this.database = HealthDatabase.getInstance(this.context);
+    }
+
+    /**
+     * Get singleton instance of TrailRecorder.
+     *
+     * @param context Any context; the application context is retained
+     * @return TrailRecorder instance
+     */
+    public static synchronized TrailRecorder getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new TrailRecorder(context);
+        }
+        return instance;
+    }
+
+    @MainThread
+    public boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * Starts recording a new trail. Does nothing if one is being recorded already.
+     *
+     * @return false if the location permission is missing
+     */
+    @MainThread
+    public boolean start() {
+        if (recording) {
+            return true;
+        }
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION)
+                != PackageManager.PERMISSION_GRANTED) {
+            return false;
+        }
+
+        recording = true;
+        moving = true;
+        startedAt = System.currentTimeMillis();
+        lastAccepted = null;
+        anchor = null;
+        distanceMeters = 0;
+        simplifier = new TrailSimplifier(SIMPLIFY_TOLERANCE_M, SIMPLIFY_WINDOW, encoder);
+        encoder.reset(startedAt);
+        recentCount = 0;
+        recentNext = 0;
+
+        long started = startedAt;
+        executor.execute(() -> {
+            SQLiteDatabase db = database.getWritableDatabase();
+            // A recording cut short by the process dying keeps what was written
+            ContentValues finished = new ContentValues();
+            finished.put(COLUMN_RECORDING, 0);
+            db.update(TABLE_TRAILS, finished, COLUMN_RECORDING + " = 1", null);
+
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_STARTED_AT, started);
+            values.put(COLUMN_ENDED_AT, started);
+            values.put(COLUMN_RECORDING, 1);
+            trailId = db.insert(TABLE_TRAILS, null, values);
+        });
+        requestUpdates();
+        TrailRecordingService.start(context);
+        Log.i(TAG, "Trail recording started");
+        return true;
+    }
+
+    /**
+     * Stops recording and writes the rest of the trail.
+     *
+     * @return Task<Trail> resolving to the finished trail, or to null if none was being recorded
+     */
+    @MainThread
+    @NonNull
+    public Task<Trail> stop() {
+        if (!recording) {
+            return Tasks.forResult(null);
+        }
+        recording = false;
+        client.removeLocationUpdates(callback);
+        TrailRecordingService.stop(context);
+        simplifier.flush();
+        persistChunk(false);
+        return Tasks.call(executor, () -> {
+            long id = trailId;
+            trailId = -1;
+            List<Trail> trails = query(COLUMN_ID + " = ?", new String[]{String.valueOf(id)});
+            Log.i(TAG, "Trail recording stopped");
+            return trails.isEmpty() ? null : trails.get(0);
+        });
+    }
+
+    /**
+     * @return trails that overlap the given time range, oldest first, including one being recorded
+     */
+    @WorkerThread
+    @NonNull
+    public List<Trail> getTrails(long fromMillis, long toMillis) {
+        return query(COLUMN_STARTED_AT + " < ? AND " + COLUMN_ENDED_AT + " >= ?",
+                new String[]{String.valueOf(toMillis), String.valueOf(fromMillis)});
+    }
+
+    /**
+     * Describes the last minutes of the trail being recorded as a Google Maps directions link
+     * through a few of its points, ending at the latest fix.
+     *
+     * @return the link, or null if not recording or too few points were recorded yet
+     */
+    @MainThread
+    @Nullable
+    public String getRecentPathUrl() {
+        if (!recording || recentCount < 2) {
+            return null;
+        }
+        long since = recentTimes[(recentNext - 1 + RECENT_CAPACITY) % RECENT_CAPACITY] - RECENT_PATH_MS;
+        int available = 0;
+        while (available < recentCount
+                && recentTimes[(recentNext - 1 - available + RECENT_CAPACITY) % RECENT_CAPACITY] >= since) {
+            available++;
+        }
+        if (available < 2) {
+            return null;
+        }
+
+        StringBuilder url = new StringBuilder("https://www.google.com/maps/dir");
+        int points = Math.min(available, MAX_PATH_POINTS);
+        for (int i = points - 1; i >= 0; i--) {
+            // Evenly spread over what is available, oldest first, always ending at the latest fix
+            int back = (int) ((long) i * (available - 1) / (points - 1));
+            int index = (recentNext - 1 - back + RECENT_CAPACITY) % RECENT_CAPACITY;
+            url.append(String.format(Locale.US, "/%.5f,%.5f", recentLatitudes[index], recentLongitudes[index]));
+        }
+        return url.toString();
+    }
+
+    private void requestUpdates() {
+        LocationRequest request = moving
+                ? new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, MOVING_INTERVAL_MS)
+                .setMinUpdateIntervalMillis(MOVING_MIN_INTERVAL_MS)
+                .setMinUpdateDistanceMeters(MOVING_MIN_DISTANCE_M)
+                .build()
+                : new LocationRequest.Builder(Priority.PRIORITY_BALANCED_POWER_ACCURACY, STILL_INTERVAL_MS)
+                .setMinUpdateDistanceMeters(STILL_MIN_DISTANCE_M)
+                .build();
+        try {
+            // Replaces the previous request made with the same callback
+            client.requestLocationUpdates(request, callback, Looper.getMainLooper());
+        } catch (SecurityException e) {
+            Log.w(TAG, "Location permission revoked", e);
+        }
+    }
+
+    private void onFix(Location fix) {
+        if (!recording) {
+            return;
+        }
+        LocationTracker.getInstance(context).offer(fix);
+        updateMotion(fix);
+
+        if (fix.getAccuracy() > MAX_ACCURACY_M) {
+            return;
+        }
+        if (lastAccepted != null) {
+            float moved = lastAccepted.distanceTo(fix);
+            if (moved < Math.max(MIN_SPACING_M, fix.getAccuracy() / 2)
+                    && fix.getTime() - lastAccepted.getTime() < HEARTBEAT_MS) {
+                return;
+            }
+            distanceMeters += moved;
+        }
+        lastAccepted = fix;
+
+        recentLatitudes[recentNext] = fix.getLatitude();
+        recentLongitudes[recentNext] = fix.getLongitude();
+        recentTimes[recentNext] = fix.getTime();
+        recentNext = (recentNext + 1) % RECENT_CAPACITY;
+        recentCount = Math.min(recentCount + 1, RECENT_CAPACITY);
+
+        simplifier.add(fix.getLatitude(), fix.getLongitude(), fix.getTime());
+        if (encoder.chunkPoints() > 0) {
+            persistChunk(true);
+        }
+    }
+
+    /**
+     * Switches between the moving and the still request when the wearer starts or stops moving.
+     */
+    private void updateMotion(Location fix) {
+        if (anchor == null || anchor.distanceTo(fix) > STILL_RADIUS_M + fix.getAccuracy()) {
+            anchor = fix;
+            if (!moving) {
+                moving = true;
+                requestUpdates();
+                Log.d(TAG, "Moving again, sampling at full rate");
+            }
+        } else if (moving && fix.getTime() - anchor.getTime() > STILL_AFTER_MS) {
+            moving = false;
+            requestUpdates();
+            Log.d(TAG, "Standing still, sampling at low power");
+        }
+    }
+
+    private void persistChunk(boolean stillRecording) {
+        String polyline = encoder.polylineChunk();
+        String timeline = encoder.timelineChunk();
+        int points = encoder.chunkPoints();
+        double distance = distanceMeters;
+        long endedAt = stillRecording && lastAccepted != null ? lastAccepted.getTime() : System.currentTimeMillis();
+        encoder.clearChunk();
+
+        executor.execute(() -> {
+            if (trailId < 0) {
+                return;
+            }
+            // Deltas continue from the last stored point, so chunks are appended as they are
+            String sql = "UPDATE " + TABLE_TRAILS + " SET "
+                    + COLUMN_POLYLINE + " = " + COLUMN_POLYLINE + " || ?, "
+                    + COLUMN_TIMELINE + " = " + COLUMN_TIMELINE + " || ?, "
+                    + COLUMN_POINT_COUNT + " = " + COLUMN_POINT_COUNT + " + ?, "
+                    + COLUMN_DISTANCE_M + " = ?, "
+                    + COLUMN_ENDED_AT + " = ?, "
+                    + COLUMN_RECORDING + " = ? "
+                    + "WHERE " + COLUMN_ID + " = ?";
+            try (SQLiteStatement statement = database.getWritableDatabase().compileStatement(sql)) {
+                statement.bindString(1, polyline);
+                statement.bindString(2, timeline);
+                statement.bindLong(3, points);
+                statement.bindDouble(4, distance);
+                statement.bindLong(5, endedAt);
+                statement.bindLong(6, stillRecording ? 1 : 0);
+                statement.bindLong(7, trailId);
+                statement.executeUpdateDelete();
+            }
+        });
+    }
+
+    private List<Trail> query(String selection, String[] args) {
+        List<Trail> trails = new ArrayList<>();
+        try (Cursor cursor = database.getReadableDatabase().query(TABLE_TRAILS,
+                new String[]{COLUMN_ID, COLUMN_STARTED_AT, COLUMN_ENDED_AT, COLUMN_DISTANCE_M,
+                        COLUMN_POINT_COUNT, COLUMN_POLYLINE, COLUMN_TIMELINE, COLUMN_RECORDING},
+                selection, args, null, null, COLUMN_STARTED_AT + " ASC")) {
+            while (cursor.moveToNext()) {
+                trails.add(new Trail(cursor.getLong(0), cursor.getLong(1), cursor.getLong(2),
+                        cursor.getFloat(3), cursor.getInt(4), cursor.getString(5), cursor.getString(6),
+                        cursor.getInt(7) != 0));
+            }
+        }
+        return trails;
+    }
+
+    // === Data Classes ===
+
+    /**
+     * A recorded trail: its simplified points as an encoded polyline, and the seconds between them.
+     */
+    public static class Trail {
+        private final long id;
+        private final long startedAt;
+        private final long endedAt;
+        private final float distanceMeters;
+        private final int pointCount;
+        private final String polyline;
+        private final String timeline;
+        private final boolean recording;
+
+        Trail(long id, long startedAt, long endedAt, float distanceMeters, int pointCount,
+              String polyline, String timeline, boolean recording) {
+            this.id = id;
+            this.startedAt = startedAt;
+            this.endedAt = endedAt;
+            this.distanceMeters = distanceMeters;
+            this.pointCount = pointCount;
+            this.polyline = polyline;
+            this.timeline = timeline;
+            this.recording = recording;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getStartedAt() {
+            return startedAt;
+        }
+
+        public long getEndedAt() {
+            return endedAt;
+        }
+
+        /**
+         * @return distance covered by the recorded fixes, before simplification
+         */
+        public float getDistanceMeters() {
+            return distanceMeters;
+        }
+
+        public int getPointCount() {
+            return pointCount;
+        }
+
+        /**
+         * @return the points in the Google Maps encoded polyline format
+         */
+        public String getPolyline() {
+            return polyline;
+        }
+
+        public boolean isRecording() {
+            return recording;
+        }
+
+        /**
+         * @return latitude and longitude of each point, interleaved
+         */
+        @NonNull
+        public double[] decodeCoordinates() {
+            long[] fixed = PolylineCodec.decode(polyline, 2);
+            double[] degrees = new double[fixed.length];
+            for (int i = 0; i < fixed.length; i++) {
+                degrees[i] = PolylineCodec.toDegrees(fixed[i]);
+            }
+            return degrees;
+        }
+
+        /**
+         * @return time of each point in epoch milliseconds, to the second
+         */
+        @NonNull
+        public long[] decodeTimes() {
+            long[] seconds = PolylineCodec.decode(timeline, 1);
+            long base = TimeUnit.MILLISECONDS.toSeconds(startedAt);
+            for (int i = 0; i < seconds.length; i++) {
+                seconds[i] = TimeUnit.SECONDS.toMillis(base + seconds[i]);
+            }
+            return seconds;
+        }
+    }
+}
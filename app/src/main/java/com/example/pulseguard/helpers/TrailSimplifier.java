@@ -0,0 +1,147 @@
+package com.example.pulseguard.helpers;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Douglas–Peucker simplification of a location trail while it is being recorded.
+ * <p>
+ * Points are collected into a window of fixed size; when the window is full it is simplified and
+ * the points that survive are handed to the sink, except the last one, which starts the next
+ * window so consecutive windows join up. Memory is bounded by the window however long the trail
+ * gets, and every emitted point lies on the original trail. Distances are measured in metres on a
+ * local equirectangular projection, which is accurate to well under a percent over a window.
+ * <p>
+ * Not thread-safe: feed it from one thread.
+ */
+public class TrailSimplifier {
+
+    /**
+     * Receives the points kept, in trail order.
+     */
+    public interface Sink {
+        void accept(double latitude, double longitude, long timeMillis);
+    }
+
+    private static final double EARTH_RADIUS_M = 6371008.8;
+
+    private final double toleranceMeters;
+    private final Sink sink;
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final long[] times;
+    private final boolean[] keep;
+    // Pending index ranges of the iterative Douglas–Peucker
+    private final int[] stack;
+    private int size;
+
+    /**
+     * @param toleranceMeters Largest distance a dropped point may have from the simplified trail
+     * @param windowSize      Points simplified at a time, at least 3
+     */
+    public TrailSimplifier(double toleranceMeters, int windowSize, @NonNull Sink sink) {
+        if (windowSize < 3) {
+            throw new IllegalArgumentException("windowSize must be at least 3");
+        }
+        this.toleranceMeters = toleranceMeters;
+        this.sink = sink;
+        this.latitudes = new double[windowSize];
+        this.longitudes = new double[windowSize];
+        this.times = new long[windowSize];
+        this.keep = new boolean[windowSize];
+        this.stack = new int[2 * windowSize];
+    }
+
+    public void add(double latitude, double longitude, long timeMillis) {
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        times[size] = timeMillis;
+        size++;
+        if (size == latitudes.length) {
+            emit(false);
+        }
+    }
+
+    /**
+     * Simplifies and emits every pending point, including the last one. Points added afterwards
+     * start a new, unconnected stretch.
+     */
+    public void flush() {
+        if (size > 0) {
+            emit(true);
+        }
+    }
+
+    private void emit(boolean all) {
+        simplify();
+        int last = size - 1;
+        for (int i = 0; i < last; i++) {
+            if (keep[i]) {
+                sink.accept(latitudes[i], longitudes[i], times[i]);
+            }
+        }
+        if (all) {
+            sink.accept(latitudes[last], longitudes[last], times[last]);
+            size = 0;
+        } else {
+            latitudes[0] = latitudes[last];
+            longitudes[0] = longitudes[last];
+            times[0] = times[last];
+            size = 1;
+        }
+    }
+
+    private void simplify() {
+        for (int i = 0; i < size; i++) {
+            keep[i] = false;
+        }
+        keep[0] = true;
+        keep[size - 1] = true;
+        if (size < 3) {
+            return;
+        }
+
+        // Metres per degree around the window, for the projection
+        double metresPerDegree = Math.toRadians(1) * EARTH_RADIUS_M;
+        double lonScale = metresPerDegree * Math.cos(Math.toRadians(latitudes[0]));
+
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = size - 1;
+        while (top > 0) {
+            int end = stack[--top];
+            int start = stack[--top];
+
+            double bx = (longitudes[end] - longitudes[start]) * lonScale;
+            double by = (latitudes[end] - latitudes[start]) * metresPerDegree;
+            double lengthSquared = bx * bx + by * by;
+
+            int farthest = -1;
+            double farthestDistance = toleranceMeters;
+            for (int i = start + 1; i < end; i++) {
+                double px = (longitudes[i] - longitudes[start]) * lonScale;
+                double py = (latitudes[i] - latitudes[start]) * metresPerDegree;
+                double distance;
+                if (lengthSquared == 0) {
+                    distance = Math.hypot(px, py);
+                } else {
+                    // Distance to the segment, not the infinite line, so out-and-back paths survive
+                    double t = Math.max(0, Math.min(1, (px * bx + py * by) / lengthSquared));
+                    distance = Math.hypot(px - t * bx, py - t * by);
+                }
+                if (distance > farthestDistance) {
+                    farthestDistance = distance;
+                    farthest = i;
+                }
+            }
+
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                stack[top++] = start;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = end;
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.pulseguard.services;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
+import android.os.IBinder;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
+
+import com.example.pulseguard.activities.DashboardActivity;
+import com.example.pulseguard.helpers.TrailRecorder;
+
+/**
+ * Keeps the app in the foreground while {@link TrailRecorder} records a walk.
+ * <p>
+ * Android 8+ cuts location updates for apps in the background to a few per hour, which would leave
+ * an hour-long walk with the phone in a pocket almost empty. A foreground service of type location,
+ * with its ongoing notification, keeps the fused provider delivering at the requested rate while the
+ * screen is off. The recorder starts and stops the service itself; the notification's Stop action
+ * ends the recording.
+ */
+public class TrailRecordingService extends Service {
+
+    private static final String TAG = "TrailRecordingService";
+
+    private static final String CHANNEL_ID = "pulseguard_trail_recording";
+    private static final int NOTIFICATION_ID = 0x50470100;
+    private static final String ACTION_STOP = "com.example.pulseguard.action.STOP_TRAIL_RECORDING";
+
+    /**
+     * Starts the service; called by {@link TrailRecorder} when a recording starts.
+     */
+    public static void start(@NonNull Context context) {
+        ContextCompat.startForegroundService(context, new Intent(context, TrailRecordingService.class));
+    }
+
+    /**
+     * Stops the service; called by {@link TrailRecorder} when the recording stops.
+     */
+    public static void stop(@NonNull Context context) {
+        context.stopService(new Intent(context, TrailRecordingService.class));
+    }
+
+    @Override
+    public int onStartCommand(@Nullable Intent intent, int flags, int startId) {
+        // Must be called for every start, even one that stops right away, or the system kills the app
+        ServiceCompat.startForeground(this, NOTIFICATION_ID, buildNotification(),
+                ServiceInfo.FOREGROUND_SERVICE_TYPE_LOCATION);
+
+        TrailRecorder recorder = TrailRecorder.getInstance(this);
+        if (intent != null && ACTION_STOP.equals(intent.getAction())) {
+            // stop() stops this service once the trail is written
+            recorder.stop();
+        } else if (!recorder.isRecording()) {
+            // The recording ended before the service came up
+            Log.d(TAG, "Nothing to record, stopping");
+            stopSelf(startId);
+        }
+        // A recording does not survive its process, so there is nothing to restart
+        return START_NOT_STICKY;
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    private Notification buildNotification() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationManager manager = getSystemService(NotificationManager.class);
+            if (manager != null) {
+                NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "Walk Recording",
+                        NotificationManager.IMPORTANCE_LOW);
+                channel.setDescription("Shown while a walk is being recorded");
+                manager.createNotificationChannel(channel);
+            }
+        }
+
+        PendingIntent open = PendingIntent.getActivity(this, 0,
+                new Intent(this, DashboardActivity.class).addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP),
+                PendingIntent.FLAG_IMMUTABLE);
+        PendingIntent stop = PendingIntent.getService(this, 0,
+                new Intent(this, TrailRecordingService.class).setAction(ACTION_STOP),
+                PendingIntent.FLAG_IMMUTABLE);
+
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.ic_menu_mylocation)
+                .setContentTitle("Recording walk")
+                .setContentText("PulseGuard is recording your route")
+                .setContentIntent(open)
+                .addAction(android.R.drawable.ic_menu_close_clear_cancel, "Stop", stop)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .setCategory(NotificationCompat.CATEGORY_SERVICE)
+                .setForegroundServiceBehavior(NotificationCompat.FOREGROUND_SERVICE_IMMEDIATE)
+                .build();
+    }
+}
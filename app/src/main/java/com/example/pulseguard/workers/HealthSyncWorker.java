@@ -0,0 +1,143 @@
+package com.example.pulseguard.workers;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.pulseguard.helpers.DailyHealthRecord;
+import com.example.pulseguard.helpers.FirestoreHelper;
+import com.example.pulseguard.helpers.FitSyncEngine;
+import com.example.pulseguard.helpers.FitnessRepository;
+import com.example.pulseguard.helpers.LocalHealthStore;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Periodic background job that records today's Fit totals locally and syncs the local store with
+ * Firestore (outbox push, then pull of recent days).
+ * <p>
+ * Runs only on an unmetered network while charging, so uploads are batched into windows where the
+ * radio and battery cost is lowest instead of happening on every screen visit. In practice that is
+ * overnight and often after midnight, so each run also records yesterday's final totals if the stored
+ * record for it was written before the day ended.
+ */
+public class HealthSyncWorker extends Worker {
+
+    private static final String TAG = "HealthSyncWorker";
+    private static final String UNIQUE_WORK_NAME = "pulseguard_health_sync";
+    private static final String PREFS_NAME = "PulseGuardHealthSync";
+    // Per user: the last day whose final totals were recorded
+    private static final String KEY_FINALIZED_DAY_PREFIX = "finalized_day_";
+
+    private static final long REPEAT_INTERVAL_HOURS = 3;
+    private static final long FLEX_INTERVAL_HOURS = 1;
+    private static final long TASK_TIMEOUT_SECONDS = 60;
+
+    public HealthSyncWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Schedules the periodic sync if it is not scheduled yet. Safe to call on every launch.
+     */
+    public static void schedule(@NonNull Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.UNMETERED)
+                .setRequiresCharging(true)
+                .setRequiresBatteryNotLow(true)
+                .build();
+
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(HealthSyncWorker.class,
+                REPEAT_INTERVAL_HOURS, TimeUnit.HOURS,
+                FLEX_INTERVAL_HOURS, TimeUnit.HOURS)
+                .setConstraints(constraints)
+                .build();
+
+        WorkManager.getInstance(context)
+                .enqueueUniquePeriodicWork(UNIQUE_WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            return Result.success();
+        }
+        FitnessRepository repository = FitnessRepository.getInstance(context);
+        LocalHealthStore store = LocalHealthStore.getInstance(context);
+
+        // Record today's latest totals locally; the outbox picks them up below
+        if (repository.hasFitnessPermissions()) {
+            try {
+                saveYesterdayIfIncomplete(repository, store, user.getUid());
+            } catch (ExecutionException | TimeoutException e) {
+                Log.w(TAG, "Reading yesterday's totals failed; will try again on the next run", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Result.retry();
+            }
+            try {
+                FitSyncEngine.HourlySummary summary =
+                        Tasks.await(repository.refreshTodayHourlySummary(false), TASK_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                store.save(user.getUid(), new DailyHealthRecord(FirestoreHelper.dateKey(summary.getDayStart()),
+                        summary.getSteps(), summary.getCalories(), summary.getAverageHeartRate(),
+                        System.currentTimeMillis()));
+            } catch (ExecutionException | TimeoutException e) {
+                Log.w(TAG, "Fit read failed; syncing what is already stored", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Result.retry();
+            }
+        }
+
+        try {
+            return store.syncWithFirestore(user.getUid()) ? Result.success() : Result.retry();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.retry();
+        }
+    }
+
+    /**
+     * Today's summary stops covering yesterday at midnight, so anything recorded between the last
+     * save and the end of the day would otherwise never be stored or uploaded.
+     */
+    private void saveYesterdayIfIncomplete(FitnessRepository repository, LocalHealthStore store, String userId)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        long todayStart = FitSyncEngine.startOfDay(System.currentTimeMillis());
+        long yesterdayStart = FitSyncEngine.startOfDay(todayStart - 1);
+        String date = FirestoreHelper.dateKey(yesterdayStart);
+
+        SharedPreferences prefs = getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        String finalizedKey = KEY_FINALIZED_DAY_PREFIX + userId;
+        if (date.equals(prefs.getString(finalizedKey, null))) {
+            return;
+        }
+
+        DailyHealthRecord stored = store.getDailyHealthData(userId, date);
+        if (stored == null || stored.getUpdatedAt() < todayStart) {
+            FitSyncEngine.HourlySummary summary =
+                    Tasks.await(repository.readDayHourlySummary(yesterdayStart), TASK_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            store.save(userId, new DailyHealthRecord(date, summary.getSteps(), summary.getCalories(),
+                    summary.getAverageHeartRate(), System.currentTimeMillis()));
+            Log.d(TAG, "Recorded final totals for " + date);
+        }
+        prefs.edit().putString(finalizedKey, date).apply();
+    }
+}
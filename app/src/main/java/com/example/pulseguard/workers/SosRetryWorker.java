@@ -0,0 +1,65 @@
+package com.example.pulseguard.workers;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.pulseguard.helpers.SosDispatcher;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-sends SOS messages left in the outbox, backing off exponentially until none is pending.
+ * <p>
+ * Scheduled whenever an SOS is dispatched or a message fails. WorkManager persists it, so
+ * messages are retried after the app is killed or the device restarts.
+ */
+public class SosRetryWorker extends Worker {
+
+    private static final String TAG = "SosRetryWorker";
+    private static final String UNIQUE_WORK_NAME = "pulseguard_sos_retry";
+
+    private static final long INITIAL_DELAY_SECONDS = 30;
+    private static final long BACKOFF_SECONDS = 30;
+
+    public SosRetryWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Schedules a retry pass if none is scheduled yet. No network constraint: SMS only needs the
+     * cellular radio, which WorkManager cannot express.
+     */
+    public static void schedule(@NonNull Context context) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(SosRetryWorker.class)
+                .setInitialDelay(INITIAL_DELAY_SECONDS, TimeUnit.SECONDS)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(UNIQUE_WORK_NAME, ExistingWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        try {
+            int unfinished = SosDispatcher.getInstance(getApplicationContext()).retryDue();
+            if (unfinished > 0) {
+                Log.d(TAG, unfinished + " SOS message(s) still pending");
+                return Result.retry();
+            }
+            return Result.success();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.retry();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.pulseguard.helpers;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays synthetic traces of falls and of everyday movement that resembles them through
+ * {@link FallTraceReplay}, with the sensor batching the app requests.
+ */
+public class FallDetectorTest {
+
+    private static final long BATCH_LATENCY_MILLIS = 4000;
+
+    @Test
+    public void detectsFallWithinBatchLatency() throws Exception {
+        TraceBuilder trace = new TraceBuilder(1)
+                .walk(10000)
+                .fall()
+                .lie(15000);
+        FallTraceReplay.Report report = replay(trace);
+
+        assertEquals(1, report.getDetected());
+        assertEquals(0, report.getFalsePositives());
+        long expected = FallDetector.SETTLE_MILLIS + FallDetector.INACTIVITY_MILLIS + BATCH_LATENCY_MILLIS + 1000;
+        assertTrue("latency " + report.getMaxLatencyMillis() + " ms", report.getMaxLatencyMillis() <= expected);
+    }
+
+    @Test
+    public void ignoresJumpsAndStumblesThatEndUpright() throws Exception {
+        TraceBuilder trace = new TraceBuilder(2);
+        for (int i = 0; i < 20; i++) {
+            trace.walk(5000).jump().stand(4000);
+        }
+        FallTraceReplay.Report report = replay(trace);
+
+        assertEquals(0, report.getFalsePositives());
+    }
+
+    @Test
+    public void ignoresFallWhenWearerGetsUp() throws Exception {
+        TraceBuilder trace = new TraceBuilder(3)
+                .walk(5000)
+                .fallUnlabelled()
+                .lie(1500)
+                .walk(20000);
+        FallTraceReplay.Report report = replay(trace);
+
+        assertEquals(0, report.getFalsePositives());
+    }
+
+    @Test
+    public void detectsFallWhenBatchesArriveInSensorBlocks() throws Exception {
+        TraceBuilder trace = new TraceBuilder(5)
+                .walk(10000)
+                .fall()
+                .lie(15000);
+        for (FallTraceReplay.Delivery delivery : FallTraceReplay.Delivery.values()) {
+            FallTraceReplay.Report report = replay(trace, delivery);
+
+            assertEquals(delivery.name(), 1, report.getDetected());
+            assertEquals(delivery.name(), 0, report.getFalsePositives());
+        }
+    }
+
+    @Test
+    public void rotationIsMatchedByTimestampWhenBatchesArriveInSensorBlocks() throws Exception {
+        // Rolling around after a fall looks still to the accelerometer; only the gyroscope readings
+        // of the same moment show that the wearer is moving
+        TraceBuilder trace = new TraceBuilder(6)
+                .walk(10000)
+                .fallUnlabelled()
+                .lie(1500)
+                .roll(6000)
+                .walk(20000);
+        for (FallTraceReplay.Delivery delivery : FallTraceReplay.Delivery.values()) {
+            FallTraceReplay.Report report = replay(trace, delivery);
+
+            assertEquals(delivery.name(), 0, report.getFalsePositives());
+        }
+    }
+
+    @Test
+    public void noFalseAlarmsDuringAnHourOfWalking() throws Exception {
+        TraceBuilder trace = new TraceBuilder(4).walk(TimeUnit.HOURS.toMillis(1));
+        FallTraceReplay.Report report = replay(trace);
+
+        assertEquals(0, report.getFalsePositives());
+    }
+
+    private static FallTraceReplay.Report replay(TraceBuilder trace) throws IOException, InterruptedException {
+        return replay(trace, FallTraceReplay.Delivery.INTERLEAVED);
+    }
+
+    private static FallTraceReplay.Report replay(TraceBuilder trace, FallTraceReplay.Delivery delivery)
+            throws IOException, InterruptedException {
+        FallTraceReplay.Trace parsed = FallTraceReplay.Trace.read("synthetic", new StringReader(trace.toString()));
+        return new FallTraceReplay(BATCH_LATENCY_MILLIS, 0, delivery).replay(Collections.singletonList(parsed));
+    }
+
+    /**
+     * Writes a 50 Hz trace in the replay CSV format. The phone sits upright in a trouser pocket:
+     * gravity is along y while standing and along z while lying.
+     */
+    private static class TraceBuilder {
+        private static final long STEP_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+        private static final float G = FallDetector.GRAVITY;
+
+        private final StringBuilder csv = new StringBuilder("timestamp_ns,sensor,x,y,z\n");
+        private final Random random;
+        private long now = TimeUnit.SECONDS.toNanos(100);
+
+        TraceBuilder(long seed) {
+            random = new Random(seed);
+        }
+
+        TraceBuilder walk(long millis) {
+            // Roughly 2 steps per second, each swinging total acceleration by about ±0.3 g
+            for (long t = 0; t < millis; t += 20) {
+                double phase = 2 * Math.PI * 2 * t / 1000.0;
+                float bounce = (float) (0.3 * Math.sin(phase));
+                reading(noise(0.3f), G * (1 + bounce) + noise(0.3f), noise(0.3f), 0.8f);
+            }
+            return this;
+        }
+
+        TraceBuilder stand(long millis) {
+            for (long t = 0; t < millis; t += 20) {
+                reading(noise(0.1f), G + noise(0.1f), noise(0.1f), 0.05f);
+            }
+            return this;
+        }
+
+        TraceBuilder lie(long millis) {
+            for (long t = 0; t < millis; t += 20) {
+                reading(noise(0.1f), noise(0.1f), G + noise(0.1f), 0.05f);
+            }
+            return this;
+        }
+
+        TraceBuilder roll(long millis) {
+            // Lying, so gravity stays along z, but turning over
+            for (long t = 0; t < millis; t += 20) {
+                reading(noise(0.1f), noise(0.1f), G + noise(0.1f), 2.5f);
+            }
+            return this;
+        }
+
+        TraceBuilder fall() {
+            csv.append(now).append(",F\n");
+            return fallUnlabelled();
+        }
+
+        TraceBuilder fallUnlabelled() {
+            // 350 ms of near weightlessness while tipping over, a hard impact, then a few bounces
+            for (int i = 0; i < 18; i++) {
+                reading(noise(0.5f), 0.15f * G + noise(0.5f), noise(0.5f), 3f);
+            }
+            for (int i = 0; i < 3; i++) {
+                reading(1.5f * G, 1.2f * G, 3.5f * G, 4f);
+            }
+            for (int i = 0; i < 25; i++) {
+                reading(noise(3f), noise(3f), G * 1.2f + noise(3f), 1.5f);
+            }
+            return this;
+        }
+
+        TraceBuilder jump() {
+            // Take-off, 400 ms in the air, landing on the feet
+            for (int i = 0; i < 10; i++) {
+                reading(noise(0.5f), 1.8f * G + noise(0.5f), noise(0.5f), 0.5f);
+            }
+            for (int i = 0; i < 20; i++) {
+                reading(noise(0.3f), 0.05f * G + noise(0.3f), noise(0.3f), 0.3f);
+            }
+            for (int i = 0; i < 3; i++) {
+                reading(noise(1f), 3.2f * G, noise(1f), 1f);
+            }
+            for (int i = 0; i < 20; i++) {
+                reading(noise(1f), G * 1.3f + noise(1f), noise(1f), 0.5f);
+            }
+            return this;
+        }
+
+        private void reading(float x, float y, float z, float rotation) {
+            csv.append(String.format(Locale.US, "%d,A,%.3f,%.3f,%.3f%n", now, x, y, z));
+            csv.append(String.format(Locale.US, "%d,G,%.3f,%.3f,%.3f%n", now + STEP_NANOS / 2,
+                    rotation * random.nextFloat(), rotation * random.nextFloat(), rotation * random.nextFloat()));
+            now += STEP_NANOS;
+        }
+
+        private float noise(float amplitude) {
+            return (float) (random.nextGaussian() * amplitude);
+        }
+
+        @Override
+        public String toString() {
+            return csv.toString();
+        }
+    }
+}
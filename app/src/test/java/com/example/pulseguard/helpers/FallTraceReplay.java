@@ -0,0 +1,344 @@
+package com.example.pulseguard.helpers;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays recorded sensor traces through {@link FallDetector} on a plain JVM, to measure detection
+ * latency and false alarms without a device.
+ * <p>
+ * A trace is a CSV file with one reading per line: {@code timestamp_ns,sensor,x,y,z}, where sensor is
+ * {@code A} for the accelerometer (m/s², including gravity) or {@code G} for the gyroscope (rad/s).
+ * A line {@code timestamp_ns,F} labels the moment a real fall started. Blank lines, lines starting
+ * with {@code #} and a header line are skipped.
+ * <p>
+ * Readings are fed in file order as fast as possible, or paced at a multiple of real time.
+ * Sensor batching is simulated by counting a detection as reported only at the end of the batch that
+ * contained it, and optionally by delivering each batch as one block per sensor, as Android may do. A detection within {@link #MATCH_WINDOW_MILLIS} of a label counts as a hit; any other
+ * detection is a false positive.
+ * <p>
+ * Run {@link #main} with the test classpath:
+ * {@code FallTraceReplay [--latency-ms=4000] [--speed=0] [--delivery=INTERLEAVED] <trace.csv | directory>...}
+ */
+public class FallTraceReplay {
+
+    /**
+     * Order in which the readings of one batch reach the detector.
+     */
+    public enum Delivery {
+        /** As in the trace. */
+        INTERLEAVED,
+        /** The batch's accelerometer readings, then its gyroscope readings. */
+        ACCELEROMETER_FIRST,
+        /** The batch's gyroscope readings, then its accelerometer readings. */
+        GYROSCOPE_FIRST
+    }
+
+    static final long MATCH_WINDOW_MILLIS = 15000;
+
+    private static final byte ACCELEROMETER = 'A';
+    private static final byte GYROSCOPE = 'G';
+    private static final byte FALL_LABEL = 'F';
+
+    private final long batchLatencyNanos;
+    private final double speed;
+    private final Delivery delivery;
+
+    /**
+     * @param batchLatencyMillis Simulated max report latency of the sensors; 0 for no batching
+     * @param speed              Multiple of real time to replay at, e.g. 60 for a minute per second;
+     *                           0 to replay as fast as possible
+     */
+    public FallTraceReplay(long batchLatencyMillis, double speed) {
+        this(batchLatencyMillis, speed, Delivery.INTERLEAVED);
+    }
+
+    /**
+     * @param delivery Order of the readings within a batch; ignored without batching
+     */
+    public FallTraceReplay(long batchLatencyMillis, double speed, Delivery delivery) {
+        this.batchLatencyNanos = TimeUnit.MILLISECONDS.toNanos(batchLatencyMillis);
+        this.speed = speed;
+        this.delivery = delivery;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long latencyMillis = 4000;
+        double speed = 0;
+        Delivery delivery = Delivery.INTERLEAVED;
+        List<Trace> traces = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--latency-ms=")) {
+                latencyMillis = Long.parseLong(arg.substring("--latency-ms=".length()));
+            } else if (arg.startsWith("--speed=")) {
+                speed = Double.parseDouble(arg.substring("--speed=".length()));
+            } else if (arg.startsWith("--delivery=")) {
+                delivery = Delivery.valueOf(arg.substring("--delivery=".length()).toUpperCase(Locale.US));
+            } else {
+                loadAll(new File(arg), traces);
+            }
+        }
+        if (traces.isEmpty()) {
+            System.err.println("Usage: FallTraceReplay [--latency-ms=N] [--speed=N]"
+                    + " [--delivery=INTERLEAVED|ACCELEROMETER_FIRST|GYROSCOPE_FIRST] <trace.csv | directory>...");
+            System.exit(2);
+        }
+        System.out.println(new FallTraceReplay(latencyMillis, speed, delivery).replay(traces));
+    }
+
+    private static void loadAll(File file, List<Trace> traces) throws IOException {
+        File[] children = file.listFiles();
+        if (children == null) {
+            try (Reader reader = new FileReader(file)) {
+                traces.add(Trace.read(file.getName(), reader));
+            }
+            return;
+        }
+        Arrays.sort(children);
+        for (File child : children) {
+            if (child.isDirectory() || child.getName().endsWith(".csv")) {
+                loadAll(child, traces);
+            }
+        }
+    }
+
+    /**
+     * Replays every trace through a fresh detector and sums up the results.
+     */
+    public Report replay(List<Trace> traces) throws InterruptedException {
+        Report report = new Report();
+        long wallStart = System.nanoTime();
+        for (Trace trace : traces) {
+            replay(trace, report);
+        }
+        report.wallNanos = System.nanoTime() - wallStart;
+        return report;
+    }
+
+    private void replay(Trace trace, Report report) throws InterruptedException {
+        List<FallDetector.Event> events = new ArrayList<>();
+        FallDetector detector = new FallDetector(events::add);
+        long[] labels = new long[trace.size];
+        int labelCount = 0;
+
+        long traceStart = trace.size > 0 ? trace.timestamps[0] : 0;
+        for (int i = 0; i < trace.size; i++) {
+            if (trace.sensors[i] == FALL_LABEL) {
+                labels[labelCount++] = trace.timestamps[i];
+            }
+        }
+
+        long wallStart = System.nanoTime();
+        if (delivery == Delivery.INTERLEAVED || batchLatencyNanos <= 0) {
+            feed(trace, 0, trace.size, (byte) 0, detector, traceStart, wallStart);
+        } else {
+            byte first = delivery == Delivery.ACCELEROMETER_FIRST ? ACCELEROMETER : GYROSCOPE;
+            byte second = first == ACCELEROMETER ? GYROSCOPE : ACCELEROMETER;
+            int start = 0;
+            while (start < trace.size) {
+                long batch = batchOf(trace.timestamps[start], traceStart);
+                int end = start + 1;
+                while (end < trace.size && batchOf(trace.timestamps[end], traceStart) == batch) {
+                    end++;
+                }
+                feed(trace, start, end, first, detector, traceStart, wallStart);
+                feed(trace, start, end, second, detector, traceStart, wallStart);
+                start = end;
+            }
+        }
+
+        report.traces++;
+        report.replayedNanos += trace.size > 0 ? trace.timestamps[trace.size - 1] - traceStart : 0;
+        report.labelled += labelCount;
+
+        long matchWindow = TimeUnit.MILLISECONDS.toNanos(MATCH_WINDOW_MILLIS);
+        boolean[] matched = new boolean[labelCount];
+        for (FallDetector.Event event : events) {
+            long reported = reportedAt(event.getConfirmedNanos(), traceStart);
+            int hit = -1;
+            for (int l = 0; l < labelCount; l++) {
+                if (!matched[l] && reported >= labels[l] && reported - labels[l] <= matchWindow) {
+                    hit = l;
+                    break;
+                }
+            }
+            if (hit < 0) {
+                report.falsePositives++;
+                report.falsePositiveTimes.add(trace.name + "@" + TimeUnit.NANOSECONDS.toMillis(event.getImpactNanos() - traceStart) + "ms");
+                continue;
+            }
+            matched[hit] = true;
+            report.latenciesMillis.add(TimeUnit.NANOSECONDS.toMillis(reported - labels[hit]));
+        }
+    }
+
+    /**
+     * Feeds the readings in [start, end) of one sensor, or of both if sensor is 0, to the detector.
+     */
+    private void feed(Trace trace, int start, int end, byte sensor, FallDetector detector, long traceStart,
+                      long wallStart) throws InterruptedException {
+        for (int i = start; i < end; i++) {
+            if (sensor != 0 && trace.sensors[i] != sensor) {
+                continue;
+            }
+            long t = trace.timestamps[i];
+            if (speed > 0) {
+                long dueNanos = wallStart + (long) ((t - traceStart) / speed);
+                long wait = dueNanos - System.nanoTime();
+                if (wait > TimeUnit.MILLISECONDS.toNanos(1)) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+            int v = i * 3;
+            if (trace.sensors[i] == ACCELEROMETER) {
+                detector.onAccelerometer(t, trace.values[v], trace.values[v + 1], trace.values[v + 2]);
+            } else if (trace.sensors[i] == GYROSCOPE) {
+                detector.onGyroscope(t, trace.values[v], trace.values[v + 1], trace.values[v + 2]);
+            }
+        }
+    }
+
+    // Batch n holds the readings of the n-th latency period after the start of the trace
+    private long batchOf(long timestampNanos, long traceStart) {
+        return (timestampNanos - traceStart + batchLatencyNanos - 1) / batchLatencyNanos;
+    }
+
+    /**
+     * @return when a detection made at a reading's timestamp reaches the app: at the end of its batch
+     */
+    private long reportedAt(long timestampNanos, long traceStart) {
+        if (batchLatencyNanos <= 0) {
+            return timestampNanos;
+        }
+        return traceStart + batchOf(timestampNanos, traceStart) * batchLatencyNanos;
+    }
+
+    // === Data Classes ===
+
+    /**
+     * A recorded trace held in primitive arrays: three values per reading.
+     */
+    public static class Trace {
+        final String name;
+        long[] timestamps = new long[1024];
+        byte[] sensors = new byte[1024];
+        float[] values = new float[3 * 1024];
+        int size;
+
+        Trace(String name) {
+            this.name = name;
+        }
+
+        public static Trace read(String name, Reader source) throws IOException {
+            Trace trace = new Trace(name);
+            BufferedReader reader = new BufferedReader(source);
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || !Character.isDigit(line.charAt(0))) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                try {
+                    long timestamp = Long.parseLong(fields[0].trim());
+                    byte sensor = (byte) fields[1].trim().charAt(0);
+                    if (sensor == FALL_LABEL) {
+                        trace.add(timestamp, sensor, 0f, 0f, 0f);
+                    } else {
+                        trace.add(timestamp, sensor, Float.parseFloat(fields[2]), Float.parseFloat(fields[3]),
+                                Float.parseFloat(fields[4]));
+                    }
+                } catch (RuntimeException e) {
+                    throw new IOException(name + ":" + lineNumber + ": malformed reading \"" + line + "\"", e);
+                }
+            }
+            return trace;
+        }
+
+        private void add(long timestamp, byte sensor, float x, float y, float z) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                sensors = Arrays.copyOf(sensors, size * 2);
+                values = Arrays.copyOf(values, size * 6);
+            }
+            timestamps[size] = timestamp;
+            sensors[size] = sensor;
+            values[size * 3] = x;
+            values[size * 3 + 1] = y;
+            values[size * 3 + 2] = z;
+            size++;
+        }
+    }
+
+    /**
+     * Totals over all replayed traces.
+     */
+    public static class Report {
+        int traces;
+        long replayedNanos;
+        long wallNanos;
+        int labelled;
+        int falsePositives;
+        final List<Long> latenciesMillis = new ArrayList<>();
+        final List<String> falsePositiveTimes = new ArrayList<>();
+
+        public int getDetected() {
+            return latenciesMillis.size();
+        }
+
+        public int getMissed() {
+            return labelled - latenciesMillis.size();
+        }
+
+        public int getFalsePositives() {
+            return falsePositives;
+        }
+
+        public double getFalsePositivesPerHour() {
+            double hours = replayedNanos / (double) TimeUnit.HOURS.toNanos(1);
+            return hours > 0 ? falsePositives / hours : 0;
+        }
+
+        public long getMaxLatencyMillis() {
+            long max = 0;
+            for (long latency : latenciesMillis) {
+                max = Math.max(max, latency);
+            }
+            return max;
+        }
+
+        public double getMeanLatencyMillis() {
+            long sum = 0;
+            for (long latency : latenciesMillis) {
+                sum += latency;
+            }
+            return latenciesMillis.isEmpty() ? 0 : sum / (double) latenciesMillis.size();
+        }
+
+        @Override
+        public String toString() {
+            double replayedSeconds = replayedNanos / 1e9;
+            double wallSeconds = wallNanos / 1e9;
+            return String.format(Locale.US,
+                    "%d traces, %.1f min of readings replayed in %.2f s (%.0fx)%n"
+                            + "falls: %d labelled, %d detected, %d missed%n"
+                            + "latency: mean %.0f ms, max %d ms%n"
+                            + "false positives: %d (%.2f per hour)%s",
+                    traces, replayedSeconds / 60, wallSeconds, wallSeconds > 0 ? replayedSeconds / wallSeconds : 0,
+                    labelled, getDetected(), getMissed(),
+                    getMeanLatencyMillis(), getMaxLatencyMillis(),
+                    falsePositives, getFalsePositivesPerHour(),
+                    falsePositiveTimes.isEmpty() ? "" : " at " + falsePositiveTimes);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.pulseguard.helpers;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the two halves of trail recording: {@link TrailSimplifier} thinning the fixes and
+ * {@link PolylineCodec} storing them, including the appended chunks TrailRecorder writes.
+ */
+public class TrailCompressionTest {
+
+    // Settings TrailRecorder uses
+    private static final double TOLERANCE_M = 5;
+    private static final int WINDOW = 128;
+
+    private static final double METRES_PER_DEGREE = Math.toRadians(1) * 6371008.8;
+
+    @Test
+    public void encodesGoogleReferencePolyline() {
+        double[] latitudes = {38.5, 40.7, 43.252};
+        double[] longitudes = {-120.2, -120.95, -126.453};
+
+        String encoded = PolylineCodec.encode(latitudes, longitudes, 3);
+
+        assertEquals("_p~iF~ps|U_ulLnnqC_mqNvxq`@", encoded);
+        assertArrayEquals(new long[]{3850000, -12020000, 4070000, -12095000, 4325200, -12645300},
+                PolylineCodec.decode(encoded, 2));
+    }
+
+    @Test
+    public void appendedChunksDecodeAsOnePolyline() {
+        Random random = new Random(7);
+        int count = 50;
+        long[] expected = new long[2 * count];
+        long[] seconds = new long[count];
+
+        // Each chunk continues from the last point of the one before, as TrailRecorder stores them
+        TrailChunkEncoder encoder = new TrailChunkEncoder();
+        encoder.reset(0);
+        StringBuilder stored = new StringBuilder();
+        StringBuilder timeline = new StringBuilder();
+        long lastSeconds = 0;
+        for (int chunk = 0; chunk < 5; chunk++) {
+            for (int i = chunk * 10; i < chunk * 10 + 10; i++) {
+                double latitude = 52.5 + random.nextGaussian() * 0.01;
+                double longitude = -0.1 + random.nextGaussian() * 0.01;
+                seconds[i] = lastSeconds + random.nextInt(600);
+                encoder.accept(latitude, longitude, seconds[i] * 1000);
+                expected[2 * i] = PolylineCodec.toFixed(latitude);
+                expected[2 * i + 1] = PolylineCodec.toFixed(longitude);
+                lastSeconds = seconds[i];
+            }
+            assertEquals(10, encoder.chunkPoints());
+            stored.append(encoder.polylineChunk());
+            timeline.append(encoder.timelineChunk());
+            encoder.clearChunk();
+        }
+
+        assertArrayEquals(expected, PolylineCodec.decode(stored, 2));
+        assertArrayEquals(seconds, PolylineCodec.decode(timeline, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPolylineEndingMidPoint() {
+        StringBuilder encoded = new StringBuilder();
+        PolylineCodec.appendValue(encoded, 100);
+        PolylineCodec.decode(encoded, 2);
+    }
+
+    @Test
+    public void windowsJoinWithoutGapsOrRepeats() {
+        List<double[]> kept = new ArrayList<>();
+        TrailSimplifier simplifier = new TrailSimplifier(TOLERANCE_M, 4,
+                (latitude, longitude, time) -> kept.add(new double[]{latitude, longitude, time}));
+
+        // A straight line: only the points that join the windows survive, each exactly once
+        for (int i = 0; i < 10; i++) {
+            simplifier.add(52 + i * 0.001, 13, i);
+        }
+        simplifier.flush();
+
+        assertEquals(4, kept.size());
+        long[] times = new long[kept.size()];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = (long) kept.get(i)[2];
+        }
+        assertArrayEquals(new long[]{0, 3, 6, 9}, times);
+    }
+
+    @Test
+    public void keepsCornersInsideAndAcrossWindows() {
+        List<Long> kept = new ArrayList<>();
+        TrailSimplifier simplifier = new TrailSimplifier(TOLERANCE_M, 8, (latitude, longitude, time) -> kept.add(time));
+
+        // North for 10 points, then east for 10: an L with its corner at point 9
+        for (int i = 0; i < 10; i++) {
+            simplifier.add(52 + i * 0.0005, 13, i);
+        }
+        for (int i = 1; i <= 10; i++) {
+            simplifier.add(52 + 9 * 0.0005, 13 + i * 0.0008, 9 + i);
+        }
+        simplifier.flush();
+
+        assertTrue("corner dropped: " + kept, kept.contains(9L));
+        assertEquals(0L, (long) kept.get(0));
+        assertEquals(19L, (long) kept.get(kept.size() - 1));
+        for (int i = 1; i < kept.size(); i++) {
+            assertTrue("out of order or repeated: " + kept, kept.get(i) > kept.get(i - 1));
+        }
+    }
+
+    @Test
+    public void hourOfWalkingCompressesToAFewHundredBytes() {
+        // An hour at 1.4 m/s with a fix every 5 s, gently curving, with 1.5 m of GPS noise
+        Random random = new Random(1);
+        int fixes = 720;
+        double[] latitudes = new double[fixes];
+        double[] longitudes = new double[fixes];
+        double latitude = 52.0;
+        double longitude = 13.0;
+        double heading = 0;
+        // StrictMath so the trace is the same on every JVM
+        for (int i = 0; i < fixes; i++) {
+            heading += StrictMath.sin(i / 40.0) * 0.08;
+            latitude += 7 * StrictMath.cos(heading) / 111195.0;
+            longitude += 7 * StrictMath.sin(heading) / (111195.0 * StrictMath.cos(StrictMath.toRadians(52)));
+            latitudes[i] = latitude + random.nextGaussian() * 1.5 / 111195.0;
+            longitudes[i] = longitude + random.nextGaussian() * 1.5 / 68000.0;
+        }
+
+        List<double[]> kept = new ArrayList<>();
+        TrailChunkEncoder encoder = new TrailChunkEncoder();
+        encoder.reset(0);
+        TrailSimplifier simplifier = new TrailSimplifier(TOLERANCE_M, WINDOW, (lat, lon, time) -> {
+            kept.add(new double[]{lat, lon});
+            encoder.accept(lat, lon, time);
+        });
+        for (int i = 0; i < fixes; i++) {
+            simplifier.add(latitudes[i], longitudes[i], i * 5000L);
+        }
+        simplifier.flush();
+        String polyline = encoder.polylineChunk();
+
+        // 720 fixes come down to about a hundred points and a few hundred bytes
+        assertTrue("kept " + kept.size() + " points", kept.size() < 150);
+        assertTrue("polyline is " + polyline.length() + " bytes", polyline.length() < 1024);
+        assertEquals(kept.size(), encoder.chunkPoints());
+        assertEquals(2 * kept.size(), PolylineCodec.decode(polyline, 2).length);
+
+        // Every fix stays within the tolerance of the stored trail, plus the 1e-5° rounding
+        for (int i = 0; i < fixes; i++) {
+            double distance = distanceToTrail(latitudes[i], longitudes[i], kept);
+            assertTrue("fix " + i + " is " + distance + " m off the trail", distance <= TOLERANCE_M + 1.5);
+        }
+    }
+
+    private static double distanceToTrail(double latitude, double longitude, List<double[]> trail) {
+        double lonScale = METRES_PER_DEGREE * Math.cos(Math.toRadians(latitude));
+        double best = Double.MAX_VALUE;
+        for (int i = 1; i < trail.size(); i++) {
+            double ax = (trail.get(i - 1)[1] - longitude) * lonScale;
+            double ay = (trail.get(i - 1)[0] - latitude) * METRES_PER_DEGREE;
+            double bx = (trail.get(i)[1] - longitude) * lonScale;
+            double by = (trail.get(i)[0] - latitude) * METRES_PER_DEGREE;
+            double dx = bx - ax;
+            double dy = by - ay;
+            double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSquared));
+            best = Math.min(best, Math.hypot(ax + t * dx, ay + t * dy));
+        }
+        return best;
+    }
+}